@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel;
+
+import org.apache.drill.exec.store.dfs.easy.FileWork;
+import org.apache.drill.exec.store.schedule.CompleteWork;
+import org.apache.drill.exec.store.schedule.EndpointByteMap;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * {@link ExcelWork} with the bytes of its file hosted by each Drillbit, used to assign works to fragments.
+ * A work reads parts of the whole file, so every work of a file, including row ranges of one sheet,
+ * has the length and the block locations of the file.
+ */
+class ExcelCompleteWork implements CompleteWork, FileWork {
+
+    private final ExcelWork work;
+    private final long length;
+    private EndpointByteMap byteMap;
+
+    ExcelCompleteWork(ExcelWork work, long length) {
+        this.work = work;
+        this.length = length;
+    }
+
+    ExcelWork getWork() {
+        return work;
+    }
+
+    void setByteMap(EndpointByteMap byteMap) {
+        this.byteMap = byteMap;
+    }
+
+    @Override
+    public long getTotalBytes() {
+        return length;
+    }
+
+    @Override
+    public EndpointByteMap getByteMap() {
+        return byteMap;
+    }
+
+    @Override
+    public Path getPath() {
+        return new Path(work.getPath());
+    }
+
+    @Override
+    public long getStart() {
+        return 0;
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public int compareTo(CompleteWork o) {
+        return Long.compare(getTotalBytes(), o.getTotalBytes());
+    }
+
+    @Override
+    public String toString() {
+        return work + " (" + length + " bytes)";
+    }
+}
@@ -21,17 +21,23 @@ import org.apache.drill.common.exceptions.ExecutionSetupException;
 import org.apache.drill.common.expression.SchemaPath;
 import org.apache.drill.common.logical.StoragePluginConfig;
 import org.apache.drill.exec.ops.FragmentContext;
+import org.apache.drill.exec.physical.impl.scan.file.FileScanFramework.FileReaderFactory;
+import org.apache.drill.exec.physical.impl.scan.file.FileScanFramework.FileScanBuilder;
+import org.apache.drill.exec.physical.impl.scan.file.FileScanFramework.FileSchemaNegotiator;
+import org.apache.drill.exec.physical.impl.scan.framework.ManagedReader;
 import org.apache.drill.exec.planner.common.DrillStatsTable;
 import org.apache.drill.exec.proto.UserBitShared;
 import org.apache.drill.exec.server.DrillbitContext;
-import org.apache.drill.exec.store.RecordReader;
+import org.apache.drill.exec.server.options.OptionManager;
 import org.apache.drill.exec.store.RecordWriter;
-import org.apache.drill.exec.store.dfs.DrillFileSystem;
 import org.apache.drill.exec.store.dfs.easy.EasyFormatPlugin;
+import org.apache.drill.exec.store.dfs.easy.EasySubScan;
 import org.apache.drill.exec.store.dfs.easy.EasyWriter;
-import org.apache.drill.exec.store.dfs.easy.FileWork;
+import org.apache.drill.exec.store.excel.cache.WorkbookFileCache;
+import org.apache.drill.exec.store.excel.cache.WorkbookMetadataCache;
 import org.apache.drill.exec.store.excel.config.ExcelFormatConfig;
-import org.apache.drill.exec.store.excel.read.ExcelRecordReader;
+import org.apache.drill.exec.store.excel.read.ExcelBatchReader;
+import org.apache.drill.exec.store.excel.read.ParsingExecutors;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -45,6 +51,9 @@ public class ExcelFormatPlugin extends EasyFormatPlugin<ExcelFormatConfig> {
     private static final boolean IS_COMPRESSIBLE = false;
     private static final String DEFAULT_NAME = "excel";
     private final ExcelFormatConfig config;
+    private final WorkbookFileCache fileCache;
+    private final WorkbookMetadataCache metadataCache;
+    private final ParsingExecutors parsingExecutors;
 
     public ExcelFormatPlugin(DrillbitContext context, Configuration fsConf, StoragePluginConfig storageConfig) {
         this(DEFAULT_NAME, context, fsConf, storageConfig);
@@ -57,6 +66,9 @@ public class ExcelFormatPlugin extends EasyFormatPlugin<ExcelFormatConfig> {
     public ExcelFormatPlugin(String name, DrillbitContext context, Configuration fsConf, StoragePluginConfig config, ExcelFormatConfig formatPluginConfig) {
         super(name, context, fsConf, config, formatPluginConfig, true, false, false, IS_COMPRESSIBLE, formatPluginConfig.getExtensions(), DEFAULT_NAME);
         this.config = formatPluginConfig;
+        this.fileCache = WorkbookFileCache.getInstance(context.getConfig());
+        this.metadataCache = WorkbookMetadataCache.create(context.getConfig());
+        this.parsingExecutors = ParsingExecutors.getInstance(context.getConfig());
     }
 
     @Override
@@ -65,8 +77,17 @@ public class ExcelFormatPlugin extends EasyFormatPlugin<ExcelFormatConfig> {
     }
 
     @Override
-    public RecordReader getRecordReader(FragmentContext fragmentContext, DrillFileSystem drillFileSystem, FileWork fileWork, List<SchemaPath> list, String s) throws ExecutionSetupException {
-        return new ExcelRecordReader(drillFileSystem, list, new RuntimeExcelTableConfig(fileWork.getPath(), this.config));
+    protected boolean useEnhancedScan(OptionManager options) {
+        return true;
+    }
+
+    @Override
+    protected FileScanBuilder frameworkBuilder(OptionManager options, EasySubScan scan) throws ExecutionSetupException {
+        FileScanBuilder builder = new FileScanBuilder();
+        builder.setReaderFactory(new ExcelReaderFactory(scan.getColumns()));
+        initScanBuilder(builder, scan);
+        ExcelScanCreator.configureBatches(builder, options);
+        return builder;
     }
 
     @Override
@@ -98,4 +119,54 @@ public class ExcelFormatPlugin extends EasyFormatPlugin<ExcelFormatConfig> {
     public void writeStatistics(DrillStatsTable.TableStatistics tableStatistics, FileSystem fileSystem, Path path) throws IOException {
         throw new UnsupportedOperationException("unimplemented");
     }
+
+    private class ExcelReaderFactory extends FileReaderFactory {
+        private final List<SchemaPath> columns;
+
+        ExcelReaderFactory(List<SchemaPath> columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public ManagedReader<? extends FileSchemaNegotiator> newReader() {
+            return new ExcelFileReader(columns);
+        }
+    }
+
+    /**
+     * Reads the file of the split the framework opens the reader for, through the file system of the framework.
+     */
+    private class ExcelFileReader implements ManagedReader<FileSchemaNegotiator> {
+        private final List<SchemaPath> columns;
+        private ExcelBatchReader reader;
+
+        ExcelFileReader(List<SchemaPath> columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public boolean open(FileSchemaNegotiator negotiator) {
+            reader = new ExcelBatchReader(columns,
+                    new RuntimeExcelTableConfig(negotiator.split().getPath(), config),
+                    null,
+                    fileCache,
+                    metadataCache,
+                    parsingExecutors,
+                    -1,
+                    null);
+            return reader.open(negotiator, negotiator.fileSystem());
+        }
+
+        @Override
+        public boolean next() {
+            return reader.next();
+        }
+
+        @Override
+        public void close() {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
 }
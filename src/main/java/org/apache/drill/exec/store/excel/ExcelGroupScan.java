@@ -19,18 +19,43 @@ package org.apache.drill.exec.store.excel;
 
 import com.fasterxml.jackson.annotation.*;
 import org.apache.drill.shaded.guava.com.google.common.base.Preconditions;
+import org.apache.drill.shaded.guava.com.google.common.collect.ArrayListMultimap;
+import org.apache.drill.shaded.guava.com.google.common.collect.ListMultimap;
 import org.apache.drill.common.exceptions.ExecutionSetupException;
+import org.apache.drill.common.exceptions.UserException;
 import org.apache.drill.common.expression.SchemaPath;
-import org.apache.drill.exec.physical.PhysicalOperatorSetupException;
+import org.apache.drill.exec.physical.EndpointAffinity;
 import org.apache.drill.exec.physical.base.AbstractGroupScan;
+import org.apache.drill.exec.physical.base.GroupScan;
 import org.apache.drill.exec.physical.base.PhysicalOperator;
 import org.apache.drill.exec.physical.base.ScanStats;
 import org.apache.drill.exec.physical.base.SubScan;
 import org.apache.drill.exec.proto.CoordinationProtos;
 import org.apache.drill.exec.store.StoragePluginRegistry;
+import org.apache.drill.exec.store.dfs.DrillFileSystem;
+import org.apache.drill.exec.store.excel.cache.SheetStatistics;
+import org.apache.drill.exec.store.excel.cache.WorkbookMetadataCache;
+import org.apache.drill.exec.store.excel.config.FormulaMode;
+import org.apache.drill.exec.store.excel.read.WorkbookFiles;
+import org.apache.drill.exec.store.excel.read.WorkbookSheets;
+import org.apache.drill.exec.store.schedule.AffinityCreator;
+import org.apache.drill.exec.store.schedule.AssignmentCreator;
+import org.apache.drill.exec.store.schedule.BlockMapBuilder;
+import org.apache.drill.exec.store.schedule.EndpointByteMapImpl;
+import org.apache.drill.exec.util.ImpersonationUtil;
+import org.apache.drill.exec.util.Utilities;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
  * Created by mnasyrov on 11.08.2017.
@@ -39,18 +64,39 @@ import java.util.List;
 @SuppressWarnings("WeakerAccess")
 public class ExcelGroupScan extends AbstractGroupScan {
 
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ExcelGroupScan.class);
+    //Каждая часть листа держит в памяти свою копию общих строк
+    static final int MAX_SPLITS = 64;
+
     private final ExcelScanSpec spec;
     private List<SchemaPath> columns;
     private final ExcelStoragePlugin storagePlugin;
     private final ExcelStoragePluginConfig storagePluginConfig;
+    //-1 - без ограничения
+    private int maxRecords = -1;
+    private RowFilter rowFilter;
+    private final List<ExcelWork> works;
+    //Работы с листами, разделенными на диапазоны строк, вычисляются при первом обращении
+    private List<ExcelWork> splitWorks;
+    //Работы по номеру минорного фрагмента
+    private ListMultimap<Integer, ExcelWork> assignments;
+    //Работы с размерами файлов и расположением блоков, вычисляются при первом обращении
+    private List<ExcelCompleteWork> completeWorks;
+    //Статистика листов по работам, вычисляется при первом обращении
+    private List<SheetStatistics> statistics;
 
     @JsonCreator
     private ExcelGroupScan(@JsonProperty("userName") String userName,
                           @JsonProperty("spec") ExcelScanSpec ExcelScanSpec,
                           @JsonProperty("storagePluginConfig") ExcelStoragePluginConfig storagePluginConfig,
                           @JsonProperty("columns") List<SchemaPath> columns,
+                          @JsonProperty("maxRecords") Integer maxRecords,
+                          @JsonProperty("rowFilter") RowFilter rowFilter,
+                          @JsonProperty("works") List<ExcelWork> works,
                           @JacksonInject StoragePluginRegistry pluginRegistry) throws ExecutionSetupException {
-        this (userName, (ExcelStoragePlugin) pluginRegistry.getPlugin(storagePluginConfig), ExcelScanSpec, columns);
+        this (userName, (ExcelStoragePlugin) pluginRegistry.getPlugin(storagePluginConfig), ExcelScanSpec, columns, works);
+        this.maxRecords = maxRecords == null ? -1 : maxRecords;
+        this.rowFilter = rowFilter;
     }
 
     @JsonProperty
@@ -63,22 +109,46 @@ public class ExcelGroupScan extends AbstractGroupScan {
         return columns;
     }
 
+    @JsonProperty
+    public int getMaxRecords() {
+        return maxRecords;
+    }
+
+    @JsonProperty
+    public RowFilter getRowFilter() {
+        return rowFilter;
+    }
+
     @JsonProperty
     public ExcelStoragePluginConfig getStoragePluginConfig() {
         return storagePluginConfig;
     }
 
+    @JsonProperty
+    public List<ExcelWork> getWorks() {
+        return works;
+    }
+
     @JsonIgnore
     public ExcelStoragePlugin getStoragePlugin() {
         return storagePlugin;
     }
 
-    public ExcelGroupScan(String userName, ExcelStoragePlugin plugin, ExcelScanSpec spec, List<SchemaPath> columns) {
+    public ExcelGroupScan(String userName, ExcelStoragePlugin plugin, ExcelScanSpec spec, List<SchemaPath> columns) throws IOException {
+        this(userName, plugin, spec, columns, listWorks(userName, plugin, spec));
+    }
+
+    private ExcelGroupScan(String userName,
+                           ExcelStoragePlugin plugin,
+                           ExcelScanSpec spec,
+                           List<SchemaPath> columns,
+                           List<ExcelWork> works) {
         super(userName);
         this.storagePlugin = plugin;
         this.storagePluginConfig = storagePlugin.getConfig();
         this.spec = spec;
         this.columns = columns == null ? ALL_COLUMNS : columns;
+        this.works = works;
     }
 
     public ExcelGroupScan(ExcelGroupScan that) {
@@ -87,6 +157,13 @@ public class ExcelGroupScan extends AbstractGroupScan {
         this.storagePluginConfig = that.storagePluginConfig;
         this.spec = that.spec;
         this.columns = that.columns;
+        this.maxRecords = that.maxRecords;
+        this.rowFilter = that.rowFilter;
+        this.works = that.works;
+        this.assignments = that.assignments;
+        this.splitWorks = that.splitWorks;
+        this.completeWorks = that.completeWorks;
+        this.statistics = that.statistics;
     }
 
     @Override
@@ -97,18 +174,41 @@ public class ExcelGroupScan extends AbstractGroupScan {
     }
 
     @Override
-    public void applyAssignments(List<CoordinationProtos.DrillbitEndpoint> list) {
-        //Ассаймент к нодам дрила не поддерживается
+    public List<EndpointAffinity> getOperatorAffinity() {
+        return AffinityCreator.getAffinityMap(getCompleteWorks());
     }
 
+    /**
+     * Assigns works to the fragments running on the Drillbits that host most of the file blocks,
+     * balancing the number of works per fragment.
+     */
     @Override
-    public SubScan getSpecificScan(int i) {
-        return new ExcelSubScan(getUserName(), spec, storagePlugin, columns);
+    public void applyAssignments(List<CoordinationProtos.DrillbitEndpoint> endpoints) {
+        ListMultimap<Integer, ExcelCompleteWork> mappings = AssignmentCreator.getMappings(endpoints, getCompleteWorks());
+        assignments = ArrayListMultimap.create();
+        for (Map.Entry<Integer, ExcelCompleteWork> entry : mappings.entries()) {
+            assignments.put(entry.getKey(), entry.getValue().getWork());
+        }
     }
 
+    @Override
+    public SubScan getSpecificScan(int minorFragmentId) {
+        Preconditions.checkState(assignments != null, "Assignments are not applied");
+        return new ExcelSubScan(getUserName(),
+                spec,
+                storagePlugin,
+                columns,
+                maxRecords,
+                rowFilter,
+                assignments.get(minorFragmentId));
+    }
+
+    /**
+     * One minor fragment per work, a large sheet may be read by several fragments.
+     */
     @Override
     public int getMaxParallelizationWidth() {
-        return 1;
+        return getSplitWorks().size();
     }
 
     @Override
@@ -121,7 +221,13 @@ public class ExcelGroupScan extends AbstractGroupScan {
         return "ExcelGroupScan [ExcelScanSpec="
                 + spec
                 + ", columns="
-                + columns + "]";
+                + columns
+                + ", maxRecords="
+                + maxRecords
+                + ", rowFilter="
+                + rowFilter
+                + ", works="
+                + works + "]";
     }
 
     @Override
@@ -140,9 +246,262 @@ public class ExcelGroupScan extends AbstractGroupScan {
         return true;
     }
 
+    @Override
+    public boolean supportsLimitPushdown() {
+        return true;
+    }
+
+    /**
+     * The reader stops and releases the workbook as soon as the limit is reached.
+     */
+    @Override
+    public GroupScan applyLimit(int maxRecords) {
+        if (maxRecords == this.maxRecords) {
+            return null;
+        }
+        ExcelGroupScan scan = new ExcelGroupScan(this);
+        scan.maxRecords = maxRecords;
+        scan.resetSplits();
+        return scan;
+    }
+
+    /**
+     * Returns a copy of the scan reading only the rows within the filter bounds.
+     */
+    public ExcelGroupScan applyRowFilter(RowFilter rowFilter) {
+        ExcelGroupScan scan = new ExcelGroupScan(this);
+        scan.rowFilter = rowFilter;
+        scan.resetSplits();
+        return scan;
+    }
+
+    /**
+     * Splits depend on the row filter and the limit, the assignments depend on the splits.
+     */
+    private void resetSplits() {
+        splitWorks = null;
+        completeWorks = null;
+        assignments = null;
+    }
+
+    /**
+     * One work per sheet of every file of the location. A table with a worksheet pattern covers
+     * every matching sheet of a file, otherwise just one sheet.
+     */
+    private static List<ExcelWork> listWorks(String userName,
+                                             ExcelStoragePlugin plugin,
+                                             ExcelScanSpec spec) throws IOException {
+        RuntimeExcelTableConfig table = plugin.getConfig().getRuntimeConfig(spec.getTable());
+        DrillFileSystem fs = ImpersonationUtil.createFileSystem(userName, plugin.getFsConf());
+        List<FileStatus> files = WorkbookFiles.list(fs, table.getLocation());
+        if (files.isEmpty()) {
+            throw UserException.validationError()
+                    .message("No Excel files found at %s", table.getLocation())
+                    .build(logger);
+        }
+
+        if (table.getWorksheetPattern() == null) {
+            List<ExcelWork> works = new ArrayList<>();
+            for (FileStatus file : files) {
+                works.add(new ExcelWork(file.getPath().toString(), table.getWorksheet()));
+            }
+            return works;
+        }
+
+        Pattern pattern = Pattern.compile(table.getWorksheetPattern(), Pattern.CASE_INSENSITIVE);
+        List<ExcelWork> works = new ArrayList<>();
+        for (FileStatus file : files) {
+            for (String sheet : WorkbookSheets.list(fs, file.getPath())) {
+                if (pattern.matcher(sheet).matches()) {
+                    works.add(new ExcelWork(file.getPath().toString(), sheet));
+                }
+            }
+        }
+
+        if (works.isEmpty()) {
+            throw UserException.validationError()
+                    .message("No sheets of %s match the pattern %s", table.getLocation(), table.getWorksheetPattern())
+                    .build(logger);
+        }
+        return works;
+    }
+
+    /**
+     * Splits the sheets with more rows than the table's {@code splitRows} into row ranges.
+     * Sheets without a declared extent and sheets evaluating formulas are read whole.
+     */
+    private List<ExcelWork> getSplitWorks() {
+        if (splitWorks != null) {
+            return splitWorks;
+        }
+
+        RuntimeExcelTableConfig table = storagePlugin.getConfig().getRuntimeConfig(spec.getTable());
+        if (table.getSplitRows() <= 0 || table.getFormulaMode() == FormulaMode.EVALUATE) {
+            splitWorks = works;
+            return splitWorks;
+        }
+
+        List<ExcelWork> result = new ArrayList<>();
+        List<SheetStatistics> sheets = getStatistics();
+        for (int i = 0; i < works.size(); i++) {
+            SheetStatistics sheet = sheets.get(i);
+            if (!sheet.hasDimension()) {
+                result.add(works.get(i));
+                continue;
+            }
+
+            //Номер первой строки данных с 1
+            long firstRow = sheet.getFirstRow(table.getCellRange()) + (table.isExtractHeaders() ? 2 : 1);
+            long rowCount = sheet.estimateRowCount(table.getCellRange(), table.isFloatingRangeFooter(), table.isExtractHeaders());
+            if (maxRecords >= 0) {
+                rowCount = Math.min(rowCount, maxRecords);
+            }
+            result.addAll(split(works.get(i), firstRow, rowCount, table.getSplitRows(), rowFilter));
+        }
+
+        if (result.size() > works.size()) {
+            logger.debug("{} sheets of {} are read as {} row ranges", works.size(), spec, result.size());
+        }
+        splitWorks = result;
+        return splitWorks;
+    }
+
+    /**
+     * Splits the data rows of a sheet within the row filter into ranges of about {@code splitRows} rows.
+     * The first range starts at the first sheet row and the last one has no end, so rows outside
+     * the estimated extent are still read exactly once.
+     *
+     * @param firstRow 1-based number of the first data row
+     * @param rowCount estimated count of the data rows
+     */
+    static List<ExcelWork> split(ExcelWork work, long firstRow, long rowCount, int splitRows, RowFilter rowFilter) {
+        long first = firstRow;
+        long last = firstRow + rowCount - 1;
+        if (rowFilter != null) {
+            first = Math.max(first, rowFilter.getFirst());
+            last = Math.min(last, rowFilter.getLast());
+        }
+
+        long rows = last - first + 1;
+        if (rows <= splitRows) {
+            return Collections.singletonList(work);
+        }
+
+        int count = (int) Math.min((rows + splitRows - 1) / splitRows, MAX_SPLITS);
+        List<ExcelWork> parts = new ArrayList<>(count);
+        int start = 1;
+        for (int i = 1; i <= count; i++) {
+            int end = i == count ? Integer.MAX_VALUE : (int) (first + rows * i / count - 1);
+            parts.add(new ExcelWork(work.getPath(), work.getWorksheet(), new RowFilter(start, end)));
+            start = end + 1;
+        }
+        return parts;
+    }
+
+    /**
+     * Looks up the file lengths and block locations once per file. Without them the works are
+     * still spread evenly, just without locality.
+     */
+    private List<ExcelCompleteWork> getCompleteWorks() {
+        if (completeWorks != null) {
+            return completeWorks;
+        }
+
+        List<ExcelCompleteWork> result = new ArrayList<>();
+        try {
+            DrillFileSystem fs = ImpersonationUtil.createFileSystem(getUserName(), storagePlugin.getFsConf());
+            BlockMapBuilder blockMapBuilder = new BlockMapBuilder(fs, storagePlugin.getContext().getBits());
+            Set<String> noDrillbitHosts = new HashSet<>();
+            Map<String, ExcelCompleteWork> files = new HashMap<>();
+            for (ExcelWork work : getSplitWorks()) {
+                ExcelCompleteWork file = files.get(work.getPath());
+                ExcelCompleteWork completeWork;
+                if (file == null) {
+                    completeWork = new ExcelCompleteWork(work, fs.getFileStatus(new Path(work.getPath())).getLen());
+                    completeWork.setByteMap(blockMapBuilder.getEndpointByteMap(noDrillbitHosts, completeWork));
+                    files.put(work.getPath(), completeWork);
+                } else {
+                    //Листы одного файла лежат на тех же узлах
+                    completeWork = new ExcelCompleteWork(work, file.getLength());
+                    completeWork.setByteMap(file.getByteMap());
+                }
+                result.add(completeWork);
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to get block locations of {}, works will be assigned without locality", spec, e);
+            result.clear();
+            for (ExcelWork work : getSplitWorks()) {
+                ExcelCompleteWork completeWork = new ExcelCompleteWork(work, 0);
+                completeWork.setByteMap(new EndpointByteMapImpl());
+                result.add(completeWork);
+            }
+        }
+
+        completeWorks = result;
+        return completeWorks;
+    }
+
+    /**
+     * Estimates the scan from the file lengths, the declared sheet extents and the configured cell range,
+     * narrowed by the pushed row filter, limit and projection.
+     */
     @Override
     public ScanStats getScanStats() {
-        return ScanStats.TRIVIAL_TABLE;
+        RuntimeExcelTableConfig table = storagePlugin.getConfig().getRuntimeConfig(spec.getTable());
+        double rowCount = 0;
+        double cellCount = 0;
+        for (SheetStatistics sheet : getStatistics()) {
+            long rows = sheet.estimateRowCount(table.getCellRange(), table.isFloatingRangeFooter(), table.isExtractHeaders());
+            if (rowFilter != null) {
+                rows = Math.min(rows, Math.max((long) rowFilter.getLast() - rowFilter.getFirst() + 1, 1));
+            }
+            rowCount += rows;
+            cellCount += (double) rows * sheet.estimateColumnCount(table.getCellRange());
+        }
+
+        if (maxRecords >= 0 && maxRecords < rowCount) {
+            cellCount *= Math.max(maxRecords, 1) / rowCount;
+            rowCount = Math.max(maxRecords, 1);
+        }
+
+        double cpuCost = Utilities.isStarQuery(columns) ? cellCount : rowCount * columns.size();
+        double diskCost = cellCount * SheetStatistics.AVERAGE_CELL_WIDTH;
+        return new ScanStats(ScanStats.GroupScanProperty.NO_EXACT_ROW_COUNT, rowCount, cpuCost, diskCost);
     }
 
+    /**
+     * Reads the statistics of every work once per file version, sharing them through the plugin metadata cache.
+     */
+    private List<SheetStatistics> getStatistics() {
+        if (statistics != null) {
+            return statistics;
+        }
+
+        WorkbookMetadataCache cache = storagePlugin.getMetadataCache();
+        List<SheetStatistics> result = new ArrayList<>();
+        DrillFileSystem fs = null;
+        for (ExcelWork work : works) {
+            SheetStatistics sheet;
+            try {
+                if (fs == null) {
+                    fs = ImpersonationUtil.createFileSystem(getUserName(), storagePlugin.getFsConf());
+                }
+                FileStatus status = fs.getFileStatus(new Path(work.getPath()));
+                sheet = cache == null ? null : cache.getStatistics(status, work.getWorksheet());
+                if (sheet == null) {
+                    sheet = WorkbookSheets.readStatistics(fs, status, work.getWorksheet());
+                    if (cache != null) {
+                        cache.putStatistics(status, work.getWorksheet(), sheet);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Unable to read statistics of {}", work, e);
+                sheet = new SheetStatistics(0);
+            }
+            result.add(sheet);
+        }
+
+        statistics = result;
+        return statistics;
+    }
 }
@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel;
+
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.drill.exec.planner.logical.RelOptHelper;
+import org.apache.drill.exec.planner.physical.FilterPrel;
+import org.apache.drill.exec.planner.physical.ScanPrel;
+import org.apache.drill.exec.store.StoragePluginOptimizerRule;
+import org.apache.drill.exec.store.excel.read.ExcelBatchReader;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Turns comparisons of the {@code _excel_row} column with literals into a {@link RowFilter} of the scan,
+ * so the reader skips rows before the lower bound without reading their cells and stops after the upper one.
+ * Only conjuncts of the condition are used; the filter itself stays in the plan.
+ */
+public class ExcelPushRowFilterIntoScan extends StoragePluginOptimizerRule {
+
+    public static final ExcelPushRowFilterIntoScan INSTANCE = new ExcelPushRowFilterIntoScan();
+
+    private ExcelPushRowFilterIntoScan() {
+        super(RelOptHelper.some(FilterPrel.class, RelOptHelper.any(ScanPrel.class)), "ExcelPushRowFilterIntoScan");
+    }
+
+    @Override
+    public boolean matches(RelOptRuleCall call) {
+        ScanPrel scan = call.rel(1);
+        return scan.getGroupScan() instanceof ExcelGroupScan;
+    }
+
+    @Override
+    public void onMatch(RelOptRuleCall call) {
+        FilterPrel filter = call.rel(0);
+        ScanPrel scan = call.rel(1);
+        ExcelGroupScan groupScan = (ExcelGroupScan) scan.getGroupScan();
+
+        RowFilter rowFilter = analyze(filter.getCondition(), scan.getRowType());
+        if (rowFilter == null) {
+            return;
+        }
+
+        rowFilter = rowFilter.intersect(groupScan.getRowFilter());
+        if (rowFilter.equals(groupScan.getRowFilter())) {
+            return;
+        }
+
+        ScanPrel newScan = new ScanPrel(scan.getCluster(),
+                scan.getTraitSet(),
+                groupScan.applyRowFilter(rowFilter),
+                scan.getRowType(),
+                scan.getTable());
+        call.transformTo(filter.copy(filter.getTraitSet(), newScan, filter.getCondition()));
+    }
+
+    /**
+     * Returns the bounds implied by the conjuncts of the condition or {@code null} if there are none.
+     */
+    static RowFilter analyze(RexNode condition, RelDataType rowType) {
+        long first = 1;
+        long last = Integer.MAX_VALUE;
+        boolean found = false;
+        for (RexNode conjunct : RelOptUtil.conjunctions(condition)) {
+            if (!(conjunct instanceof RexCall) || ((RexCall) conjunct).getOperands().size() != 2) {
+                continue;
+            }
+
+            RexCall call = (RexCall) conjunct;
+            SqlKind kind = call.getKind();
+            RexNode left = stripCast(call.getOperands().get(0));
+            RexNode right = stripCast(call.getOperands().get(1));
+            BigDecimal value = isRowColumn(left, rowType) ? numericValue(right) : null;
+            if (value == null && isRowColumn(right, rowType)) {
+                //literal <op> _excel_row
+                value = numericValue(left);
+                kind = kind.reverse();
+            }
+            if (value == null) {
+                continue;
+            }
+
+            switch (kind) {
+                case EQUALS:
+                    first = Math.max(first, ceil(value));
+                    last = Math.min(last, floor(value));
+                    break;
+                case GREATER_THAN:
+                    first = Math.max(first, floor(value) + 1);
+                    break;
+                case GREATER_THAN_OR_EQUAL:
+                    first = Math.max(first, ceil(value));
+                    break;
+                case LESS_THAN:
+                    last = Math.min(last, ceil(value) - 1);
+                    break;
+                case LESS_THAN_OR_EQUAL:
+                    last = Math.min(last, floor(value));
+                    break;
+                default:
+                    continue;
+            }
+            found = true;
+        }
+
+        if (!found) {
+            return null;
+        }
+        //Пустой диапазон: first > last
+        return new RowFilter((int) Math.min(first, Integer.MAX_VALUE), (int) Math.max(last, 0));
+    }
+
+    private static RexNode stripCast(RexNode node) {
+        while (node.getKind() == SqlKind.CAST) {
+            node = ((RexCall) node).getOperands().get(0);
+        }
+        return node;
+    }
+
+    private static boolean isRowColumn(RexNode node, RelDataType rowType) {
+        return node instanceof RexInputRef
+                && ExcelBatchReader.ROW_NUMBER_COLUMN.equalsIgnoreCase(
+                        rowType.getFieldNames().get(((RexInputRef) node).getIndex()));
+    }
+
+    private static BigDecimal numericValue(RexNode node) {
+        if (!(node instanceof RexLiteral)) {
+            return null;
+        }
+        Comparable<?> value = ((RexLiteral) node).getValue();
+        return value instanceof BigDecimal ? (BigDecimal) value : null;
+    }
+
+    private static long floor(BigDecimal value) {
+        return clamp(value.setScale(0, RoundingMode.FLOOR));
+    }
+
+    private static long ceil(BigDecimal value) {
+        return clamp(value.setScale(0, RoundingMode.CEILING));
+    }
+
+    private static long clamp(BigDecimal value) {
+        return value.max(BigDecimal.valueOf(Integer.MIN_VALUE)).min(BigDecimal.valueOf(Integer.MAX_VALUE)).longValue();
+    }
+}
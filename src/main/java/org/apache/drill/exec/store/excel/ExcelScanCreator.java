@@ -18,19 +18,22 @@
 package org.apache.drill.exec.store.excel;
 
 import org.apache.drill.common.exceptions.ExecutionSetupException;
+import org.apache.drill.common.types.TypeProtos;
+import org.apache.drill.common.types.Types;
+import org.apache.drill.exec.ExecConstants;
 import org.apache.drill.exec.ops.ExecutorFragmentContext;
-import org.apache.drill.exec.ops.FragmentContext;
-import org.apache.drill.exec.ops.OperatorContext;
 import org.apache.drill.exec.physical.impl.BatchCreator;
-import org.apache.drill.exec.physical.impl.ScanBatch;
+import org.apache.drill.exec.physical.impl.scan.framework.BasicScanFactory;
+import org.apache.drill.exec.physical.impl.scan.framework.ManagedReader;
+import org.apache.drill.exec.physical.impl.scan.framework.ManagedScanFramework.ScanFrameworkBuilder;
+import org.apache.drill.exec.physical.impl.scan.framework.SchemaNegotiator;
+import org.apache.drill.exec.physical.impl.scan.project.ScanSchemaOrchestrator;
 import org.apache.drill.exec.record.CloseableRecordBatch;
 import org.apache.drill.exec.record.RecordBatch;
-import org.apache.drill.exec.store.RecordReader;
-import org.apache.drill.exec.store.dfs.DrillFileSystem;
-import org.apache.drill.exec.store.excel.read.ExcelRecordReader;
+import org.apache.drill.exec.server.options.OptionManager;
+import org.apache.drill.exec.store.excel.read.ExcelBatchReader;
 
-import java.io.IOException;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -39,30 +42,48 @@ import java.util.List;
 @SuppressWarnings("unused")
 public class ExcelScanCreator implements BatchCreator<ExcelSubScan> {
 
-    private CloseableRecordBatch createBatchScan(FragmentContext context, ExcelSubScan scan) throws
-            IOException {
+    @Override
+    public CloseableRecordBatch getBatch(ExecutorFragmentContext context,
+                                         ExcelSubScan scan,
+                                         List<RecordBatch> children) throws ExecutionSetupException {
+        assert children == null || children.isEmpty();
 
         ExcelStoragePlugin storagePlugin = scan.getStoragePlugin();
-        OperatorContext operatorContext = context.newOperatorContext(scan);
-        DrillFileSystem dfs = operatorContext.newFileSystem(storagePlugin.getFsConf());
-
         RuntimeExcelTableConfig runtimeConfig = scan.getStoragePluginConfig().getRuntimeConfig(scan.getSpec().getTable());
 
-        RecordReader reader = new ExcelRecordReader(dfs, scan.getColumns(), runtimeConfig);
+        List<ManagedReader<SchemaNegotiator>> readers = new ArrayList<>();
+        for (ExcelWork work : scan.getWorks()) {
+            //Часть листа читается как фильтр по номерам строк
+            RowFilter rowFilter = work.getRows() == null
+                    ? scan.getRowFilter()
+                    : work.getRows().intersect(scan.getRowFilter());
+            readers.add(new ExcelBatchReader(scan.getColumns(),
+                    runtimeConfig.forWork(work),
+                    storagePlugin.getFsConf(),
+                    storagePlugin.getFileCache(),
+                    storagePlugin.getMetadataCache(),
+                    storagePlugin.getParsingExecutors(),
+                    scan.getMaxRecords(),
+                    rowFilter));
+        }
 
-        return new ScanBatch(context, operatorContext, Collections.singletonList(reader), Collections.emptyList());
+        ScanFrameworkBuilder builder = new ScanFrameworkBuilder();
+        builder.setUserName(scan.getUserName());
+        builder.setProjection(scan.getColumns());
+        builder.setReaderFactory(new BasicScanFactory(readers.iterator()));
+        configureBatches(builder, context.getOptions());
+        return builder.buildScanOperator(context, scan);
     }
 
-
-    @Override
-    public CloseableRecordBatch getBatch(ExecutorFragmentContext context,
-                                         ExcelSubScan scan,
-                                         List<RecordBatch> children) throws ExecutionSetupException {
-        assert children == null || children.isEmpty();
-        try {
-            return createBatchScan(context, scan);
-        } catch (IOException e) {
-            throw new ExecutionSetupException(e);
-        }
+    /**
+     * Batches are limited by the operator output batch size rather than by a row count,
+     * so narrow sheets get long batches and wide ones short. Projected columns missing
+     * in a sheet are read as nullable VARCHAR like the sheet columns.
+     */
+    static void configureBatches(ScanFrameworkBuilder builder, OptionManager options) {
+        builder.setBatchByteLimit((int) Math.min(options.getLong(ExecConstants.OUTPUT_BATCH_SIZE),
+                ScanSchemaOrchestrator.MAX_BATCH_BYTE_SIZE));
+        builder.setBatchRecordLimit(ScanSchemaOrchestrator.MAX_BATCH_ROW_COUNT);
+        builder.setNullType(Types.optional(TypeProtos.MinorType.VARCHAR));
     }
-}
\ No newline at end of file
+}
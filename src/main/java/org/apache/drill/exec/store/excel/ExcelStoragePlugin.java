@@ -19,22 +19,30 @@ package org.apache.drill.exec.store.excel;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.calcite.plan.RelOptRule;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.drill.common.JSONOptions;
 import org.apache.drill.common.exceptions.ExecutionSetupException;
 import org.apache.drill.common.expression.SchemaPath;
+import org.apache.drill.exec.ops.OptimizerRulesContext;
 import org.apache.drill.exec.physical.base.AbstractGroupScan;
+import org.apache.drill.exec.planner.PlannerPhase;
 import org.apache.drill.exec.server.DrillbitContext;
 import org.apache.drill.exec.store.AbstractStoragePlugin;
 import org.apache.drill.exec.store.ClassPathFileSystem;
 import org.apache.drill.exec.store.LocalSyncableFileSystem;
 import org.apache.drill.exec.store.SchemaConfig;
+import org.apache.drill.exec.store.excel.cache.WorkbookFileCache;
+import org.apache.drill.exec.store.excel.cache.WorkbookMetadataCache;
+import org.apache.drill.exec.store.excel.read.ParsingExecutors;
+import org.apache.drill.shaded.guava.com.google.common.collect.ImmutableSet;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Created by mnasyrov on 10.08.2017.
@@ -45,6 +53,9 @@ public class ExcelStoragePlugin extends AbstractStoragePlugin {
     private final ExcelSchemaFactory schemaFactory;
     private final ExcelStoragePluginConfig config;
     private final Configuration fsConf;
+    private final WorkbookFileCache fileCache;
+    private final WorkbookMetadataCache metadataCache;
+    private final ParsingExecutors parsingExecutors;
 
     public ExcelStoragePlugin(ExcelStoragePluginConfig config, DrillbitContext context, String name) {
         super(context, name);
@@ -60,6 +71,9 @@ public class ExcelStoragePlugin extends AbstractStoragePlugin {
         fsConf.set("fs.classpath.impl", ClassPathFileSystem.class.getName());
         fsConf.set("fs.drill-local.impl", LocalSyncableFileSystem.class.getName());
         this.schemaFactory = new ExcelSchemaFactory(name, this);
+        this.fileCache = WorkbookFileCache.getInstance(context.getConfig());
+        this.metadataCache = WorkbookMetadataCache.create(context.getConfig());
+        this.parsingExecutors = ParsingExecutors.getInstance(context.getConfig());
     }
 
     @Override
@@ -79,6 +93,14 @@ public class ExcelStoragePlugin extends AbstractStoragePlugin {
         return new ExcelGroupScan(userName, this, scanSpec, columns);
     }
 
+    @Override
+    public Set<? extends RelOptRule> getOptimizerRules(OptimizerRulesContext optimizerContext, PlannerPhase phase) {
+        //Фильтр по _excel_row применяется к физическому плану
+        return phase == PlannerPhase.PHYSICAL
+                ? ImmutableSet.of(ExcelPushRowFilterIntoScan.INSTANCE)
+                : ImmutableSet.of();
+    }
+
     @Override
     public void registerSchemas(SchemaConfig schemaConfig, SchemaPlus parent) {
         schemaFactory.registerSchemas(schemaConfig, parent);
@@ -87,4 +109,16 @@ public class ExcelStoragePlugin extends AbstractStoragePlugin {
     Configuration getFsConf() {
         return fsConf;
     }
+
+    WorkbookFileCache getFileCache() {
+        return fileCache;
+    }
+
+    WorkbookMetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    ParsingExecutors getParsingExecutors() {
+        return parsingExecutors;
+    }
 }
\ No newline at end of file
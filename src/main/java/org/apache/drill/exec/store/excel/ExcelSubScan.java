@@ -38,20 +38,41 @@ public class ExcelSubScan extends AbstractSubScan {
     private final List<SchemaPath> columns;
     private final ExcelStoragePlugin storagePlugin;
     private final ExcelStoragePluginConfig storagePluginConfig;
+    private final int maxRecords;
+    private final RowFilter rowFilter;
+    private final List<ExcelWork> works;
 
     @JsonCreator
     private ExcelSubScan(@JsonProperty("userName") String userName,
                         @JsonProperty("spec") ExcelScanSpec excelScanSpec,
                         @JsonProperty("columns") List<SchemaPath> columns,
                         @JsonProperty("storagePluginConfig") ExcelStoragePluginConfig storagePluginConfig,
+                        @JsonProperty("maxRecords") Integer maxRecords,
+                        @JsonProperty("rowFilter") RowFilter rowFilter,
+                        @JsonProperty("works") List<ExcelWork> works,
                         @JacksonInject StoragePluginRegistry pluginRegistry) throws IOException, ExecutionSetupException {
-        this (userName, excelScanSpec, (ExcelStoragePlugin) pluginRegistry.getPlugin(storagePluginConfig), columns);
+        this (userName,
+                excelScanSpec,
+                (ExcelStoragePlugin) pluginRegistry.getPlugin(storagePluginConfig),
+                columns,
+                maxRecords == null ? -1 : maxRecords,
+                rowFilter,
+                works);
     }
 
-    ExcelSubScan(String userName, ExcelScanSpec spec, ExcelStoragePlugin storagePlugin, List<SchemaPath> columns) {
+    ExcelSubScan(String userName,
+                 ExcelScanSpec spec,
+                 ExcelStoragePlugin storagePlugin,
+                 List<SchemaPath> columns,
+                 int maxRecords,
+                 RowFilter rowFilter,
+                 List<ExcelWork> works) {
         super(userName);
         this.spec = spec;
         this.columns = columns;
+        this.maxRecords = maxRecords;
+        this.rowFilter = rowFilter;
+        this.works = works;
         this.storagePlugin = storagePlugin;
         this.storagePluginConfig = storagePlugin.getConfig();
         initialAllocation = 100;
@@ -77,6 +98,30 @@ public class ExcelSubScan extends AbstractSubScan {
         return this.columns;
     }
 
+    /**
+     * Maximum number of rows to read, -1 means no limit.
+     */
+    @JsonProperty
+    public int getMaxRecords() {
+        return maxRecords;
+    }
+
+    /**
+     * Bounds of the {@code _excel_row} column or {@code null} if all rows are read.
+     */
+    @JsonProperty
+    public RowFilter getRowFilter() {
+        return rowFilter;
+    }
+
+    /**
+     * Sheets read by this fragment, each by its own reader.
+     */
+    @JsonProperty
+    public List<ExcelWork> getWorks() {
+        return works;
+    }
+
     @JsonIgnore
     ExcelStoragePlugin getStoragePlugin() {
         return storagePlugin;
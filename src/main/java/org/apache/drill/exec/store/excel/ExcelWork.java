@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+/**
+ * Unit of work of an Excel scan: one sheet of one file or a range of rows of a large sheet.
+ */
+public class ExcelWork {
+
+    private final String path;
+    private final String worksheet;
+    private final RowFilter rows;
+
+    public ExcelWork(String path, String worksheet) {
+        this(path, worksheet, null);
+    }
+
+    @JsonCreator
+    public ExcelWork(@JsonProperty("path") String path,
+                     @JsonProperty("worksheet") String worksheet,
+                     @JsonProperty("rows") RowFilter rows) {
+        this.path = path;
+        this.worksheet = worksheet;
+        this.rows = rows;
+    }
+
+    @JsonProperty
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Sheet name, {@code null} means the first sheet.
+     */
+    @JsonProperty
+    public String getWorksheet() {
+        return worksheet;
+    }
+
+    /**
+     * Rows of the sheet read by this work, {@code null} means the whole sheet.
+     */
+    @JsonProperty
+    public RowFilter getRows() {
+        return rows;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ExcelWork that = (ExcelWork) o;
+        return Objects.equals(path, that.path) &&
+                Objects.equals(worksheet, that.worksheet) &&
+                Objects.equals(rows, that.rows);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(path, worksheet, rows);
+    }
+
+    @Override
+    public String toString() {
+        String work = worksheet == null ? path : path + "#" + worksheet;
+        return rows == null ? work : work + rows;
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+/**
+ * Bounds of the {@code _excel_row} column pushed into a scan: 1-based sheet row numbers, inclusive.
+ * A filter with {@code first > last} matches no rows.
+ */
+public class RowFilter {
+
+    private final int first;
+    private final int last;
+
+    @JsonCreator
+    public RowFilter(@JsonProperty("first") int first,
+                     @JsonProperty("last") int last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    @JsonProperty
+    public int getFirst() {
+        return first;
+    }
+
+    @JsonProperty
+    public int getLast() {
+        return last;
+    }
+
+    RowFilter intersect(RowFilter other) {
+        return other == null ? this : new RowFilter(Math.max(first, other.first), Math.min(last, other.last));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RowFilter that = (RowFilter) o;
+        return first == that.first &&
+                last == that.last;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(first, last);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + first + ", " + last + "]";
+    }
+}
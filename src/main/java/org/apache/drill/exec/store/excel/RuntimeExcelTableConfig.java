@@ -19,6 +19,7 @@ package org.apache.drill.exec.store.excel;
 
 import org.apache.drill.exec.store.excel.config.ExcelFormatConfig;
 import org.apache.drill.exec.store.excel.config.ExcelTableConfig;
+import org.apache.drill.exec.store.excel.config.FormulaMode;
 import org.apache.hadoop.fs.Path;
 
 import java.util.Objects;
@@ -30,33 +31,66 @@ public class RuntimeExcelTableConfig {
 
     private final Path location;
     private final String worksheet;
+    private final String worksheetPattern;
     private final String cellRange;
     private final boolean floatingRangeFooter;
     private final boolean extractHeaders;
-    private final boolean evaluateFormula;
+    private final FormulaMode formulaMode;
+    private final boolean inferColumnTypes;
+    private final boolean pipelinedParsing;
+    private final int splitRows;
     private final boolean closeFS;
 
     RuntimeExcelTableConfig(ExcelStoragePluginConfig storagePluginConfig,
                             ExcelTableConfig tableConfig) {
         this.location = new Path(storagePluginConfig.getConnection(), tableConfig.getLocation());
         this.worksheet = tableConfig.getWorksheet();
+        this.worksheetPattern = tableConfig.getWorksheetPattern();
         this.cellRange = tableConfig.getCellRange();
         this.floatingRangeFooter = tableConfig.isFloatingRangeFooter();
         this.extractHeaders = tableConfig.isExtractHeaders();
-        this.evaluateFormula = tableConfig.isEvaluateFormula();
+        this.formulaMode = tableConfig.getFormulaMode();
+        this.inferColumnTypes = tableConfig.isInferColumnTypes();
+        this.pipelinedParsing = tableConfig.isPipelinedParsing();
+        this.splitRows = tableConfig.getSplitRows();
         this.closeFS = true;
     }
 
     RuntimeExcelTableConfig(Path location, ExcelFormatConfig formatConfig) {
         this.location = location;
         this.extractHeaders = formatConfig.isExtractHeaders();
-        this.evaluateFormula = formatConfig.isEvaluateFormula();
+        this.formulaMode = formatConfig.getFormulaMode();
+        this.inferColumnTypes = formatConfig.isInferColumnTypes();
+        this.pipelinedParsing = formatConfig.isPipelinedParsing();
+        this.splitRows = 0;
         this.worksheet = null;
+        this.worksheetPattern = null;
         this.cellRange = null;
         this.floatingRangeFooter = false;
         this.closeFS = false;
     }
 
+    private RuntimeExcelTableConfig(RuntimeExcelTableConfig that, Path location, String worksheet) {
+        this.location = location;
+        this.worksheet = worksheet;
+        this.worksheetPattern = null;
+        this.cellRange = that.cellRange;
+        this.floatingRangeFooter = that.floatingRangeFooter;
+        this.extractHeaders = that.extractHeaders;
+        this.formulaMode = that.formulaMode;
+        this.inferColumnTypes = that.inferColumnTypes;
+        this.pipelinedParsing = that.pipelinedParsing;
+        this.splitRows = that.splitRows;
+        this.closeFS = that.closeFS;
+    }
+
+    /**
+     * Config of a single sheet of a single file covered by this table.
+     */
+    RuntimeExcelTableConfig forWork(ExcelWork work) {
+        return new RuntimeExcelTableConfig(this, new Path(work.getPath()), work.getWorksheet());
+    }
+
     public Path getLocation() {
         return location;
     }
@@ -65,6 +99,13 @@ public class RuntimeExcelTableConfig {
         return worksheet;
     }
 
+    /**
+     * Regular expression matching the names of the sheets the table covers, {@code null} for a single sheet.
+     */
+    public String getWorksheetPattern() {
+        return worksheetPattern;
+    }
+
     public String getCellRange() {
         return cellRange;
     }
@@ -77,8 +118,27 @@ public class RuntimeExcelTableConfig {
         return floatingRangeFooter;
     }
 
-    public boolean isEvaluateFormula() {
-        return evaluateFormula;
+    public FormulaMode getFormulaMode() {
+        return formulaMode;
+    }
+
+    public boolean isInferColumnTypes() {
+        return inferColumnTypes;
+    }
+
+    /**
+     * Whether a streamed sheet is parsed ahead of the reader on a separate thread.
+     */
+    public boolean isPipelinedParsing() {
+        return pipelinedParsing;
+    }
+
+    /**
+     * Sheets with more data rows are split into parts of about this many rows scanned by separate fragments,
+     * 0 - every sheet is scanned by one fragment.
+     */
+    public int getSplitRows() {
+        return splitRows;
     }
 
     public boolean isCloseFS() {
@@ -92,15 +152,19 @@ public class RuntimeExcelTableConfig {
         RuntimeExcelTableConfig that = (RuntimeExcelTableConfig) o;
         return floatingRangeFooter == that.floatingRangeFooter &&
                 extractHeaders == that.extractHeaders &&
-                evaluateFormula == that.evaluateFormula &&
+                formulaMode == that.formulaMode &&
+                inferColumnTypes == that.inferColumnTypes &&
+                pipelinedParsing == that.pipelinedParsing &&
+                splitRows == that.splitRows &&
                 closeFS == that.closeFS &&
                 Objects.equals(location, that.location) &&
                 Objects.equals(worksheet, that.worksheet) &&
+                Objects.equals(worksheetPattern, that.worksheetPattern) &&
                 Objects.equals(cellRange, that.cellRange);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(location, worksheet, cellRange, floatingRangeFooter, extractHeaders, evaluateFormula, closeFS);
+        return Objects.hash(location, worksheet, worksheetPattern, cellRange, floatingRangeFooter, extractHeaders, formulaMode, inferColumnTypes, pipelinedParsing, splitRows, closeFS);
     }
 }
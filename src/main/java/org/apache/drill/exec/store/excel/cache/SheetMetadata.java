@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.cache;
+
+import org.apache.drill.common.types.TypeProtos;
+
+/**
+ * Facts about a sheet derived by a scan: the resolved sheet name,
+ * the cell range (0-based, inclusive, including the header row), the column names
+ * and the inferred column types.
+ */
+public class SheetMetadata {
+
+    private final String sheetName;
+    private final int rowStart;
+    private final int rowEnd;
+    private final int colStart;
+    private final int colEnd;
+    private final String[] headers;
+    private final TypeProtos.MinorType[] types;
+
+    public SheetMetadata(String sheetName,
+                         int rowStart,
+                         int rowEnd,
+                         int colStart,
+                         int colEnd,
+                         String[] headers,
+                         TypeProtos.MinorType[] types) {
+        this.sheetName = sheetName;
+        this.rowStart = rowStart;
+        this.rowEnd = rowEnd;
+        this.colStart = colStart;
+        this.colEnd = colEnd;
+        this.headers = headers;
+        this.types = types;
+    }
+
+    public String getSheetName() {
+        return sheetName;
+    }
+
+    public int getRowStart() {
+        return rowStart;
+    }
+
+    public int getRowEnd() {
+        return rowEnd;
+    }
+
+    public int getColStart() {
+        return colStart;
+    }
+
+    public int getColEnd() {
+        return colEnd;
+    }
+
+    public String[] getHeaders() {
+        return headers.clone();
+    }
+
+    /**
+     * Column types or {@code null} if the types were not inferred.
+     */
+    public TypeProtos.MinorType[] getTypes() {
+        return types == null ? null : types.clone();
+    }
+
+    public int getRowCount() {
+        return rowEnd - rowStart + 1;
+    }
+
+    public int getColumnCount() {
+        return colEnd - colStart + 1;
+    }
+}
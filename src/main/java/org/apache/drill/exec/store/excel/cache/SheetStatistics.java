@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.cache;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+
+/**
+ * Facts about a sheet known without reading its data: the file length and the extent
+ * declared by the {@code <dimension>} element of an OOXML sheet (0-based, inclusive).
+ * Used to estimate the size of a scan at planning time.
+ */
+public class SheetStatistics {
+
+    public static final int UNKNOWN = -1;
+
+    //Средний размер ячейки в сжатом файле, если протяженность листа неизвестна
+    static final int FILE_BYTES_PER_CELL = 12;
+    static final int DEFAULT_COLUMN_COUNT = 10;
+    public static final int AVERAGE_CELL_WIDTH = 8;
+
+    private final long fileLength;
+    private final int rowStart;
+    private final int rowEnd;
+    private final int colStart;
+    private final int colEnd;
+
+    public SheetStatistics(long fileLength, int rowStart, int rowEnd, int colStart, int colEnd) {
+        this.fileLength = fileLength;
+        this.rowStart = rowStart;
+        this.rowEnd = rowEnd;
+        this.colStart = colStart;
+        this.colEnd = colEnd;
+    }
+
+    /**
+     * Statistics of a sheet without a declared extent.
+     */
+    public SheetStatistics(long fileLength) {
+        this(fileLength, UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN);
+    }
+
+    public long getFileLength() {
+        return fileLength;
+    }
+
+    public boolean hasDimension() {
+        return rowEnd != UNKNOWN;
+    }
+
+    /**
+     * Estimated count of the data rows read from the sheet, at least one.
+     *
+     * @param cellRange      configured range or {@code null} to read the whole sheet
+     * @param floatingFooter whether the range ends at the last row of the sheet
+     * @param extractHeaders whether the first row holds the column names
+     */
+    public long estimateRowCount(String cellRange, boolean floatingFooter, boolean extractHeaders) {
+        long rows;
+        if (cellRange != null) {
+            CellRangeAddress range = CellRangeAddress.valueOf(cellRange);
+            long lastRow = floatingFooter ? getLastRow(range.getFirstRow()) : range.getLastRow();
+            rows = lastRow - range.getFirstRow() + 1;
+        } else if (hasDimension()) {
+            rows = rowEnd - rowStart + 1;
+        } else {
+            rows = fileLength / FILE_BYTES_PER_CELL / DEFAULT_COLUMN_COUNT;
+        }
+
+        if (extractHeaders) {
+            rows--;
+        }
+        return Math.max(rows, 1);
+    }
+
+    /**
+     * 0-based first row of the configured range or of the declared extent, 0 if neither is known.
+     */
+    public int getFirstRow(String cellRange) {
+        if (cellRange != null) {
+            return CellRangeAddress.valueOf(cellRange).getFirstRow();
+        }
+        return hasDimension() ? rowStart : 0;
+    }
+
+    public int estimateColumnCount(String cellRange) {
+        if (cellRange != null) {
+            CellRangeAddress range = CellRangeAddress.valueOf(cellRange);
+            return range.getLastColumn() - range.getFirstColumn() + 1;
+        }
+        return hasDimension() ? colEnd - colStart + 1 : DEFAULT_COLUMN_COUNT;
+    }
+
+    private long getLastRow(int firstRow) {
+        if (hasDimension()) {
+            return rowEnd;
+        }
+        return firstRow + fileLength / FILE_BYTES_PER_CELL / DEFAULT_COLUMN_COUNT;
+    }
+
+    @Override
+    public String toString() {
+        return hasDimension()
+                ? String.format("%d bytes, rows %d-%d, columns %d-%d", fileLength, rowStart, rowEnd, colStart, colEnd)
+                : fileLength + " bytes";
+    }
+}
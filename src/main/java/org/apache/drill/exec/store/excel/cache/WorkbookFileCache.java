@@ -0,0 +1,308 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.cache;
+
+import com.codahale.metrics.Gauge;
+import org.apache.drill.common.config.DrillConfig;
+import org.apache.drill.exec.metrics.DrillMetrics;
+import org.apache.drill.shaded.guava.com.google.common.hash.Hashing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Drillbit-wide disk cache of remote workbooks.
+ * <p>
+ * Files are addressed by a hash of the source path, modification time, length and variant
+ * (e.g. a single sheet extracted from a workbook), so a modified source file never hits a stale entry.
+ * The cache keeps the total size of files within the configured budget and evicts least recently used
+ * entries. Entries leased by running readers are never evicted.
+ * Concurrent requests for the same file wait for a single download.
+ */
+public class WorkbookFileCache {
+
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(WorkbookFileCache.class);
+
+    public static final String ENABLED_KEY = "drill.exec.storage.excel.cache.enabled";
+    public static final String DIRECTORY_KEY = "drill.exec.storage.excel.cache.directory";
+    public static final String SIZE_KEY = "drill.exec.storage.excel.cache.size";
+
+    private static final String METRIC_PREFIX = "drill.exec.storage.excel.cache.";
+    private static final String PART_SUFFIX = ".part";
+
+    private static WorkbookFileCache instance;
+
+    private final File directory;
+    private final long maxSize;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    WorkbookFileCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        restore();
+    }
+
+    /**
+     * Returns the cache shared by all plugins of the Drillbit or {@code null} if the cache is disabled.
+     */
+    public static synchronized WorkbookFileCache getInstance(DrillConfig config) {
+        if (!config.getBoolean(ENABLED_KEY)) {
+            return null;
+        }
+
+        if (instance == null) {
+            instance = new WorkbookFileCache(new File(config.getString(DIRECTORY_KEY)), config.getBytes(SIZE_KEY));
+            DrillMetrics.register(METRIC_PREFIX + "hits", (Gauge<Long>) instance::getHitCount);
+            DrillMetrics.register(METRIC_PREFIX + "misses", (Gauge<Long>) instance::getMissCount);
+            DrillMetrics.register(METRIC_PREFIX + "evictions", (Gauge<Long>) instance::getEvictionCount);
+            DrillMetrics.register(METRIC_PREFIX + "size", (Gauge<Long>) instance::getSize);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns a lease of the cached file, loading it on a miss.
+     *
+     * @param path             source file path
+     * @param modificationTime source file modification time
+     * @param length           source file length
+     * @param variant          kind of the cached content, empty string for a full copy
+     * @param loader           writes the content to the given file
+     */
+    public Lease acquire(String path,
+                         long modificationTime,
+                         long length,
+                         String variant,
+                         Loader loader) throws IOException {
+        String name = fileName(path, modificationTime, length, variant);
+        Entry entry;
+        boolean load = false;
+        synchronized (this) {
+            entry = entries.get(name);
+            if (entry == null) {
+                entry = new Entry(name, new File(directory, name));
+                entries.put(name, entry);
+                missCount++;
+                load = true;
+            } else {
+                hitCount++;
+            }
+            entry.leases++;
+        }
+
+        if (load) {
+            load(entry, loader);
+        } else {
+            await(entry);
+        }
+
+        logger.debug("{} {} of {}", load ? "Cached" : "Reused", variant.isEmpty() ? "copy" : variant, path);
+        return new Lease(entry);
+    }
+
+    /**
+     * Returns a lease of the cached file or {@code null} if it is absent or still loading.
+     */
+    public synchronized Lease tryAcquire(String path, long modificationTime, long length, String variant) {
+        Entry entry = entries.get(fileName(path, modificationTime, length, variant));
+        if (entry == null || !entry.loaded.isDone() || entry.loaded.isCompletedExceptionally()) {
+            return null;
+        }
+        hitCount++;
+        entry.leases++;
+        return new Lease(entry);
+    }
+
+    /**
+     * Creates a scratch file in the cache directory, e.g. for data of a workbook too large for the heap.
+     * Scratch files are not cached and are deleted by the caller, files left by a failed run are deleted on restart.
+     */
+    public File createTempFile(String prefix) throws IOException {
+        Files.createDirectories(directory.toPath());
+        return File.createTempFile(prefix, PART_SUFFIX, directory);
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private void load(Entry entry, Loader loader) throws IOException {
+        File part = new File(directory, entry.name + PART_SUFFIX);
+        try {
+            Files.createDirectories(directory.toPath());
+            loader.load(part);
+            Files.move(part.toPath(), entry.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                entries.remove(entry.name, entry);
+                entry.leases--;
+            }
+            //noinspection ResultOfMethodCallIgnored
+            part.delete();
+            entry.loaded.completeExceptionally(e);
+            throw e;
+        }
+
+        synchronized (this) {
+            entry.size = entry.file.length();
+            size += entry.size;
+            entry.loaded.complete(entry.file);
+            evict();
+        }
+    }
+
+    private void await(Entry entry) throws IOException {
+        try {
+            entry.loaded.get();
+        } catch (InterruptedException e) {
+            release(entry);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + entry.file, e);
+        } catch (ExecutionException e) {
+            release(entry);
+            throw new IOException("Unable to cache " + entry.file, e.getCause());
+        }
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.leases--;
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.leases == 0 && entry.loaded.isDone()) {
+                iterator.remove();
+                size -= entry.size;
+                evictionCount++;
+                if (!entry.file.delete()) {
+                    logger.warn("Unable to delete cached file {}", entry.file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adopts files left by a previous run, the least recently modified first.
+     */
+    private void restore() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (file.getName().endsWith(PART_SUFFIX)) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            } else if (file.isFile()) {
+                Entry entry = new Entry(file.getName(), file);
+                entry.size = file.length();
+                entry.loaded.complete(file);
+                entries.put(entry.name, entry);
+                size += entry.size;
+            }
+        }
+        evict();
+    }
+
+    private static String fileName(String path, long modificationTime, long length, String variant) {
+        return Hashing.sha256()
+                .newHasher()
+                .putString(path, StandardCharsets.UTF_8)
+                .putLong(modificationTime)
+                .putLong(length)
+                .putString(variant, StandardCharsets.UTF_8)
+                .hash()
+                .toString();
+    }
+
+    /**
+     * Writes the content of a cache entry.
+     */
+    public interface Loader {
+        void load(File target) throws IOException;
+    }
+
+    private static class Entry {
+        private final String name;
+        private final File file;
+        private final CompletableFuture<File> loaded = new CompletableFuture<>();
+        private long size;
+        private int leases;
+
+        Entry(String name, File file) {
+            this.name = name;
+            this.file = file;
+        }
+    }
+
+    /**
+     * Keeps a cached file from eviction until closed.
+     */
+    public class Lease implements AutoCloseable {
+        private final Entry entry;
+        private boolean closed;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        public File getFile() {
+            return entry.file;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(entry);
+            }
+        }
+    }
+}
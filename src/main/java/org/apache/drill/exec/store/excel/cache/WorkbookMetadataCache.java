@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.cache;
+
+import org.apache.drill.common.config.DrillConfig;
+import org.apache.drill.exec.store.excel.RuntimeExcelTableConfig;
+import org.apache.drill.shaded.guava.com.google.common.cache.Cache;
+import org.apache.drill.shaded.guava.com.google.common.cache.CacheBuilder;
+import org.apache.hadoop.fs.FileStatus;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plugin-level cache of {@link SheetMetadata}, so repeated scans of an unchanged file
+ * skip range detection and header parsing, and of {@link SheetStatistics} used by the planner.
+ * <p>
+ * Entries are keyed by the table config (the sheet for statistics) and the file modification time and length,
+ * and expire after the configured TTL.
+ */
+public class WorkbookMetadataCache {
+
+    public static final String TTL_KEY = "drill.exec.storage.excel.metadata_cache.ttl";
+    public static final String SIZE_KEY = "drill.exec.storage.excel.metadata_cache.size";
+
+    private final Cache<Key, SheetMetadata> cache;
+    private final Cache<StatisticsKey, SheetStatistics> statistics;
+
+    WorkbookMetadataCache(long ttlMillis, long maxSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .maximumSize(maxSize)
+                .build();
+        this.statistics = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    /**
+     * Creates a cache for a plugin or returns {@code null} if the cache is disabled.
+     */
+    public static WorkbookMetadataCache create(DrillConfig config) {
+        long maxSize = config.getLong(SIZE_KEY);
+        if (maxSize <= 0) {
+            return null;
+        }
+        return new WorkbookMetadataCache(config.getMilliseconds(TTL_KEY), maxSize);
+    }
+
+    public SheetMetadata get(RuntimeExcelTableConfig table, FileStatus status) {
+        return cache.getIfPresent(new Key(table, status));
+    }
+
+    public void put(RuntimeExcelTableConfig table, FileStatus status, SheetMetadata metadata) {
+        cache.put(new Key(table, status), metadata);
+    }
+
+    /**
+     * Statistics of the sheet ({@code null} means the first one) of the file.
+     */
+    public SheetStatistics getStatistics(FileStatus status, String worksheet) {
+        return statistics.getIfPresent(new StatisticsKey(status, worksheet));
+    }
+
+    public void putStatistics(FileStatus status, String worksheet, SheetStatistics sheetStatistics) {
+        statistics.put(new StatisticsKey(status, worksheet), sheetStatistics);
+    }
+
+    private static class Key {
+        private final RuntimeExcelTableConfig table;
+        private final long modificationTime;
+        private final long length;
+
+        Key(RuntimeExcelTableConfig table, FileStatus status) {
+            this.table = table;
+            this.modificationTime = status.getModificationTime();
+            this.length = status.getLen();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key that = (Key) o;
+            return modificationTime == that.modificationTime &&
+                    length == that.length &&
+                    Objects.equals(table, that.table);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(table, modificationTime, length);
+        }
+    }
+
+    private static class StatisticsKey {
+        private final String path;
+        private final String worksheet;
+        private final long modificationTime;
+        private final long length;
+
+        StatisticsKey(FileStatus status, String worksheet) {
+            this.path = status.getPath().toString();
+            this.worksheet = worksheet;
+            this.modificationTime = status.getModificationTime();
+            this.length = status.getLen();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            StatisticsKey that = (StatisticsKey) o;
+            return modificationTime == that.modificationTime &&
+                    length == that.length &&
+                    Objects.equals(path, that.path) &&
+                    Objects.equals(worksheet, that.worksheet);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, worksheet, modificationTime, length);
+        }
+    }
+}
@@ -36,19 +36,26 @@ public class ExcelFormatConfig implements FormatPluginConfig {
 
     private final List<String> extensions;
     private final boolean extractHeaders;
-    private final boolean evaluateFormula;
+    private final FormulaMode formulaMode;
+    private final boolean inferColumnTypes;
+    private final boolean pipelinedParsing;
 
     private ExcelFormatConfig() {
-        this(null, null, null);
+        this(null, null, null, null, null, null);
     }
 
     @JsonCreator
     private ExcelFormatConfig(@JsonProperty("extensions") List<String> extensions,
                               @JsonProperty("extractHeaders") Boolean extractHeaders,
-                              @JsonProperty("evaluateFormula") Boolean evaluateFormula) {
-        this.extensions = ListUtils.defaultIfNull(extensions, ImmutableList.of("xls", "xlsx"));
+                              @JsonProperty("evaluateFormula") Boolean evaluateFormula,
+                              @JsonProperty("formulaMode") FormulaMode formulaMode,
+                              @JsonProperty("inferColumnTypes") Boolean inferColumnTypes,
+                              @JsonProperty("pipelinedParsing") Boolean pipelinedParsing) {
+        this.extensions = ListUtils.defaultIfNull(extensions, ImmutableList.of("xls", "xlsx", "xlsb"));
         this.extractHeaders = extractHeaders == null ? true : extractHeaders;
-        this.evaluateFormula = evaluateFormula == null ? false : evaluateFormula;
+        this.formulaMode = FormulaMode.resolve(formulaMode, evaluateFormula);
+        this.inferColumnTypes = inferColumnTypes == null ? false : inferColumnTypes;
+        this.pipelinedParsing = pipelinedParsing == null ? false : pipelinedParsing;
     }
 
     public List<String> getExtensions() {
@@ -60,7 +67,19 @@ public class ExcelFormatConfig implements FormatPluginConfig {
     }
 
     public boolean isEvaluateFormula() {
-        return evaluateFormula;
+        return formulaMode == FormulaMode.EVALUATE;
+    }
+
+    public FormulaMode getFormulaMode() {
+        return formulaMode;
+    }
+
+    public boolean isInferColumnTypes() {
+        return inferColumnTypes;
+    }
+
+    public boolean isPipelinedParsing() {
+        return pipelinedParsing;
     }
 
     @Override
@@ -69,12 +88,14 @@ public class ExcelFormatConfig implements FormatPluginConfig {
         if (o == null || getClass() != o.getClass()) return false;
         ExcelFormatConfig that = (ExcelFormatConfig) o;
         return extractHeaders == that.extractHeaders &&
-                evaluateFormula == that.evaluateFormula &&
+                formulaMode == that.formulaMode &&
+                inferColumnTypes == that.inferColumnTypes &&
+                pipelinedParsing == that.pipelinedParsing &&
                 Objects.equals(extensions, that.extensions);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(extensions, extractHeaders, evaluateFormula);
+        return Objects.hash(extensions, extractHeaders, formulaMode, inferColumnTypes, pipelinedParsing);
     }
 }
\ No newline at end of file
@@ -27,23 +27,36 @@ import java.util.Objects;
 public class ExcelTableConfig {
     private final String location;
     private final String worksheet;
+    private final String worksheetPattern;
     private final String cellRange;
     private final boolean floatingRangeFooter;
     private final boolean extractHeaders;
-    private final boolean evaluateFormula;
+    private final FormulaMode formulaMode;
+    private final boolean inferColumnTypes;
+    private final boolean pipelinedParsing;
+    private final int splitRows;
 
     public ExcelTableConfig(@JsonProperty("location") String location,
                             @JsonProperty("worksheet") String worksheet,
+                            @JsonProperty("worksheetPattern") String worksheetPattern,
                             @JsonProperty("cellRange") String cellRange,
                             @JsonProperty("floatingRangeFooter") Boolean floatingRangeFooter,
                             @JsonProperty("extractHeaders") Boolean extractHeaders,
-                            @JsonProperty("evaluateFormula") Boolean evaluateFormula) {
+                            @JsonProperty("evaluateFormula") Boolean evaluateFormula,
+                            @JsonProperty("formulaMode") FormulaMode formulaMode,
+                            @JsonProperty("inferColumnTypes") Boolean inferColumnTypes,
+                            @JsonProperty("pipelinedParsing") Boolean pipelinedParsing,
+                            @JsonProperty("splitRows") Integer splitRows) {
         this.location = location;
         this.worksheet = worksheet;
+        this.worksheetPattern = worksheetPattern;
         this.cellRange = cellRange;
         this.floatingRangeFooter = floatingRangeFooter == null ? true : floatingRangeFooter;
         this.extractHeaders = extractHeaders == null ? true : extractHeaders;
-        this.evaluateFormula = evaluateFormula == null ? false : evaluateFormula;
+        this.formulaMode = FormulaMode.resolve(formulaMode, evaluateFormula);
+        this.inferColumnTypes = inferColumnTypes == null ? false : inferColumnTypes;
+        this.pipelinedParsing = pipelinedParsing == null ? false : pipelinedParsing;
+        this.splitRows = splitRows == null ? 0 : splitRows;
     }
 
     public String getLocation() {
@@ -54,6 +67,10 @@ public class ExcelTableConfig {
         return worksheet;
     }
 
+    public String getWorksheetPattern() {
+        return worksheetPattern;
+    }
+
     public String getCellRange() {
         return cellRange;
     }
@@ -67,7 +84,23 @@ public class ExcelTableConfig {
     }
 
     public boolean isEvaluateFormula() {
-        return evaluateFormula;
+        return formulaMode == FormulaMode.EVALUATE;
+    }
+
+    public FormulaMode getFormulaMode() {
+        return formulaMode;
+    }
+
+    public boolean isInferColumnTypes() {
+        return inferColumnTypes;
+    }
+
+    public boolean isPipelinedParsing() {
+        return pipelinedParsing;
+    }
+
+    public int getSplitRows() {
+        return splitRows;
     }
 
     @Override
@@ -77,14 +110,18 @@ public class ExcelTableConfig {
         ExcelTableConfig that = (ExcelTableConfig) o;
         return floatingRangeFooter == that.floatingRangeFooter &&
                 extractHeaders == that.extractHeaders &&
-                evaluateFormula == that.evaluateFormula &&
+                formulaMode == that.formulaMode &&
+                inferColumnTypes == that.inferColumnTypes &&
+                pipelinedParsing == that.pipelinedParsing &&
+                splitRows == that.splitRows &&
                 Objects.equals(location, that.location) &&
                 Objects.equals(worksheet, that.worksheet) &&
+                Objects.equals(worksheetPattern, that.worksheetPattern) &&
                 Objects.equals(cellRange, that.cellRange);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(location, worksheet, cellRange, floatingRangeFooter, extractHeaders, evaluateFormula);
+        return Objects.hash(location, worksheet, worksheetPattern, cellRange, floatingRangeFooter, extractHeaders, formulaMode, inferColumnTypes, pipelinedParsing, splitRows);
     }
 }
@@ -0,0 +1,67 @@
+/*
+  Licensed to the Apache Software Foundation (ASF) under one
+  or more contributor license agreements.  See the NOTICE file
+  distributed with this work for additional information
+  regarding copyright ownership.  The ASF licenses this file
+  to you under the Apache License, Version 2.0 (the
+  "License"); you may not use this file except in compliance
+  with the License.  You may obtain a copy of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.config;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Locale;
+
+/**
+ * How cells holding formulas are read.
+ */
+public enum FormulaMode {
+    /**
+     * Formula text, e.g. {@code SUM(A1:A3)}.
+     */
+    FORMULA,
+    /**
+     * Result stored in the file by the application that last calculated the workbook.
+     * Sheets are streamed, cells without a stored result are read as empty.
+     */
+    CACHED,
+    /**
+     * Result computed by the POI formula evaluator. Requires the whole workbook in memory.
+     */
+    EVALUATE;
+
+    @JsonValue
+    public String getValue() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    @JsonCreator
+    public static FormulaMode fromValue(String value) {
+        for (FormulaMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown formula mode '%s', expected one of formula, cached, evaluate", value));
+    }
+
+    /**
+     * Resolves the mode of a config, the legacy {@code evaluateFormula} flag is used if the mode is not set.
+     */
+    public static FormulaMode resolve(FormulaMode formulaMode, Boolean evaluateFormula) {
+        if (formulaMode != null) {
+            return formulaMode;
+        }
+        return evaluateFormula != null && evaluateFormula ? EVALUATE : FORMULA;
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.util.LocaleUtil;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Locale;
+
+/**
+ * Number formats of cell styles resolved once per style index.
+ * <p>
+ * {@link DataFormatter} resolves the format string and checks it for a date format on every call.
+ * The cache keeps the format of each style and a bitset of date styles, compiled formats are cached
+ * by the formatter itself by format string. Numbers of the General format, the most common one,
+ * are formatted without {@link java.text.Format} when the result is known to be the same.
+ */
+class CellFormatCache {
+
+    private static final int INITIAL_CAPACITY = 64;
+    //Границы, в которых General выводит число без экспоненты
+    private static final double MAX_PLAIN_INTEGER = 1E11;
+    private static final double MIN_PLAIN_DECIMAL = 1E-3;
+    private static final double MAX_PLAIN_DECIMAL = 1E7;
+    //General округляет дробные числа до 10 значащих цифр
+    private static final int MAX_GENERAL_DIGITS = 10;
+
+    private final DataFormatter dataFormatter;
+    private final boolean asciiNumbers;
+    private final StringBuilder buffer = new StringBuilder();
+
+    private final BitSet compiledStyles = new BitSet();
+    private final BitSet dateStyles = new BitSet();
+    private final BitSet generalStyles = new BitSet();
+    private int[] formatIndexes = new int[INITIAL_CAPACITY];
+    private String[] formatStrings = new String[INITIAL_CAPACITY];
+
+    CellFormatCache() {
+        this(LocaleUtil.getUserLocale());
+    }
+
+    CellFormatCache(Locale locale) {
+        this.dataFormatter = new DataFormatter(locale);
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        this.asciiNumbers = symbols.getZeroDigit() == '0'
+                && symbols.getMinusSign() == '-'
+                && symbols.getDecimalSeparator() == '.';
+    }
+
+    boolean isCompiled(int styleIndex) {
+        return compiledStyles.get(styleIndex);
+    }
+
+    void compile(int styleIndex, int formatIndex, String formatString) {
+        if (styleIndex >= formatIndexes.length) {
+            int capacity = Math.max(styleIndex + 1, formatIndexes.length * 2);
+            formatIndexes = Arrays.copyOf(formatIndexes, capacity);
+            formatStrings = Arrays.copyOf(formatStrings, capacity);
+        }
+        formatIndexes[styleIndex] = formatIndex;
+        formatStrings[styleIndex] = formatString;
+        dateStyles.set(styleIndex, formatString != null && DateUtil.isADateFormat(formatIndex, formatString));
+        generalStyles.set(styleIndex, "General".equalsIgnoreCase(formatString) || "@".equals(formatString));
+        compiledStyles.set(styleIndex);
+    }
+
+    /**
+     * Compiles the style of the given styles part if it is not compiled yet.
+     */
+    void compile(int styleIndex, StyleFormats styles) {
+        if (!compiledStyles.get(styleIndex)) {
+            compile(styleIndex, styles.getFormatIndex(styleIndex), styles.getFormatString(styleIndex));
+        }
+    }
+
+    /**
+     * Whether the style has a date format. The style must be compiled.
+     */
+    boolean isDateStyle(int styleIndex) {
+        return dateStyles.get(styleIndex);
+    }
+
+    /**
+     * Formats a number the same way {@link DataFormatter#formatRawCellContents(double, int, String, boolean)} does.
+     * The style must be compiled.
+     *
+     * @return formatted value, may be a buffer reused by the next call
+     */
+    CharSequence format(double value, int styleIndex, boolean date1904) {
+        CharSequence general = generalStyles.get(styleIndex) ? formatGeneral(value) : null;
+        return general != null
+                ? general
+                : dataFormatter.formatRawCellContents(value, formatIndexes[styleIndex], formatStrings[styleIndex], date1904);
+    }
+
+    /**
+     * Formats a cell the same way {@link DataFormatter#formatCellValue(Cell, FormulaEvaluator)} does,
+     * numeric cells of the General format take the fast path.
+     */
+    CharSequence formatCellValue(Cell cell, FormulaEvaluator evaluator) {
+        if (cell.getCellType() == CellType.NUMERIC) {
+            CellStyle style = cell.getCellStyle();
+            if (style != null) {
+                int styleIndex = style.getIndex() & 0xFFFF;
+                if (!compiledStyles.get(styleIndex)) {
+                    compile(styleIndex, style.getDataFormat(), style.getDataFormatString());
+                }
+                CharSequence general = generalStyles.get(styleIndex) ? formatGeneral(cell.getNumericCellValue()) : null;
+                if (general != null) {
+                    return general;
+                }
+            }
+        }
+        return dataFormatter.formatCellValue(cell, evaluator);
+    }
+
+    /**
+     * Formats a number of the General format or returns {@code null} if the value has to be formatted
+     * by {@link DataFormatter}: the number is written in scientific notation or rounded.
+     */
+    CharSequence formatGeneral(double value) {
+        if (!asciiNumbers) {
+            return null;
+        }
+
+        double abs = Math.abs(value);
+        if (Math.floor(value) == value && abs < MAX_PLAIN_INTEGER) {
+            buffer.setLength(0);
+            return buffer.append((long) value);
+        }
+
+        if (abs >= MIN_PLAIN_DECIMAL && abs < MAX_PLAIN_DECIMAL) {
+            //В этом диапазоне Double.toString пишет число без экспоненты кратчайшей записью
+            String text = Double.toString(value);
+            if (text.charAt(text.length() - 1) != '0' && significantDigits(text) <= MAX_GENERAL_DIGITS) {
+                return text;
+            }
+        }
+        return null;
+    }
+
+    private static int significantDigits(String text) {
+        int count = 0;
+        boolean leading = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '1' && c <= '9' || c == '0' && !leading) {
+                count++;
+                leading = false;
+            }
+        }
+        return count;
+    }
+}
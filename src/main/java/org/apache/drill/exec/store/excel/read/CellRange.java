@@ -22,6 +22,11 @@ package org.apache.drill.exec.store.excel.read;
  */
 class CellRange {
 
+    /**
+     * Row end of a range that lasts until the last row of the sheet.
+     */
+    static final int OPEN_END = Integer.MAX_VALUE;
+
     private final int rowStart;
     private final int rowEnd;
     private final int colStart;
@@ -50,6 +55,10 @@ class CellRange {
         return colEnd;
     }
 
+    boolean isOpenEnded() {
+        return rowEnd == OPEN_END;
+    }
+
     boolean isColumnInRange(int colIndex) {
         return colStart <= colIndex && colEnd >= colIndex;
     }
@@ -27,7 +27,8 @@ class CellRangeBuilder {
 
     private String range;
     private Boolean floatingFooter;
-    private Sheet sheet;
+    private RangeDetector detector;
+    private CellRange dimension;
 
     CellRangeBuilder withRange(String range) {
         this.range = range;
@@ -40,12 +41,29 @@ class CellRangeBuilder {
     }
 
     CellRangeBuilder withSheet(Sheet sheet) {
-        this.sheet = sheet;
+        this.detector = new SheetRangeDetector(sheet);
         return this;
     }
 
+    CellRangeBuilder withDetector(RangeDetector detector) {
+        this.detector = detector;
+        return this;
+    }
+
+    /**
+     * Sheet extent declared by the file, lets the builder skip the detection pass over the sheet.
+     */
+    CellRangeBuilder withDimension(CellRange dimension) {
+        this.dimension = dimension;
+        return this;
+    }
+
+    /**
+     * A floating footer is not detected here: the range gets an open end
+     * and the {@link CellRangeReader} stops at the last row of the sheet.
+     */
     CellRange build() {
-        if (sheet == null) {
+        if (detector == null) {
             throw new IllegalStateException("Sheet not set");
         }
 
@@ -53,15 +71,20 @@ class CellRangeBuilder {
             CellRangeAddress cr = CellRangeAddress.valueOf(range);
             int lastRow = cr.getLastRow();
             if (floatingFooter) {
-                lastRow = new SheetRangeDetector(sheet).detectRange().getRowEnd();
+                lastRow = CellRange.OPEN_END;
             }
 
             return new CellRange(cr.getFirstRow(),
                     lastRow,
                     cr.getFirstColumn(),
                     cr.getLastColumn());
+        } else if (dimension != null) {
+            return new CellRange(dimension.getRowStart(),
+                    CellRange.OPEN_END,
+                    dimension.getColStart(),
+                    dimension.getColEnd());
         } else {
-            return new SheetRangeDetector(sheet).detectRange();
+            return detector.detectRange();
         }
     }
 }
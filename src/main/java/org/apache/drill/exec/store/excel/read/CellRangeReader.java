@@ -17,101 +17,208 @@
  */
 package org.apache.drill.exec.store.excel.read;
 
+import org.apache.drill.exec.store.excel.config.FormulaMode;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import java.util.Iterator;
-import java.util.Optional;
 
 /**
  * Created by mnasyrov on 14.08.2017.
  */
-public class CellRangeReader implements Iterator<String[]> {
+public class CellRangeReader implements Iterator<String[]>, RowReader {
     private final CellRange cellRange;
     private final FormulaEvaluator evaluator;
-    private final DataFormatter dataFormatter;
+    private final CellFormatCache formats;
     private final Iterator<Row> rowIterator;
+    private final Sheet sheet;
+    //Определяется при первой ячейке-дате, стриминговые листы не дают доступа к книге
+    private Boolean date1904;
 
     private int index;
     private final int lastRow;
-    private Row lastRiddenRow;
+    //Следующая физическая строка с номером >= index
+    private Row nextRow;
 
     CellRangeReader(Sheet sheet,
                     CellRange cellRange,
-                    boolean evaluateFormula) {
+                    FormulaMode formulaMode) {
+        this(sheet, cellRange, createEvaluator(sheet, formulaMode));
+    }
+
+    /**
+     * @param evaluator evaluator of formula cells, may be shared by readers of the sheet,
+     *                  so results computed by one are not computed again by another
+     */
+    CellRangeReader(Sheet sheet,
+                    CellRange cellRange,
+                    FormulaEvaluator evaluator) {
         this.cellRange = cellRange;
-        this.evaluator = evaluateFormula ? sheet.getWorkbook().getCreationHelper().createFormulaEvaluator() : null;
-        this.dataFormatter = new DataFormatter();
+        this.evaluator = evaluator;
+        this.formats = new CellFormatCache();
 
         this.index = cellRange.getRowStart();
         this.lastRow = cellRange.getRowEnd();
 
         this.rowIterator = sheet.rowIterator();
-        
+        this.sheet = sheet;
     }
 
+    /**
+     * For a range with an open end the last row of the sheet is the footer,
+     * so the reader looks one row ahead.
+     */
     @Override
     public boolean hasNext() {
-        return index <= lastRow;
+        if (index > lastRow) {
+            return false;
+        }
+        return !cellRange.isOpenEnded() || peekRow() != null;
     }
 
+    /**
+     * Reads the next row into a new array. Used for headers and sampling,
+     * batches are read through {@link #readRow(CellValueConsumer)} without per-row allocations.
+     */
     @Override
     public String[] next() {
+        String[] result = new String[Math.abs(cellRange.getColEnd() - cellRange.getColStart()) + 1];
+        readRow((column, value) -> result[column] = value);
+        return result;
+    }
+
+    @Override
+    public void readRow(CellValueConsumer consumer) {
         if (!hasNext()) {
             throw new CellRangeReaderException("Invalid read operation");
         }
 
-        String[] result = new String[Math.abs(cellRange.getColEnd() - cellRange.getColStart()) + 1];
         try {
-            if (lastRiddenRow != null && index < lastRiddenRow.getRowNum()) {
-                //getRowNum - 0-based. Поэтому добавляем к getRowNum 1
-                //Последняя прочитанная строка находится ЗА индексом
+            Row row = peekRow();
+            if (row == null || index < row.getRowNum()) {
+                //getRowNum - 0-based.
+                //Следующая строка находится ЗА индексом
                 //Возвращаем пустоту
-                return result;
-            }
-
-
-            if (lastRiddenRow == null || index > lastRiddenRow.getRowNum()) {
-                if (rowIterator.hasNext()) {
-                    while (rowIterator.hasNext()) {
-                        lastRiddenRow = rowIterator.next();
-                        if (lastRiddenRow.getRowNum() >= cellRange.getRowStart()) {
-                            break;
-                        }
-                    }
-                } else {
-                    //Если нет следующей строки -
-                    lastRiddenRow = null;
-                }
-            }
-
-            if (lastRiddenRow == null || index < lastRiddenRow.getRowNum()) {
-                return result;
+                return;
             }
+            nextRow = null;
 
+            TypedCellConsumer typedConsumer = consumer instanceof TypedCellConsumer ? (TypedCellConsumer) consumer : null;
             int startCell = this.cellRange.getColStart();
             int lastCell = this.cellRange.getColEnd();
 
             if (startCell >= 0 && lastCell >= 0 && lastCell >= startCell) {
                 for (int cn = startCell; cn <= lastCell; cn++) {
-                    if (lastRiddenRow == null) {
-                        result[cn - startCell] = null;
+                    int column = cn - startCell;
+                    if (!consumer.isRequired(column)) {
+                        continue;
+                    }
+
+                    Cell cell = row.getCell(cn);
+                    if (cell == null) {
+                        continue;
+                    }
+
+                    if (typedConsumer != null && typedConsumer.isTyped(column)) {
+                        readTypedCell(cell, column, typedConsumer);
                     } else {
-                        Cell cell = lastRiddenRow.getCell(cn);
-                        result[cn - startCell] = Optional
-                                .ofNullable(cell)
-                                .map(this::getCellValue)
-                                .orElse(null);
+                        consumer.acceptText(column, getCellValue(cell));
                     }
                 }
             }
         } finally {
             index++;
         }
+    }
 
-        return result;
+    @Override
+    public void skipTo(int row) {
+        index = Math.max(index, row);
+        if (nextRow != null && nextRow.getRowNum() < index) {
+            nextRow = null;
+        }
+    }
+
+    private void readTypedCell(Cell cell, int column, TypedCellConsumer consumer) {
+        CellType type = cell.getCellType();
+        if (type == CellType.FORMULA) {
+            if (evaluator == null) {
+                consumer.acceptText(column, getCellValue(cell));
+                return;
+            }
+            type = evaluator.evaluateFormulaCell(cell);
+        }
+
+        switch (type) {
+            case NUMERIC:
+                double value = cell.getNumericCellValue();
+                if (isDateStyle(cell.getCellStyle()) && DateUtil.isValidExcelDate(value)) {
+                    if (date1904 == null) {
+                        date1904 = isDate1904(sheet.getWorkbook());
+                    }
+                    consumer.acceptDate(column, ExcelDates.toTimestamp(value, date1904));
+                } else {
+                    consumer.acceptNumber(column, value);
+                }
+                break;
+            case BOOLEAN:
+                consumer.acceptBoolean(column, cell.getBooleanCellValue());
+                break;
+            case BLANK:
+                break;
+            default:
+                consumer.acceptText(column, getCellValue(cell));
+        }
+    }
+
+    /**
+     * Without an evaluator formula cells are read as formula text.
+     * Cached results are read by the streaming readers only, a usermodel sheet is never opened for them.
+     */
+    static FormulaEvaluator createEvaluator(Sheet sheet, FormulaMode formulaMode) {
+        switch (formulaMode) {
+            case EVALUATE:
+                return sheet.getWorkbook().getCreationHelper().createFormulaEvaluator();
+            case CACHED:
+                throw new IllegalStateException("Cached formula results are read by the streaming readers");
+            default:
+                return null;
+        }
+    }
+
+    private Row peekRow() {
+        while (nextRow == null && rowIterator.hasNext()) {
+            Row row = rowIterator.next();
+            if (row != null && row.getRowNum() >= index) {
+                nextRow = row;
+            }
+        }
+        return nextRow;
+    }
+
+    private static boolean isDate1904(Workbook workbook) {
+        if (workbook instanceof XSSFWorkbook) {
+            return ((XSSFWorkbook) workbook).isDate1904();
+        }
+        if (workbook instanceof HSSFWorkbook) {
+            return ((HSSFWorkbook) workbook).getInternalWorkbook().isUsing1904DateWindowing();
+        }
+        return false;
+    }
+
+    private boolean isDateStyle(CellStyle style) {
+        if (style == null) {
+            return false;
+        }
+        int styleIndex = style.getIndex() & 0xFFFF;
+        if (!formats.isCompiled(styleIndex)) {
+            formats.compile(styleIndex, style.getDataFormat(), style.getDataFormatString());
+        }
+        return formats.isDateStyle(styleIndex);
     }
 
-    private String getCellValue(Cell cell) {
-        return dataFormatter.formatCellValue(cell, evaluator);
+    private CharSequence getCellValue(Cell cell) {
+        return formats.formatCellValue(cell, evaluator);
     }
 }
@@ -21,7 +21,13 @@ package org.apache.drill.exec.store.excel.read;
  * Created by mnasyrov on 14.08.2017.
  */
 class CellRangeReaderException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
     CellRangeReaderException(String msg) {
         super(String.format("CellRangeReader: %s", msg));
     }
+
+    CellRangeReaderException(String msg, Throwable cause) {
+        super(String.format("CellRangeReader: %s", msg), cause);
+    }
 }
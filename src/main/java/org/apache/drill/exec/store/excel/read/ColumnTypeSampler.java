@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.drill.common.types.TypeProtos;
+
+/**
+ * Infers output column types from the cells of the first data rows.
+ * A column gets a native type only if all its non-blank sampled cells agree:
+ * numbers give FLOAT8, date formatted numbers TIMESTAMP and booleans BIT.
+ * Any text, including formulas read without evaluation, makes the column VARCHAR.
+ * Excel stores every number as a double, so whole numbers in the sample do not make the column integer.
+ */
+class ColumnTypeSampler implements RowReader.TypedCellConsumer {
+
+    private static final int TEXT = 1;
+    private static final int NUMBER = 1 << 1;
+    private static final int DATE = 1 << 2;
+    private static final int BOOLEAN = 1 << 3;
+
+    private final int[] kinds;
+
+    private ColumnTypeSampler(int columns) {
+        this.kinds = new int[columns];
+    }
+
+    static TypeProtos.MinorType[] sample(RowReader reader, int columns, int maxRows) {
+        ColumnTypeSampler sampler = new ColumnTypeSampler(columns);
+        for (int i = 0; i < maxRows && reader.hasNext(); i++) {
+            reader.readRow(sampler);
+        }
+        return sampler.getTypes();
+    }
+
+    @Override
+    public boolean isTyped(int column) {
+        return true;
+    }
+
+    @Override
+    public void accept(int column, String value) {
+        if (!value.isEmpty()) {
+            kinds[column] |= TEXT;
+        }
+    }
+
+    @Override
+    public void acceptNumber(int column, double value) {
+        kinds[column] |= NUMBER;
+    }
+
+    @Override
+    public void acceptDate(int column, long timestamp) {
+        kinds[column] |= DATE;
+    }
+
+    @Override
+    public void acceptBoolean(int column, boolean value) {
+        kinds[column] |= BOOLEAN;
+    }
+
+    private TypeProtos.MinorType[] getTypes() {
+        TypeProtos.MinorType[] types = new TypeProtos.MinorType[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+                case NUMBER:
+                    types[i] = TypeProtos.MinorType.FLOAT8;
+                    break;
+                case DATE:
+                    types[i] = TypeProtos.MinorType.TIMESTAMP;
+                    break;
+                case BOOLEAN:
+                    types[i] = TypeProtos.MinorType.BIT;
+                    break;
+                default:
+                    types[i] = TypeProtos.MinorType.VARCHAR;
+            }
+        }
+        return types;
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.drill.common.types.TypeProtos;
+import org.apache.drill.exec.vector.accessor.ScalarWriter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes cell values of one output column into the current row of the result set loader.
+ * A typed column accepts only values of its type. Empty text and values of other types are written as null:
+ * types are inferred from the first rows, and a later cell must not fail the query.
+ */
+abstract class ColumnWriter {
+
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ColumnWriter.class);
+
+    private final String name;
+    private final TypeProtos.MinorType type;
+    final ScalarWriter writer;
+    private boolean mismatched;
+
+    private ColumnWriter(String name, TypeProtos.MinorType type, ScalarWriter writer) {
+        this.name = name;
+        this.type = type;
+        this.writer = writer;
+    }
+
+    static ColumnWriter create(ScalarWriter writer,
+                               String name,
+                               TypeProtos.MinorType type) {
+        switch (type) {
+            case VARCHAR:
+                return new VarCharWriter(name, writer);
+            case FLOAT8:
+                return new Float8Writer(name, writer);
+            case TIMESTAMP:
+                return new TimeStampWriter(name, writer);
+            case BIT:
+                return new BitWriter(name, writer);
+            default:
+                throw new IllegalArgumentException("Unsupported column type " + type);
+        }
+    }
+
+    /**
+     * Whether the column is in the query projection. Cells of other columns need not be decoded.
+     */
+    boolean isProjected() {
+        return writer.isProjected();
+    }
+
+    /**
+     * Whether the column takes numbers, dates and booleans as is instead of formatted text.
+     */
+    boolean isTyped() {
+        return true;
+    }
+
+    /**
+     * @param value text that may be held in a buffer reused by the reader, it is not retained
+     */
+    void setText(CharSequence value) {
+        if (value.length() != 0) {
+            mismatch("text", value);
+        }
+    }
+
+    /**
+     * @param bytes UTF-8 text in a buffer reused by the reader, it is not retained
+     */
+    void setUtf8(byte[] bytes, int length) {
+        setText(new String(bytes, 0, length, StandardCharsets.UTF_8));
+    }
+
+    void setNumber(double value) {
+        mismatch("numeric", value);
+    }
+
+    void setDate(long timestamp) {
+        mismatch("date", timestamp);
+    }
+
+    void setBoolean(boolean value) {
+        mismatch("boolean", value);
+    }
+
+    /**
+     * The value is left null, only the first such value of the column is logged.
+     */
+    private void mismatch(String kind, Object value) {
+        if (!mismatched) {
+            mismatched = true;
+            logger.warn("Column '{}' of type {} cannot hold {} value '{}', such values are read as null. "
+                    + "Column types are inferred from the first rows, disable inferColumnTypes to read the column as text",
+                    name, type, kind, value);
+        }
+    }
+
+    /**
+     * Encodes the text as UTF-8 the same way {@link String#getBytes} does, unpaired surrogates are replaced with '?'.
+     * The buffer must hold at least 3 bytes per char.
+     *
+     * @return number of bytes written
+     */
+    static int encodeUtf8(CharSequence value, byte[] buffer) {
+        int length = value.length();
+        int pos = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[pos++] = (byte) (0xC0 | c >> 6);
+                buffer[pos++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                char low = i + 1 < length ? value.charAt(i + 1) : 0;
+                if (Character.isHighSurrogate(c) && Character.isLowSurrogate(low)) {
+                    int codePoint = Character.toCodePoint(c, low);
+                    buffer[pos++] = (byte) (0xF0 | codePoint >> 18);
+                    buffer[pos++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    buffer[pos++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    buffer[pos++] = (byte) (0x80 | codePoint & 0x3F);
+                    i++;
+                } else {
+                    buffer[pos++] = '?';
+                }
+            } else {
+                buffer[pos++] = (byte) (0xE0 | c >> 12);
+                buffer[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[pos++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Encodes text into a buffer reused for all rows, so no per-cell byte arrays are created.
+     */
+    private static class VarCharWriter extends ColumnWriter {
+
+        private static final int INITIAL_BUFFER_SIZE = 256;
+
+        private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+        VarCharWriter(String name, ScalarWriter writer) {
+            super(name, TypeProtos.MinorType.VARCHAR, writer);
+        }
+
+        @Override
+        boolean isTyped() {
+            return false;
+        }
+
+        @Override
+        void setText(CharSequence value) {
+            int maxLength = value.length() * 3;
+            if (buffer.length < maxLength) {
+                buffer = new byte[Math.max(maxLength, buffer.length * 2)];
+            }
+            writer.setBytes(buffer, encodeUtf8(value, buffer));
+        }
+
+        @Override
+        void setUtf8(byte[] bytes, int length) {
+            writer.setBytes(bytes, length);
+        }
+    }
+
+    private static class Float8Writer extends ColumnWriter {
+
+        Float8Writer(String name, ScalarWriter writer) {
+            super(name, TypeProtos.MinorType.FLOAT8, writer);
+        }
+
+        @Override
+        void setNumber(double value) {
+            writer.setDouble(value);
+        }
+    }
+
+    private static class TimeStampWriter extends ColumnWriter {
+
+        TimeStampWriter(String name, ScalarWriter writer) {
+            super(name, TypeProtos.MinorType.TIMESTAMP, writer);
+        }
+
+        @Override
+        void setDate(long timestamp) {
+            writer.setLong(timestamp);
+        }
+    }
+
+    private static class BitWriter extends ColumnWriter {
+
+        BitWriter(String name, ScalarWriter writer) {
+            super(name, TypeProtos.MinorType.BIT, writer);
+        }
+
+        @Override
+        void setBoolean(boolean value) {
+            writer.setBoolean(value);
+        }
+    }
+}
@@ -0,0 +1,390 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.ZipException;
+
+/**
+ * Decoder of raw DEFLATE data (RFC 1951) that reports where its blocks start.
+ * <p>
+ * {@link java.util.zip.Inflater} hides block boundaries, and a stream can be resumed only at one:
+ * decoding restarts at the bit offset of the block with the preceding 32K of output as the dictionary.
+ * The decoder is used once to find such points, later reads resume with {@link java.util.zip.Inflater}.
+ */
+class DeflateDecoder {
+
+    /**
+     * Maximum distance of a back reference, the output a resumed stream needs as its dictionary.
+     */
+    static final int WINDOW_SIZE = 1 << 15;
+
+    private static final int RING_SIZE = WINDOW_SIZE << 1;
+    private static final int RING_MASK = RING_SIZE - 1;
+    private static final int MAX_BITS = 15;
+    private static final int FAST_BITS = 10;
+    private static final int FAST_MASK = (1 << FAST_BITS) - 1;
+
+    private static final int[] LENGTH_BASE = {3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31,
+            35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258};
+    private static final int[] LENGTH_EXTRA = {0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2,
+            3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0};
+    private static final int[] DISTANCE_BASE = {1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193,
+            257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577};
+    private static final int[] DISTANCE_EXTRA = {0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6,
+            7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13};
+    //Порядок длин кодов длин в заголовке динамического блока
+    static final int[] CODE_LENGTH_ORDER = {16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+    private static final Huffman FIXED_LITERALS = new Huffman(288);
+    private static final Huffman FIXED_DISTANCES = new Huffman(30);
+
+    static {
+        byte[] lengths = new byte[288];
+        Arrays.fill(lengths, 0, 144, (byte) 8);
+        Arrays.fill(lengths, 144, 256, (byte) 9);
+        Arrays.fill(lengths, 256, 280, (byte) 7);
+        Arrays.fill(lengths, 280, 288, (byte) 8);
+        try {
+            FIXED_LITERALS.build(lengths, 0, 288);
+            Arrays.fill(lengths, 0, 30, (byte) 5);
+            FIXED_DISTANCES.build(lengths, 0, 30);
+        } catch (ZipException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final InputStream in;
+    private final Listener listener;
+    private final byte[] input = new byte[64 * 1024];
+    private int inputPos;
+    private int inputLimit;
+    private boolean eof;
+    private long bitBuffer;
+    private int bitCount;
+    //Байты, перенесенные из input в bitBuffer
+    private long bytesLoaded;
+
+    private final byte[] ring = new byte[RING_SIZE];
+    private long out;
+    private long flushed;
+
+    private final Huffman literals = new Huffman(288);
+    private final Huffman distances = new Huffman(32);
+    private final Huffman codeLengths = new Huffman(19);
+    private final byte[] lengths = new byte[288 + 32];
+
+    DeflateDecoder(InputStream in, Listener listener) {
+        this.in = in;
+        this.listener = listener;
+    }
+
+    /**
+     * Decodes the data up to the end of the last block.
+     */
+    void decode() throws IOException {
+        boolean last;
+        do {
+            flush();
+            listener.blockStart(getBitOffset(), out);
+            last = bits(1) == 1;
+            int type = bits(2);
+            switch (type) {
+                case 0:
+                    stored();
+                    break;
+                case 1:
+                    codes(FIXED_LITERALS, FIXED_DISTANCES);
+                    break;
+                case 2:
+                    dynamic();
+                    codes(literals, distances);
+                    break;
+                default:
+                    throw new ZipException("Invalid deflate block type");
+            }
+        } while (!last);
+        flush();
+    }
+
+    /**
+     * Offset of the next unread bit from the start of the data.
+     */
+    long getBitOffset() {
+        return bytesLoaded * 8 - bitCount;
+    }
+
+    /**
+     * Last {@link #WINDOW_SIZE} bytes of the output or less at its start.
+     */
+    byte[] getWindow() {
+        int length = (int) Math.min(out, WINDOW_SIZE);
+        byte[] window = new byte[length];
+        int start = (int) (out - length) & RING_MASK;
+        int first = Math.min(length, RING_SIZE - start);
+        System.arraycopy(ring, start, window, 0, first);
+        System.arraycopy(ring, 0, window, first, length - first);
+        return window;
+    }
+
+    private void stored() throws IOException {
+        bits(bitCount & 7);
+        int length = bits(16);
+        if ((~bits(16) & 0xFFFF) != length) {
+            throw new ZipException("Invalid stored block length");
+        }
+        for (int i = 0; i < length; i++) {
+            ring[(int) out++ & RING_MASK] = (byte) bits(8);
+            if (out - flushed >= WINDOW_SIZE) {
+                flush();
+            }
+        }
+    }
+
+    private void dynamic() throws IOException {
+        int literalCount = bits(5) + 257;
+        int distanceCount = bits(5) + 1;
+        int codeLengthCount = bits(4) + 4;
+        if (literalCount > 286 || distanceCount > 30) {
+            throw new ZipException("Invalid deflate code counts");
+        }
+
+        Arrays.fill(lengths, 0, 19, (byte) 0);
+        for (int i = 0; i < codeLengthCount; i++) {
+            lengths[CODE_LENGTH_ORDER[i]] = (byte) bits(3);
+        }
+        codeLengths.build(lengths, 0, 19);
+
+        int count = literalCount + distanceCount;
+        int i = 0;
+        while (i < count) {
+            int symbol = decode(codeLengths);
+            if (symbol < 16) {
+                lengths[i++] = (byte) symbol;
+                continue;
+            }
+
+            int repeat;
+            byte length = 0;
+            if (symbol == 16) {
+                if (i == 0) {
+                    throw new ZipException("Invalid code length repeat");
+                }
+                length = lengths[i - 1];
+                repeat = 3 + bits(2);
+            } else if (symbol == 17) {
+                repeat = 3 + bits(3);
+            } else {
+                repeat = 11 + bits(7);
+            }
+            if (i + repeat > count) {
+                throw new ZipException("Invalid code length repeat");
+            }
+            Arrays.fill(lengths, i, i + repeat, length);
+            i += repeat;
+        }
+
+        if (lengths[256] == 0) {
+            throw new ZipException("Missing end of block code");
+        }
+        literals.build(lengths, 0, literalCount);
+        distances.build(lengths, literalCount, distanceCount);
+    }
+
+    private void codes(Huffman literals, Huffman distances) throws IOException {
+        while (true) {
+            int symbol = decode(literals);
+            if (symbol < 256) {
+                ring[(int) out++ & RING_MASK] = (byte) symbol;
+            } else if (symbol == 256) {
+                return;
+            } else {
+                symbol -= 257;
+                if (symbol >= LENGTH_BASE.length) {
+                    throw new ZipException("Invalid deflate length code");
+                }
+                int length = LENGTH_BASE[symbol] + bits(LENGTH_EXTRA[symbol]);
+                symbol = decode(distances);
+                if (symbol >= DISTANCE_BASE.length) {
+                    throw new ZipException("Invalid deflate distance code");
+                }
+                int distance = DISTANCE_BASE[symbol] + bits(DISTANCE_EXTRA[symbol]);
+                if (distance > out) {
+                    throw new ZipException("Invalid deflate distance");
+                }
+                for (int i = 0; i < length; i++, out++) {
+                    ring[(int) out & RING_MASK] = ring[(int) (out - distance) & RING_MASK];
+                }
+            }
+            //Непереданный вывод не должен затираться новым
+            if (out - flushed >= WINDOW_SIZE) {
+                flush();
+            }
+        }
+    }
+
+    private int decode(Huffman huffman) throws IOException {
+        fill();
+        int entry = huffman.fast[(int) bitBuffer & FAST_MASK];
+        if (entry != 0) {
+            int length = entry >>> 16;
+            if (length > bitCount) {
+                throw new EOFException("Unexpected end of deflate data");
+            }
+            bitBuffer >>>= length;
+            bitCount -= length;
+            return entry & 0xFFFF;
+        }
+
+        //Длинные коды декодируются побитно
+        int code = 0;
+        int first = 0;
+        int index = 0;
+        for (int length = 1; length <= MAX_BITS; length++) {
+            code |= bits(1);
+            int count = huffman.counts[length];
+            if (code - count < first) {
+                return huffman.symbols[index + code - first];
+            }
+            index += count;
+            first += count;
+            first <<= 1;
+            code <<= 1;
+        }
+        throw new ZipException("Invalid deflate code");
+    }
+
+    private int bits(int count) throws IOException {
+        if (count == 0) {
+            return 0;
+        }
+        if (bitCount < count) {
+            fill();
+            if (bitCount < count) {
+                throw new EOFException("Unexpected end of deflate data");
+            }
+        }
+        int value = (int) bitBuffer & ((1 << count) - 1);
+        bitBuffer >>>= count;
+        bitCount -= count;
+        return value;
+    }
+
+    private void fill() throws IOException {
+        while (bitCount <= 56) {
+            if (inputPos == inputLimit) {
+                if (eof) {
+                    return;
+                }
+                inputLimit = in.read(input, 0, input.length);
+                inputPos = 0;
+                if (inputLimit <= 0) {
+                    inputLimit = 0;
+                    eof = true;
+                    return;
+                }
+            }
+            bitBuffer |= (long) (input[inputPos++] & 0xFF) << bitCount;
+            bitCount += 8;
+            bytesLoaded++;
+        }
+    }
+
+    private void flush() throws IOException {
+        while (flushed < out) {
+            int start = (int) flushed & RING_MASK;
+            int length = (int) Math.min(out - flushed, RING_SIZE - start);
+            listener.output(ring, start, length);
+            flushed += length;
+        }
+    }
+
+    /**
+     * Receives the output and the block boundaries.
+     */
+    interface Listener {
+        /**
+         * Called before the header of every block, the output before the block has already been passed.
+         *
+         * @param bitOffset offset of the block header from the start of the data
+         * @param outOffset length of the output before the block
+         */
+        void blockStart(long bitOffset, long outOffset) throws IOException;
+
+        void output(byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    /**
+     * Canonical Huffman code. Codes up to {@link #FAST_BITS} long are decoded with a single table lookup.
+     */
+    private static class Huffman {
+        private final short[] counts = new short[MAX_BITS + 1];
+        private final short[] symbols;
+        //(длина << 16) | символ по первым битам кода в порядке чтения, 0 - длинный код
+        private final int[] fast = new int[1 << FAST_BITS];
+        private final short[] offsets = new short[MAX_BITS + 2];
+
+        Huffman(int size) {
+            this.symbols = new short[size];
+        }
+
+        void build(byte[] lengths, int start, int count) throws ZipException {
+            Arrays.fill(counts, (short) 0);
+            for (int i = 0; i < count; i++) {
+                counts[lengths[start + i]]++;
+            }
+
+            int left = 1;
+            for (int length = 1; length <= MAX_BITS; length++) {
+                left <<= 1;
+                left -= counts[length];
+                if (left < 0) {
+                    throw new ZipException("Over-subscribed deflate code");
+                }
+            }
+
+            offsets[1] = 0;
+            for (int length = 1; length < MAX_BITS; length++) {
+                offsets[length + 1] = (short) (offsets[length] + counts[length]);
+            }
+            for (int i = 0; i < count; i++) {
+                int length = lengths[start + i];
+                if (length != 0) {
+                    symbols[offsets[length]++] = (short) i;
+                }
+            }
+
+            Arrays.fill(fast, 0);
+            int code = 0;
+            int index = 0;
+            for (int length = 1; length <= FAST_BITS; length++) {
+                for (int i = 0; i < counts[length]; i++) {
+                    int reversed = Integer.reverse(code++) >>> (32 - length);
+                    int entry = length << 16 | symbols[index++];
+                    for (int j = reversed; j < fast.length; j += 1 << length) {
+                        fast[j] = entry;
+                    }
+                }
+                code <<= 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,550 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.drill.common.exceptions.ChildErrorContext;
+import org.apache.drill.common.exceptions.CustomErrorContext;
+import org.apache.drill.common.exceptions.UserException;
+import org.apache.drill.common.expression.SchemaPath;
+import org.apache.drill.common.types.TypeProtos;
+import org.apache.drill.exec.physical.impl.scan.framework.ManagedReader;
+import org.apache.drill.exec.physical.impl.scan.framework.SchemaNegotiator;
+import org.apache.drill.exec.physical.resultSet.RowSetLoader;
+import org.apache.drill.exec.record.metadata.SchemaBuilder;
+import org.apache.drill.exec.store.dfs.DrillFileSystem;
+import org.apache.drill.exec.store.easy.text.reader.HeaderBuilder;
+import org.apache.drill.exec.store.excel.RowFilter;
+import org.apache.drill.exec.store.excel.RuntimeExcelTableConfig;
+import org.apache.drill.exec.store.excel.cache.SheetMetadata;
+import org.apache.drill.exec.store.excel.cache.WorkbookFileCache;
+import org.apache.drill.exec.store.excel.cache.WorkbookMetadataCache;
+import org.apache.drill.exec.store.excel.config.FormulaMode;
+import org.apache.drill.exec.vector.accessor.ScalarWriter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Reads one sheet of a workbook into batches of the enhanced vector framework.
+ * The result set loader decides when a batch is full, so batches follow the configured memory limit
+ * instead of a fixed row count, and a value overflowing a vector moves to the next batch.
+ */
+public class ExcelBatchReader implements ManagedReader<SchemaNegotiator> {
+
+    /**
+     * Implicit column with the 1-based sheet row number, produced only if projected explicitly.
+     */
+    public static final String ROW_NUMBER_COLUMN = "_excel_row";
+
+    /**
+     * Implicit column with the name of the sheet, produced only if projected explicitly.
+     */
+    public static final String SHEET_NAME_COLUMN = "_excel_sheet";
+
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ExcelBatchReader.class);
+    private static final int TYPE_SAMPLE_ROWS = 100;
+
+    private final List<SchemaPath> columns;
+    private final RuntimeExcelTableConfig config;
+    private final Configuration fsConf;
+    private final WorkbookFileCache fileCache;
+    private final WorkbookMetadataCache metadataCache;
+    private final ParsingExecutors parsingExecutors;
+    private DrillFileSystem fileSystem;
+    private Workbook wb;
+    private XlsxWorkbook xlsx;
+    private XlsWorkbook xls;
+    private RowReader rowReader;
+    private final CellWriter cellWriter = new CellWriter();
+    private CustomErrorContext errorContext;
+
+    private OoxmlWorkbookIndex.SheetPart xlsxSheet;
+    private BoundSheetRecord xlsSheet;
+    private Sheet sheet;
+    //Общий для всех ридеров листа, вычисленные значения формул не пересчитываются
+    private FormulaEvaluator evaluator;
+    private RowSetLoader rowWriter;
+    //Писатели по индексу колонки диапазона, null для колонок вне проекции
+    private ColumnWriter[] writers;
+    private WorkbookSource source;
+    //-1 - без ограничения
+    private final int maxRecords;
+    private final RowFilter rowFilter;
+    private long recordCount;
+    //0-based номер следующей строки листа и последней строки к чтению
+    private int nextSheetRow;
+    private int lastSheetRow;
+    private ScalarWriter rowNumberWriter;
+    private ScalarWriter sheetNameWriter;
+    private String sheetName;
+    //Имя листа одинаково во всех строках, кодируем один раз
+    private byte[] sheetNameBytes;
+
+    /**
+     * @param fsConf           configuration of the file system the reader opens, {@code null} if the file system
+     *                         is passed to {@link #open(SchemaNegotiator, DrillFileSystem)}
+     * @param parsingExecutors pools of pipelined parsing, {@code null} to parse on the fragment thread
+     */
+    public ExcelBatchReader(List<SchemaPath> columns,
+                            RuntimeExcelTableConfig config,
+                            Configuration fsConf,
+                            WorkbookFileCache fileCache,
+                            WorkbookMetadataCache metadataCache,
+                            ParsingExecutors parsingExecutors,
+                            int maxRecords,
+                            RowFilter rowFilter) {
+        assert config != null : "RuntimeExcelTableConfig must be passed";
+        this.columns = columns;
+        this.config = config;
+        this.fsConf = fsConf;
+        this.fileCache = fileCache;
+        this.metadataCache = metadataCache;
+        this.parsingExecutors = parsingExecutors;
+        this.maxRecords = maxRecords;
+        this.rowFilter = rowFilter;
+    }
+
+    @Override
+    public boolean open(SchemaNegotiator negotiator) {
+        try {
+            return open(negotiator, negotiator.context().newFileSystem(fsConf));
+        } catch (IOException e) {
+            throw UserException.dataReadError(e)
+                    .message("Unable to open the file system")
+                    .addContext("File", config.getLocation().toString())
+                    .addContext(negotiator.parentErrorContext())
+                    .build(logger);
+        }
+    }
+
+    public boolean open(SchemaNegotiator negotiator, DrillFileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+        this.errorContext = new ChildErrorContext(negotiator.parentErrorContext()) {
+            @Override
+            public void addContext(UserException.Builder builder) {
+                super.addContext(builder);
+                builder.addContext("File", config.getLocation().toString());
+                if (sheetName != null) {
+                    builder.addContext("Sheet", sheetName);
+                }
+            }
+        };
+        negotiator.setErrorContext(errorContext);
+
+        try {
+            this.source = new WorkbookSource(fileSystem, config.getLocation(), fileCache);
+            FileStatus status = source.getStatus();
+            SheetMetadata metadata = metadataCache == null ? null : metadataCache.get(config, status);
+            String worksheet = metadata != null ? metadata.getSheetName() : config.getWorksheet();
+
+            final RangeDetector detector;
+            CellRange dimension = null;
+            SheetParser parser = null;
+            //Вычисление формул требует всей книги в памяти, остальные режимы читают лист потоком
+            FileMagic format = config.getFormulaMode() != FormulaMode.EVALUATE ? source.detectFormat() : null;
+            if (format == FileMagic.OOXML) {
+                //Лист читается парсером напрямую, из удаленного файла копируются только нужные части
+                this.xlsx = XlsxWorkbook.open(source.getSheetFile(config.getWorksheet()));
+                //Индексы листов хранятся в кэше рядом с копиями книг
+                xlsx.setIndexStore(source::getIndexFile);
+                xlsx.setTempFiles(source::createTempFile);
+                this.xlsxSheet = xlsx.getSheet(worksheet);
+                parser = openSheetParser();
+                this.sheetName = xlsxSheet.getName();
+                detector = xlsx.getRangeDetector(xlsxSheet);
+                dimension = parser.getDimension();
+            } else if (format == FileMagic.OLE2) {
+                //Записи листа читаются из потока книги по одной, в памяти только глобальные записи книги
+                this.xls = XlsWorkbook.open(source.getFile());
+                this.xlsSheet = xls.getSheet(worksheet);
+                parser = openSheetParser();
+                this.sheetName = xlsSheet.getSheetname();
+                detector = xls.getRangeDetector(xlsSheet);
+                dimension = parser.getDimension();
+            } else {
+                this.wb = readWorkbook(this.source, worksheet);
+                this.sheet = worksheet == null ? wb.getSheetAt(0) : wb.getSheet(worksheet);
+                if (sheet == null) {
+                    throw new CellRangeReaderException(String.format("Sheet '%s' not found", worksheet));
+                }
+                this.sheetName = sheet.getSheetName();
+                this.evaluator = CellRangeReader.createEvaluator(sheet, config.getFormulaMode());
+                detector = new SheetRangeDetector(sheet);
+            }
+
+            final CellRange cellRange;
+            if (metadata != null) {
+                //Заголовки уже известны, строку заголовков пропускаем
+                int rowStart = this.config.isExtractHeaders() ? metadata.getRowStart() + 1 : metadata.getRowStart();
+                cellRange = new CellRange(rowStart,
+                        metadata.getRowEnd(),
+                        metadata.getColStart(),
+                        metadata.getColEnd());
+            } else {
+                cellRange = new CellRangeBuilder()
+                        .withRange(this.config.getCellRange())
+                        .withFloatingFooter(this.config.isFloatingRangeFooter())
+                        .withDetector(detector)
+                        .withDimension(this.config.getCellRange() == null ? dimension : null)
+                        .build();
+            }
+
+            this.rowReader = parser != null
+                    ? new StreamingRangeReader(parser, cellRange)
+                    : new CellRangeReader(sheet, cellRange, evaluator);
+
+            final String[] headers;
+            final TypeProtos.MinorType[] types;
+            int width = Math.abs(cellRange.getColEnd() - cellRange.getColStart()) + 1;
+            if (metadata != null) {
+                headers = metadata.getHeaders();
+                types = metadata.getTypes();
+            } else {
+                if (this.config.isExtractHeaders()) {
+                    String[] row = new String[width];
+                    if (rowReader.hasNext()) {
+                        rowReader.readRow((column, value) -> row[column] = value);
+                    }
+                    headers = prepareHeaders(config.getLocation(), row);
+                } else {
+                    headers = prepareHeaders(config.getLocation(), new String[width]);
+                }
+
+                int dataStart = this.config.isExtractHeaders() ? cellRange.getRowStart() + 1 : cellRange.getRowStart();
+                types = config.isInferColumnTypes()
+                        ? inferTypes(new CellRange(dataStart, cellRange.getRowEnd(), cellRange.getColStart(), cellRange.getColEnd()), width)
+                        : null;
+
+                if (metadataCache != null) {
+                    metadataCache.put(config, status, new SheetMetadata(sheetName,
+                            cellRange.getRowStart(),
+                            cellRange.getRowEnd(),
+                            cellRange.getColStart(),
+                            cellRange.getColEnd(),
+                            headers,
+                            types));
+                }
+            }
+
+            createWriters(negotiator, headers, types);
+
+            //Метаданные из кэша дают диапазон уже без строки заголовков
+            this.nextSheetRow = metadata == null && config.isExtractHeaders()
+                    ? cellRange.getRowStart() + 1
+                    : cellRange.getRowStart();
+            this.lastSheetRow = cellRange.getRowEnd();
+            if (rowFilter != null) {
+                nextSheetRow = Math.max(nextSheetRow, rowFilter.getFirst() - 1);
+                lastSheetRow = Math.min(lastSheetRow, rowFilter.getLast() - 1);
+                rowReader.skipTo(nextSheetRow);
+            }
+            if (parser != null && parsingExecutors != null && config.isPipelinedParsing()) {
+                //Парсер не читает дальше последней строки диапазона и лимита
+                long maxRows = (long) lastSheetRow - nextSheetRow + 1;
+                if (maxRecords >= 0) {
+                    maxRows = Math.min(maxRows, maxRecords);
+                }
+                this.rowReader = new PrefetchingRowReader(rowReader, cellWriter, width, maxRows,
+                        parsingExecutors, parser.getStyles(), parser.isDate1904());
+            }
+            return true;
+
+        } catch (IOException
+                | InvalidFormatException
+                | CellRangeReaderException e) {
+            throw UserException.dataReadError(e)
+                    .message("Unable to open the sheet: %s", e.getMessage())
+                    .addContext(errorContext)
+                    .build(logger);
+        }
+    }
+
+    /**
+     * Declares the sheet columns and the explicitly projected implicit columns. The framework
+     * drops unprojected columns and adds null columns for projected names missing in the sheet.
+     * The implicit row number and sheet name columns take precedence over sheet columns of the same name.
+     */
+    private void createWriters(SchemaNegotiator negotiator,
+                               String[] headers,
+                               TypeProtos.MinorType[] types) {
+        boolean rowNumber = isProjected(ROW_NUMBER_COLUMN);
+        boolean sheetName = isProjected(SHEET_NAME_COLUMN);
+
+        SchemaBuilder schema = new SchemaBuilder();
+        boolean[] shadowed = new boolean[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            shadowed[i] = rowNumber && ROW_NUMBER_COLUMN.equalsIgnoreCase(headers[i])
+                    || sheetName && SHEET_NAME_COLUMN.equalsIgnoreCase(headers[i]);
+            if (!shadowed[i]) {
+                schema.addNullable(headers[i], types == null ? TypeProtos.MinorType.VARCHAR : types[i]);
+            }
+        }
+        if (rowNumber) {
+            schema.addNullable(ROW_NUMBER_COLUMN, TypeProtos.MinorType.BIGINT);
+        }
+        if (sheetName) {
+            schema.addNullable(SHEET_NAME_COLUMN, TypeProtos.MinorType.VARCHAR);
+        }
+
+        negotiator.setTableSchema(schema.buildSchema(), true);
+        this.rowWriter = negotiator.build().writer();
+
+        this.writers = new ColumnWriter[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            ColumnWriter writer = shadowed[i] ? null : ColumnWriter.create(rowWriter.scalar(headers[i]),
+                    headers[i],
+                    types == null ? TypeProtos.MinorType.VARCHAR : types[i]);
+            writers[i] = writer != null && writer.isProjected() ? writer : null;
+        }
+        this.rowNumberWriter = rowNumber ? rowWriter.scalar(ROW_NUMBER_COLUMN) : null;
+        this.sheetNameWriter = sheetName ? rowWriter.scalar(SHEET_NAME_COLUMN) : null;
+        this.sheetNameBytes = sheetName ? this.sheetName.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Implicit columns are produced only if projected by name, a wildcard alone does not include them.
+     */
+    private boolean isProjected(String name) {
+        if (columns == null) {
+            return false;
+        }
+
+        for (SchemaPath column : columns) {
+            //Имена колонок в Drill нечувствительны к регистру
+            if (name.equalsIgnoreCase(column.getRootSegmentPath())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String[] prepareHeaders(Path location,
+                                    String[] headers) {
+        if (headers == null || headers.length == 0) {
+            return ArrayUtils.EMPTY_STRING_ARRAY;
+        }
+
+        HeaderBuilder headerBuilder = new HeaderBuilder(location);
+        headerBuilder.startRecord();
+
+        for (int i = 0; i < headers.length; i++) {
+            headerBuilder.startField(i);
+            for (byte b : StringUtils.defaultString(headers[i]).getBytes(StandardCharsets.UTF_8)) {
+                headerBuilder.append(b);
+            }
+            headerBuilder.endField();
+        }
+
+        headerBuilder.finishRecord();
+        return headerBuilder.getHeaders();
+    }
+
+    @Override
+    public boolean next() {
+        if (rowReader == null) {
+            return false;
+        }
+
+        try {
+            while (!rowWriter.isFull()) {
+                //Все строки прочитаны или достигнут лимит - книга больше не нужна
+                if (nextSheetRow > lastSheetRow || recordCount == maxRecords || !rowReader.hasNext()) {
+                    releaseWorkbook();
+                    return false;
+                }
+
+                rowWriter.start();
+                rowReader.readRow(cellWriter);
+                if (rowNumberWriter != null) {
+                    rowNumberWriter.setLong(nextSheetRow + 1);
+                }
+                if (sheetNameWriter != null) {
+                    sheetNameWriter.setBytes(sheetNameBytes, sheetNameBytes.length);
+                }
+                rowWriter.save();
+                nextSheetRow++;
+                recordCount++;
+            }
+            return true;
+        } catch (final Exception e) {
+            throw UserException.dataReadError(e)
+                    .addContext(errorContext)
+                    .addContext("Row", nextSheetRow + 1)
+                    .build(logger);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            releaseWorkbook();
+
+            if (this.config.isCloseFS() && this.fileSystem != null) {
+                this.fileSystem.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Error closing {}", config.getLocation(), e);
+        }
+    }
+
+    /**
+     * Closes the parsers and the workbook and releases its local copy.
+     */
+    private void releaseWorkbook() throws IOException {
+        try {
+            if (this.rowReader != null) {
+                this.rowReader.close();
+            }
+
+            if (this.xlsx != null) {
+                this.xlsx.close();
+            }
+
+            if (this.xls != null) {
+                this.xls.close();
+            }
+
+            if (this.wb != null) {
+                this.wb.close();
+            }
+        } finally {
+            this.rowReader = null;
+            this.xlsx = null;
+            this.xls = null;
+            this.wb = null;
+            this.sheet = null;
+            this.evaluator = null;
+            if (this.source != null) {
+                this.source.close();
+                this.source = null;
+            }
+        }
+    }
+
+    /**
+     * Samples the first data rows with a separate reader, the main reader stays at the first data row.
+     */
+    private TypeProtos.MinorType[] inferTypes(CellRange dataRange, int width) throws IOException {
+        try (RowReader reader = sheet == null
+                ? new StreamingRangeReader(openSheetParser(), dataRange)
+                : new CellRangeReader(sheet, dataRange, evaluator)) {
+            return ColumnTypeSampler.sample(reader, width, TYPE_SAMPLE_ROWS);
+        }
+    }
+
+    /**
+     * Opens a new parser of the streamed sheet.
+     */
+    private SheetParser openSheetParser() throws IOException {
+        boolean cachedFormulas = config.getFormulaMode() == FormulaMode.CACHED;
+        return xlsx != null
+                ? xlsx.openSheet(xlsxSheet, cachedFormulas)
+                : xls.openSheet(xlsSheet, cachedFormulas);
+    }
+
+    /**
+     * Loads the workbook for the POI reader. Workbooks get here only to evaluate formulas,
+     * sheets the formulas of an OOXML worksheet do not reach are not loaded.
+     */
+    private Workbook readWorkbook(WorkbookSource source, String worksheet) throws IOException, InvalidFormatException {
+        FileMagic fm = source.detectFormat();
+        switch (fm) {
+            case OLE2:
+                if (source.isLocal()) {
+                    return WorkbookFactory.create(new POIFSFileSystem(source.getFile(), true));
+                }
+                try (InputStream is = source.openStream()) {
+                    return WorkbookFactory.create(new POIFSFileSystem(is));
+                }
+            case OOXML:
+                return new XSSFWorkbook(OPCPackage.open(source.getEvaluationFile(worksheet), PackageAccess.READ));
+            default:
+                throw new InvalidFormatException("Your InputStream was neither an OLE2 stream, nor an OOXML stream");
+        }
+    }
+
+    /**
+     * Writes cell values of the current row through the column writers. Cells of unprojected
+     * columns are not decoded.
+     */
+    private class CellWriter implements RowReader.TypedCellConsumer {
+
+        @Override
+        public boolean isRequired(int column) {
+            return writers[column] != null;
+        }
+
+        @Override
+        public boolean isTyped(int column) {
+            return writers[column].isTyped();
+        }
+
+        @Override
+        public void accept(int column, String value) {
+            writers[column].setText(value);
+        }
+
+        @Override
+        public void acceptText(int column, CharSequence value) {
+            writers[column].setText(value);
+        }
+
+        @Override
+        public boolean isUtf8Accepted(int column) {
+            return !writers[column].isTyped();
+        }
+
+        @Override
+        public void acceptUtf8(int column, byte[] bytes, int length) {
+            writers[column].setUtf8(bytes, length);
+        }
+
+        @Override
+        public void acceptNumber(int column, double value) {
+            writers[column].setNumber(value);
+        }
+
+        @Override
+        public void acceptDate(int column, long timestamp) {
+            writers[column].setDate(timestamp);
+        }
+
+        @Override
+        public void acceptBoolean(int column, boolean value) {
+            writers[column].setBoolean(value);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of Excel serial dates without creating a {@link java.util.Calendar} per cell.
+ */
+final class ExcelDates {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    //1900-01-01 и 1904-01-01 в днях от начала эпохи
+    private static final long EPOCH_DAY_1900 = -25567;
+    private static final long EPOCH_DAY_1904 = -24107;
+
+    private ExcelDates() {
+    }
+
+    /**
+     * Same as {@code DateUtil.getJavaCalendarUTC(value, date1904).getTimeInMillis()}
+     * including the 1900 leap year bug of Excel. The value must be a valid Excel date.
+     *
+     * @return local date and time of the cell as milliseconds since the epoch in UTC
+     * @see DateUtil#isValidExcelDate(double)
+     */
+    static long toTimestamp(double value, boolean date1904) {
+        int wholeDays = (int) Math.floor(value);
+        int millisInDay = (int) ((value - wholeDays) * DAY_MILLIS + 0.5);
+
+        long startDay;
+        int dayAdjust;
+        if (date1904) {
+            startDay = EPOCH_DAY_1904;
+            dayAdjust = 1;
+        } else {
+            startDay = EPOCH_DAY_1900;
+            //Excel считает 1900 год високосным, до 29 февраля сдвига нет
+            dayAdjust = wholeDays < 61 ? 0 : -1;
+        }
+        return (startDay + wholeDays + dayAdjust - 1) * DAY_MILLIS + millisInDay;
+    }
+}
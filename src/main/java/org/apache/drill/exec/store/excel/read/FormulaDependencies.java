@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sheets a formula evaluator may touch while computing the formulas of a sheet.
+ * <p>
+ * Starting from the given sheet, formulas are scanned for references to other sheets
+ * (including 3D ranges and defined names), then the formulas of the referenced sheets, and so on.
+ * The result is a superset of the precedents at sheet granularity: every cell of a loaded sheet
+ * may be a precedent, so whole sheets are scanned. References that cannot be resolved without
+ * evaluation ({@code INDIRECT}, structured references to tables) make every sheet required.
+ */
+class FormulaDependencies {
+
+    private static final String NAME = "[\\p{L}\\p{N}_.]+";
+    //[1] - ссылка на внешнюю книгу, 'имя' - лист в кавычках, Лист1:Лист3 - 3D диапазон
+    private static final Pattern SHEET_REFERENCE = Pattern.compile(
+            "(\\[\\d+])?(?:'((?:[^']|'')+)'|(" + NAME + "(?::" + NAME + ")?))!");
+    private static final Pattern IDENTIFIER = Pattern.compile("[\\p{L}_\\\\][\\p{L}\\p{N}_.\\\\]*");
+    private static final Pattern DYNAMIC_REFERENCE = Pattern.compile(
+            "(?i)\\bINDIRECT\\s*\\(|[\\p{L}_][\\p{L}\\p{N}_.]*\\[|\\[#");
+
+    private final OoxmlWorkbookIndex index;
+    private final OoxmlWorkbookIndex.PartOpener opener;
+
+    private final Set<OoxmlWorkbookIndex.SheetPart> sheets = new LinkedHashSet<>();
+    private final Set<String> names = new HashSet<>();
+    private final Deque<OoxmlWorkbookIndex.SheetPart> pending = new ArrayDeque<>();
+    private boolean allSheets;
+
+    private FormulaDependencies(OoxmlWorkbookIndex index, OoxmlWorkbookIndex.PartOpener opener) {
+        this.index = index;
+        this.opener = opener;
+    }
+
+    /**
+     * @return sheets whose cells may be needed to evaluate the formulas of the given sheet, the sheet included,
+     * or {@code null} if any sheet may be needed
+     */
+    static Set<OoxmlWorkbookIndex.SheetPart> find(OoxmlWorkbookIndex index,
+                                                  OoxmlWorkbookIndex.PartOpener opener,
+                                                  OoxmlWorkbookIndex.SheetPart sheet) throws IOException {
+        FormulaDependencies dependencies = new FormulaDependencies(index, opener);
+        dependencies.addSheet(sheet);
+        while (!dependencies.pending.isEmpty() && !dependencies.allSheets) {
+            dependencies.scanSheet(dependencies.pending.poll());
+        }
+        return dependencies.allSheets ? null : dependencies.sheets;
+    }
+
+    private void addSheet(OoxmlWorkbookIndex.SheetPart sheet) {
+        if (sheets.add(sheet)) {
+            pending.add(sheet);
+        }
+    }
+
+    private void scanSheet(OoxmlWorkbookIndex.SheetPart sheet) throws IOException {
+        try (InputStream is = opener.open(sheet.getPartName())) {
+            if (is == null) {
+                return;
+            }
+
+            XMLStreamReader reader = OoxmlWorkbookIndex.createInputFactory().createXMLStreamReader(is);
+            try {
+                while (reader.hasNext() && !allSheets) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && "f".equals(reader.getLocalName())) {
+                        addReferences(reader.getElementText());
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to read formulas of sheet " + sheet.getName(), e);
+        }
+    }
+
+    /**
+     * Adds the sheets referenced by a formula or a defined name.
+     */
+    private void addReferences(String formula) {
+        if (DYNAMIC_REFERENCE.matcher(formula).find()) {
+            allSheets = true;
+            return;
+        }
+
+        Matcher reference = SHEET_REFERENCE.matcher(formula);
+        while (reference.find()) {
+            if (reference.group(1) != null) {
+                //Внешняя книга, ее листы не нужны
+                continue;
+            }
+            String sheetNames = reference.group(2) != null
+                    ? reference.group(2).replace("''", "'")
+                    : reference.group(3);
+            int colon = sheetNames.indexOf(':');
+            if (colon < 0) {
+                addSheet(sheetNames);
+            } else {
+                addSheetSpan(sheetNames.substring(0, colon), sheetNames.substring(colon + 1));
+            }
+        }
+
+        Matcher identifier = IDENTIFIER.matcher(formula);
+        while (identifier.find()) {
+            String name = identifier.group().toUpperCase(Locale.ROOT);
+            String definition = index.getDefinedNames().get(name);
+            if (definition != null && names.add(name)) {
+                addReferences(definition);
+            }
+        }
+    }
+
+    private void addSheet(String name) {
+        OoxmlWorkbookIndex.SheetPart sheet = index.findSheet(name);
+        if (sheet != null) {
+            addSheet(sheet);
+        }
+    }
+
+    /**
+     * 3D reference like {@code Sheet1:Sheet3!A1} covers the sheets between the two in the workbook order.
+     */
+    private void addSheetSpan(String first, String last) {
+        List<OoxmlWorkbookIndex.SheetPart> all = index.getSheets();
+        int from = all.indexOf(index.findSheet(first));
+        int to = all.indexOf(index.findSheet(last));
+        if (from < 0 || to < 0) {
+            addSheet(first);
+            addSheet(last);
+            return;
+        }
+        for (int i = Math.min(from, to); i <= Math.max(from, to); i++) {
+            addSheet(all.get(i));
+        }
+    }
+}
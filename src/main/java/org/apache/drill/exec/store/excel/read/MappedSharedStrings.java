@@ -0,0 +1,254 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.hadoop.util.CleanerUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Shared strings stored off the heap: UTF-8 bytes of the strings one after another and the offsets
+ * of their ends, both in memory-mapped scratch files. The heap use does not depend on the table size.
+ * <p>
+ * The files are deleted right after mapping. The mappings are released when the table is closed
+ * where the JVM allows unmapping, otherwise by the garbage collector.
+ * Strings are copied to VARCHAR columns as UTF-8 bytes without decoding.
+ */
+class MappedSharedStrings extends SharedStrings {
+
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(MappedSharedStrings.class);
+
+    //Файл отображается частями по 1 ГБ, буфер адресуется int
+    private static final int SEGMENT_SHIFT = 30;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ByteBuffer[] data;
+    private final ByteBuffer[] ends;
+    private final int size;
+    private boolean closed;
+
+    private MappedSharedStrings(ByteBuffer[] data, ByteBuffer[] ends, int size) {
+        this.data = data;
+        this.ends = ends;
+        this.size = size;
+    }
+
+    @Override
+    String get(int index) {
+        byte[] bytes = new byte[getLength(index)];
+        copy(index, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    /**
+     * Unmaps the files. Parsers reading the table must be closed before.
+     */
+    @Override
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        unmap(data);
+        unmap(ends);
+    }
+
+    @Override
+    Reader newReader() {
+        return new Reader() {
+            private byte[] buffer = new byte[256];
+
+            @Override
+            public void cell(SheetParser.CellHandler handler, int col, int index) {
+                if (!handler.isUtf8Accepted(col)) {
+                    handler.cell(col, get(index));
+                    return;
+                }
+
+                int length = getLength(index);
+                if (buffer.length < length) {
+                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                }
+                copy(index, buffer);
+                handler.utf8Cell(col, buffer, length);
+            }
+        };
+    }
+
+    /**
+     * Length of the string in UTF-8 bytes.
+     */
+    int getLength(int index) {
+        return (int) (end(index) - start(index));
+    }
+
+    /**
+     * Copies the UTF-8 bytes of the string to the start of the buffer.
+     */
+    void copy(int index, byte[] buffer) {
+        long position = start(index);
+        int length = getLength(index);
+        int copied = 0;
+        while (copied < length) {
+            //Строка может пересекать границу частей
+            ByteBuffer segment = data[(int) (position >>> SEGMENT_SHIFT)].duplicate();
+            segment.position((int) (position & (SEGMENT_SIZE - 1)));
+            int count = Math.min(length - copied, segment.remaining());
+            segment.get(buffer, copied, count);
+            copied += count;
+            position += count;
+        }
+    }
+
+    private long start(int index) {
+        return index == 0 ? 0 : end(index - 1);
+    }
+
+    private long end(int index) {
+        if (closed) {
+            throw new IllegalStateException("Shared strings are closed");
+        }
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Shared string " + index + " of " + size);
+        }
+        long position = (long) index * Long.BYTES;
+        return ends[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    private static ByteBuffer[] map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            ByteBuffer[] segments = new ByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, length - start));
+            }
+            return segments;
+        }
+    }
+
+    private static void unmap(ByteBuffer[] segments) {
+        for (int i = 0; i < segments.length; i++) {
+            //Обращение к освобожденной части обрушило бы JVM, поэтому ссылки обнуляются
+            ByteBuffer segment = segments[i];
+            segments[i] = null;
+            if (segment != null && CleanerUtil.UNMAP_SUPPORTED) {
+                try {
+                    CleanerUtil.getCleaner().freeBuffer(segment);
+                } catch (IOException e) {
+                    logger.debug("Unable to unmap shared strings", e);
+                }
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        //В Windows отображенный файл не удаляется
+        if (file != null && !file.delete() && file.exists()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Writes the strings to scratch files as they are read.
+     */
+    static class Builder extends SharedStrings.Builder {
+        private File dataFile;
+        private File endsFile;
+        private OutputStream dataOut;
+        private DataOutputStream endsOut;
+        private byte[] buffer = new byte[256];
+        private long position;
+        private int size;
+
+        Builder(TempFiles tempFiles) throws IOException {
+            try {
+                dataFile = tempFiles.create("excel-strings");
+                endsFile = tempFiles.create("excel-strings");
+                dataOut = new BufferedOutputStream(new FileOutputStream(dataFile), BUFFER_SIZE);
+                endsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(endsFile), BUFFER_SIZE));
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+        }
+
+        @Override
+        void add(CharSequence text) throws IOException {
+            int maxLength = text.length() * 3;
+            if (buffer.length < maxLength) {
+                buffer = new byte[Math.max(maxLength, buffer.length * 2)];
+            }
+            int length = ColumnWriter.encodeUtf8(text, buffer);
+            dataOut.write(buffer, 0, length);
+            position += length;
+            endsOut.writeLong(position);
+            size++;
+        }
+
+        @Override
+        SharedStrings build() throws IOException {
+            try {
+                closeStreams();
+                return new MappedSharedStrings(map(dataFile), map(endsFile), size);
+            } finally {
+                abort();
+            }
+        }
+
+        @Override
+        void abort() {
+            try {
+                closeStreams();
+            } catch (IOException e) {
+                //Файлы все равно удаляются
+            }
+            delete(dataFile);
+            delete(endsFile);
+        }
+
+        private void closeStreams() throws IOException {
+            try {
+                if (dataOut != null) {
+                    dataOut.close();
+                }
+            } finally {
+                dataOut = null;
+                if (endsOut != null) {
+                    endsOut.close();
+                    endsOut = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,403 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Package structure of an OOXML workbook: the workbook part, its sheets and the shared parts
+ * a sheet reader depends on. Built from the relationship parts only, sheet data is never touched.
+ * Parts of an XLSB workbook are BIFF12 records instead of XML, the package structure is the same.
+ */
+class OoxmlWorkbookIndex {
+
+    static final String CONTENT_TYPES_PART = "[Content_Types].xml";
+    static final String PACKAGE_RELS_PART = "_rels/.rels";
+
+    private static final String ATTR_ID = "Id";
+    private static final String ATTR_TYPE = "Type";
+    private static final String ATTR_TARGET = "Target";
+    private static final String ATTR_TARGET_MODE = "TargetMode";
+
+    private final String workbookPart;
+    private final String workbookRelsPart;
+    private final String sharedStringsPart;
+    private final String stylesPart;
+    private final List<SheetPart> sheets;
+    private final Map<String, String> definedNames;
+    private final boolean date1904;
+
+    private OoxmlWorkbookIndex(String workbookPart,
+                               String workbookRelsPart,
+                               String sharedStringsPart,
+                               String stylesPart,
+                               List<SheetPart> sheets,
+                               Map<String, String> definedNames,
+                               boolean date1904) {
+        this.workbookPart = workbookPart;
+        this.workbookRelsPart = workbookRelsPart;
+        this.sharedStringsPart = sharedStringsPart;
+        this.stylesPart = stylesPart;
+        this.sheets = sheets;
+        this.definedNames = definedNames;
+        this.date1904 = date1904;
+    }
+
+    /**
+     * Reads the index from the package parts supplied by the opener.
+     */
+    static OoxmlWorkbookIndex read(PartOpener opener) throws IOException {
+        String workbookPart = null;
+        for (Relationship rel : readRelationships(opener, PACKAGE_RELS_PART, "")) {
+            if (rel.type.endsWith("/officeDocument")) {
+                workbookPart = rel.target;
+                break;
+            }
+        }
+
+        if (workbookPart == null) {
+            throw new IOException("Workbook part not found");
+        }
+
+        String workbookRelsPart = relationshipsPartOf(workbookPart);
+        String sharedStringsPart = null;
+        String stylesPart = null;
+        Map<String, String> sheetTargets = new HashMap<>();
+        for (Relationship rel : readRelationships(opener, workbookRelsPart, directoryOf(workbookPart))) {
+            if (rel.type.endsWith("/sharedStrings")) {
+                sharedStringsPart = rel.target;
+            } else if (rel.type.endsWith("/styles")) {
+                stylesPart = rel.target;
+            } else if (isSheetRelationship(rel.type)) {
+                sheetTargets.put(rel.id, rel.target);
+            }
+        }
+
+        if (isBinaryPart(workbookPart)) {
+            return readBinary(opener, workbookPart, workbookRelsPart, sharedStringsPart, stylesPart, sheetTargets);
+        }
+
+        List<SheetPart> sheets = new ArrayList<>();
+        Map<String, String> definedNames = new HashMap<>();
+        boolean date1904 = false;
+        try (InputStream is = opener.open(workbookPart)) {
+            if (is == null) {
+                throw new IOException("Workbook part not found: " + workbookPart);
+            }
+
+            XMLStreamReader reader = createInputFactory().createXMLStreamReader(is);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+
+                    if ("sheet".equals(reader.getLocalName())) {
+                        String name = reader.getAttributeValue(null, "name");
+                        String target = sheetTargets.get(getRelationshipId(reader));
+                        if (target != null) {
+                            sheets.add(new SheetPart(name, target));
+                        }
+                    } else if ("definedName".equals(reader.getLocalName())) {
+                        //Имя может быть определено для нескольких листов, формулы объединяем
+                        String name = reader.getAttributeValue(null, "name").toUpperCase(Locale.ROOT);
+                        definedNames.merge(name, reader.getElementText(), (a, b) -> a + "," + b);
+                    } else if ("workbookPr".equals(reader.getLocalName())) {
+                        String value = reader.getAttributeValue(null, "date1904");
+                        date1904 = "1".equals(value) || "true".equals(value);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to read workbook part " + workbookPart, e);
+        }
+
+        return new OoxmlWorkbookIndex(workbookPart,
+                workbookRelsPart,
+                sharedStringsPart,
+                stylesPart,
+                Collections.unmodifiableList(sheets),
+                Collections.unmodifiableMap(definedNames),
+                date1904);
+    }
+
+    /**
+     * Reads the sheet list and the date system of an XLSB workbook part. Defined names are not read,
+     * their formulas are stored as binary tokens.
+     */
+    private static OoxmlWorkbookIndex readBinary(PartOpener opener,
+                                                 String workbookPart,
+                                                 String workbookRelsPart,
+                                                 String sharedStringsPart,
+                                                 String stylesPart,
+                                                 Map<String, String> sheetTargets) throws IOException {
+        List<SheetPart> sheets = new ArrayList<>();
+        boolean date1904 = false;
+        InputStream is = opener.open(workbookPart);
+        if (is == null) {
+            throw new IOException("Workbook part not found: " + workbookPart);
+        }
+
+        try (XlsbRecordReader reader = new XlsbRecordReader(is)) {
+            StringBuilder text = new StringBuilder();
+            while (reader.next()) {
+                byte[] data = reader.getData();
+                if (reader.getType() == XlsbRecordReader.BUNDLE_SH) {
+                    //hsState и iTabID, затем идентификатор связи и имя листа
+                    text.setLength(0);
+                    int offset = XlsbRecordReader.readWideString(data, 8, text);
+                    String target = sheetTargets.get(text.toString());
+                    text.setLength(0);
+                    XlsbRecordReader.readWideString(data, offset, text);
+                    if (target != null) {
+                        sheets.add(new SheetPart(text.toString(), target));
+                    }
+                } else if (reader.getType() == XlsbRecordReader.WB_PROP) {
+                    date1904 = (data[0] & 0x01) != 0;
+                }
+            }
+        }
+
+        return new OoxmlWorkbookIndex(workbookPart,
+                workbookRelsPart,
+                sharedStringsPart,
+                stylesPart,
+                Collections.unmodifiableList(sheets),
+                Collections.emptyMap(),
+                date1904);
+    }
+
+    /**
+     * Whether the workbook is an XLSB one.
+     */
+    boolean isBinary() {
+        return isBinaryPart(workbookPart);
+    }
+
+    String getWorkbookPart() {
+        return workbookPart;
+    }
+
+    String getWorkbookRelsPart() {
+        return workbookRelsPart;
+    }
+
+    String getSharedStringsPart() {
+        return sharedStringsPart;
+    }
+
+    String getStylesPart() {
+        return stylesPart;
+    }
+
+    List<SheetPart> getSheets() {
+        return sheets;
+    }
+
+    /**
+     * Formulas of the workbook defined names by upper-case name.
+     */
+    Map<String, String> getDefinedNames() {
+        return definedNames;
+    }
+
+    /**
+     * Whether serial dates of the workbook count from 1904 instead of 1900.
+     */
+    boolean isDate1904() {
+        return date1904;
+    }
+
+    /**
+     * Finds a sheet the same way {@code Workbook.getSheet} does; {@code null} name means the first sheet.
+     */
+    SheetPart findSheet(String name) {
+        if (name == null) {
+            return sheets.isEmpty() ? null : sheets.get(0);
+        }
+
+        for (SheetPart sheet : sheets) {
+            if (name.equalsIgnoreCase(sheet.getName())) {
+                return sheet;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parts a streaming reader needs to open the given sheet. Other sheet parts are still referenced
+     * by the workbook and should be replaced with empty stubs.
+     */
+    Set<String> getRequiredParts(SheetPart sheet) {
+        Set<String> parts = new LinkedHashSet<>();
+        parts.add(CONTENT_TYPES_PART);
+        parts.add(PACKAGE_RELS_PART);
+        parts.add(workbookPart);
+        parts.add(workbookRelsPart);
+        if (sharedStringsPart != null) {
+            parts.add(sharedStringsPart);
+        }
+        if (stylesPart != null) {
+            parts.add(stylesPart);
+        }
+        parts.add(sheet.getPartName());
+        return parts;
+    }
+
+    static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    static boolean isBinaryPart(String partName) {
+        return partName.endsWith(".bin");
+    }
+
+    private static boolean isSheetRelationship(String type) {
+        return type.endsWith("/worksheet")
+                || type.endsWith("/chartsheet")
+                || type.endsWith("/dialogsheet")
+                || type.endsWith("/xlMacrosheet");
+    }
+
+    private static String getRelationshipId(XMLStreamReader reader) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            //r:id, пространство имен отличается в transitional и strict форматах
+            if ("id".equals(reader.getAttributeLocalName(i)) && !reader.getAttributeNamespace(i).isEmpty()) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    private static List<Relationship> readRelationships(PartOpener opener,
+                                                        String partName,
+                                                        String baseDirectory) throws IOException {
+        List<Relationship> result = new ArrayList<>();
+        try (InputStream is = opener.open(partName)) {
+            if (is == null) {
+                return result;
+            }
+
+            XMLStreamReader reader = createInputFactory().createXMLStreamReader(is);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT
+                            && "Relationship".equals(reader.getLocalName())
+                            && !"External".equals(reader.getAttributeValue(null, ATTR_TARGET_MODE))) {
+                        result.add(new Relationship(reader.getAttributeValue(null, ATTR_ID),
+                                reader.getAttributeValue(null, ATTR_TYPE),
+                                resolve(baseDirectory, reader.getAttributeValue(null, ATTR_TARGET))));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to read relationships part " + partName, e);
+        }
+        return result;
+    }
+
+    static String relationshipsPartOf(String partName) {
+        return directoryOf(partName) + "_rels/" + partName.substring(partName.lastIndexOf('/') + 1) + ".rels";
+    }
+
+    private static String directoryOf(String partName) {
+        return partName.substring(0, partName.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Resolves a relationship target to a zip entry name (no leading slash, no dot segments).
+     */
+    static String resolve(String baseDirectory, String target) {
+        String path = target.startsWith("/") ? target.substring(1) : baseDirectory + target;
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || ".".equals(segment)) {
+                continue;
+            }
+            if ("..".equals(segment)) {
+                segments.pollLast();
+            } else {
+                segments.addLast(segment);
+            }
+        }
+        return String.join("/", segments);
+    }
+
+    /**
+     * Opens a package part by its zip entry name. Returns {@code null} if the part is absent.
+     */
+    interface PartOpener {
+        InputStream open(String partName) throws IOException;
+    }
+
+    static class SheetPart {
+        private final String name;
+        private final String partName;
+
+        SheetPart(String name, String partName) {
+            this.name = name;
+            this.partName = partName;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getPartName() {
+            return partName;
+        }
+
+        boolean isBinary() {
+            return isBinaryPart(partName);
+        }
+    }
+
+    private static class Relationship {
+        private final String id;
+        private final String type;
+        private final String target;
+
+        Relationship(String id, String type, String target) {
+            this.id = id;
+            this.type = type == null ? "" : type;
+            this.target = target;
+        }
+    }
+}
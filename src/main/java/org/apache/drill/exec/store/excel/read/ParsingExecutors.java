@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.drill.common.config.DrillConfig;
+import org.apache.drill.shaded.guava.com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread pools of pipelined sheet parsing, shared by all plugins of the Drillbit.
+ * Their sizes are boot options, so pipelined scans of many fragments cannot take all the cores of the node.
+ * The parser pool does not queue sheets: when all its threads are busy, a sheet is parsed on the fragment thread.
+ */
+public class ParsingExecutors {
+
+    public static final String PARSER_THREADS_KEY = "drill.exec.storage.excel.parsing.parser_threads";
+    public static final String FORMATTER_THREADS_KEY = "drill.exec.storage.excel.parsing.formatter_threads";
+
+    //Простаивающие потоки парсеров завершаются
+    private static final long PARSER_KEEP_ALIVE_SECONDS = 60;
+
+    private static ParsingExecutors instance;
+
+    private final ThreadPoolExecutor parsers;
+    private final ForkJoinPool formatters;
+
+    /**
+     * @param parserThreads    maximum number of sheets parsed ahead at once
+     * @param formatterThreads parallelism of the pool formatting numbers of wide sheets
+     */
+    public ParsingExecutors(int parserThreads, int formatterThreads) {
+        if (parserThreads < 1) {
+            throw new IllegalArgumentException("Number of parser threads must be positive: " + parserThreads);
+        }
+        if (formatterThreads < 1) {
+            throw new IllegalArgumentException("Number of formatter threads must be positive: " + formatterThreads);
+        }
+        //Без очереди: занятый пул отклоняет задачу, и лист читается в потоке фрагмента
+        this.parsers = new ThreadPoolExecutor(0, parserThreads,
+                PARSER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("excel-parser-%d")
+                        .setDaemon(true)
+                        .build());
+        this.formatters = new ForkJoinPool(formatterThreads);
+    }
+
+    /**
+     * Returns the pools shared by all plugins of the Drillbit.
+     */
+    public static synchronized ParsingExecutors getInstance(DrillConfig config) {
+        if (instance == null) {
+            instance = new ParsingExecutors(config.getInt(PARSER_THREADS_KEY), config.getInt(FORMATTER_THREADS_KEY));
+        }
+        return instance;
+    }
+
+    /**
+     * Executor of sheet parsers, throws {@link java.util.concurrent.RejectedExecutionException} when saturated.
+     */
+    Executor getParsers() {
+        return parsers;
+    }
+
+    ForkJoinPool getFormatters() {
+        return formatters;
+    }
+}
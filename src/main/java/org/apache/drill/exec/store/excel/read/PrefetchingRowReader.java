@@ -0,0 +1,614 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Reads rows of another {@link RowReader} ahead on a parser thread.
+ * If all parser threads of {@link ParsingExecutors} are busy, rows are read directly on the caller thread.
+ * <p>
+ * The parser thread unzips and parses the sheet into blocks of rows while the caller writes the previous blocks
+ * to value vectors. The number of blocks is fixed, so the parser waits when the caller falls behind.
+ * Cell values are copied into the blocks, which are reused once the caller has read them.
+ * <p>
+ * Numbers of wide sheets with many text columns are formatted neither by the parser thread nor by the caller:
+ * the parser passes them unformatted, and each block is formatted on the shared formatter pool of {@link ParsingExecutors}
+ * while the parser reads the next one. Text columns are split into partitions formatted in parallel,
+ * every partition of a block has its own formatter and output buffer.
+ * Closing the reader stops the parser thread after the current row and waits for it
+ * before the wrapped reader is closed, so the wrapped reader is never used by two threads at once.
+ */
+class PrefetchingRowReader implements RowReader {
+
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PrefetchingRowReader.class);
+
+    static final int BLOCK_ROWS = 256;
+    static final int BLOCK_COUNT = 4;
+    //Меньше колонок на задачу не окупает накладные расходы пула
+    static final int MIN_COLUMNS_PER_PARTITION = 8;
+
+    //Признак конца листа в очереди
+    private static final Block END = new Block(0, null, null, false);
+
+    private final RowReader delegate;
+    private final Executor parsers;
+    private final long maxRows;
+    private final boolean[] required;
+    private final boolean[] typed;
+    //Раздел форматирования колонки, -1 - числа форматирует парсер
+    private final int[] partitions;
+
+    private final BlockingQueue<Block> free = new ArrayBlockingQueue<>(BLOCK_COUNT);
+    private final BlockingQueue<Block> filled = new ArrayBlockingQueue<>(BLOCK_COUNT + 1);
+    private final TextSlice slice = new TextSlice();
+
+    private volatile boolean cancelled;
+    private volatile Throwable failure;
+    private boolean started;
+    //Пул парсеров был занят, строки читаются в потоке вызывающего
+    private boolean direct;
+    private long directRows;
+    private Block current;
+    private int rowIndex;
+    private int cellIndex;
+    private boolean finished;
+    private boolean closed;
+
+    /**
+     * @param delegate  reader positioned at the first row to read, used only by the parser thread from now on
+     * @param columns   consumer defining the required and typed columns of the {@code width} range columns,
+     *                  rows must be read with consumers accepting the same columns
+     * @param maxRows   maximum number of rows to read ahead
+     * @param executors pools of the parser thread and of the formatting of numbers of wide sheets
+     */
+    PrefetchingRowReader(RowReader delegate, CellValueConsumer columns, int width, long maxRows, ParsingExecutors executors) {
+        this(delegate, columns, width, maxRows, executors, null, false);
+    }
+
+    /**
+     * @param styles    number formats of the sheet, numbers of wide sheets are formatted in parallel if not {@code null}
+     * @param date1904  whether dates of the sheet use the 1904 date system
+     */
+    PrefetchingRowReader(RowReader delegate,
+                         CellValueConsumer columns,
+                         int width,
+                         long maxRows,
+                         ParsingExecutors executors,
+                         StyleFormats styles,
+                         boolean date1904) {
+        this.delegate = delegate;
+        this.parsers = executors.getParsers();
+        this.maxRows = maxRows;
+        this.required = new boolean[width];
+        this.typed = new boolean[width];
+        this.partitions = new int[width];
+        TypedCellConsumer typedColumns = columns instanceof TypedCellConsumer ? (TypedCellConsumer) columns : null;
+        int textColumns = 0;
+        for (int i = 0; i < width; i++) {
+            required[i] = columns.isRequired(i);
+            typed[i] = required[i] && typedColumns != null && typedColumns.isTyped(i);
+            if (required[i] && !typed[i]) {
+                textColumns++;
+            }
+        }
+
+        ForkJoinPool formatters = styles == null ? null : executors.getFormatters();
+        int partitionCount = formatters == null
+                ? 0
+                : Math.min(formatters.getParallelism(), textColumns / MIN_COLUMNS_PER_PARTITION);
+        if (partitionCount < 2) {
+            partitionCount = 0;
+        }
+        int next = 0;
+        for (int i = 0; i < width; i++) {
+            partitions[i] = partitionCount > 0 && required[i] && !typed[i] ? next++ % partitionCount : -1;
+        }
+
+        for (int i = 0; i < BLOCK_COUNT; i++) {
+            free.add(new Block(partitionCount, formatters, styles, date1904));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (direct) {
+            return directRows < maxRows && delegate.hasNext();
+        }
+        while (current == null || rowIndex == current.rowCount) {
+            if (finished) {
+                return false;
+            }
+            if (!started) {
+                started = true;
+                try {
+                    parsers.execute(this::parse);
+                } catch (RejectedExecutionException e) {
+                    logger.debug("All sheet parser threads are busy, parsing on the caller thread");
+                    direct = true;
+                    return hasNext();
+                }
+            }
+            release();
+
+            Block block;
+            try {
+                block = filled.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CellRangeReaderException("Interrupted while waiting for the sheet parser", e);
+            }
+
+            if (block == END) {
+                finished = true;
+                Throwable e = failure;
+                if (e instanceof CellRangeReaderException) {
+                    throw (CellRangeReaderException) e;
+                } else if (e != null) {
+                    throw new CellRangeReaderException(e.getMessage(), e);
+                }
+                return false;
+            }
+
+            current = block;
+            rowIndex = 0;
+            cellIndex = 0;
+            block.awaitFormatting();
+        }
+        return true;
+    }
+
+    @Override
+    public void readRow(CellValueConsumer consumer) {
+        if (!hasNext()) {
+            throw new CellRangeReaderException("Invalid read operation");
+        }
+        if (direct) {
+            delegate.readRow(consumer);
+            directRows++;
+            return;
+        }
+
+        Block block = current;
+        int end = block.rowEnds[rowIndex];
+        for (int i = cellIndex; i < end; i++) {
+            int column = block.columns[i];
+            switch (block.kinds[i]) {
+                case Block.TEXT:
+                    slice.set(block.text, i == 0 ? 0 : block.textEnds[i - 1], block.textEnds[i]);
+                    consumer.acceptText(column, slice);
+                    break;
+                case Block.UNFORMATTED:
+                    FormatPartition partition = block.partitions[partitions[column]];
+                    slice.set(partition.text, block.formatStarts[i], block.formatEnds[i]);
+                    consumer.acceptText(column, slice);
+                    break;
+                case Block.NUMBER:
+                    ((TypedCellConsumer) consumer).acceptNumber(column, Double.longBitsToDouble(block.values[i]));
+                    break;
+                case Block.DATE:
+                    ((TypedCellConsumer) consumer).acceptDate(column, block.values[i]);
+                    break;
+                default:
+                    ((TypedCellConsumer) consumer).acceptBoolean(column, block.values[i] != 0);
+            }
+        }
+        cellIndex = end;
+        rowIndex++;
+    }
+
+    /**
+     * Rows can be skipped only before the first read, the parser thread starts at the current row.
+     */
+    @Override
+    public void skipTo(int row) {
+        if (started) {
+            throw new IllegalStateException("Rows cannot be skipped once reading has started");
+        }
+        delegate.skipTo(row);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            if (started && !direct) {
+                cancelled = true;
+                awaitParser();
+            }
+        } finally {
+            delegate.close();
+        }
+    }
+
+    /**
+     * Returns blocks to the parser thread until it puts the end marker, which it does last.
+     */
+    private void awaitParser() {
+        boolean interrupted = false;
+        while (!finished) {
+            //Парсер мог ждать свободный блок - возвращаем ему все прочитанные
+            release();
+            try {
+                current = filled.take();
+                finished = current == END;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        current = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void release() {
+        if (current != null && current != END) {
+            current.clear();
+            free.add(current);
+        }
+        current = null;
+    }
+
+    /**
+     * Parser thread body.
+     */
+    private void parse() {
+        Recorder recorder = new Recorder();
+        Block block = null;
+        long rows = 0;
+        try {
+            while (!cancelled && rows < maxRows && delegate.hasNext()) {
+                block = free.take();
+                recorder.block = block;
+                while (block.rowCount < BLOCK_ROWS && rows < maxRows && !cancelled && delegate.hasNext()) {
+                    delegate.readRow(recorder);
+                    block.endRow();
+                    rows++;
+                }
+                block.startFormatting();
+                filled.put(block);
+                block = null;
+            }
+        } catch (InterruptedException e) {
+            logger.debug("Sheet parser interrupted");
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            if (!cancelled) {
+                failure = e;
+            }
+        } finally {
+            //Очередь рассчитана на все блоки и маркер конца, место всегда есть.
+            //Строки, прочитанные до ошибки, отдаются перед ней
+            if (block != null) {
+                block.discardRow();
+                block.startFormatting();
+                filled.offer(block);
+            }
+            filled.offer(END);
+        }
+    }
+
+    /**
+     * Copies cell values of the parser thread into the current block.
+     */
+    private class Recorder implements DeferredFormatConsumer {
+        private Block block;
+
+        @Override
+        public boolean isRequired(int column) {
+            return column < required.length && required[column];
+        }
+
+        @Override
+        public boolean isTyped(int column) {
+            return column < typed.length && typed[column];
+        }
+
+        @Override
+        public void accept(int column, String value) {
+            block.addText(column, value);
+        }
+
+        @Override
+        public void acceptText(int column, CharSequence value) {
+            block.addText(column, value);
+        }
+
+        @Override
+        public void acceptNumber(int column, double value) {
+            block.addValue(column, Block.NUMBER, Double.doubleToRawLongBits(value));
+        }
+
+        @Override
+        public void acceptDate(int column, long timestamp) {
+            block.addValue(column, Block.DATE, timestamp);
+        }
+
+        @Override
+        public void acceptBoolean(int column, boolean value) {
+            block.addValue(column, Block.BOOLEAN, value ? 1 : 0);
+        }
+
+        @Override
+        public boolean isFormatDeferred(int column) {
+            return column < partitions.length && partitions[column] >= 0;
+        }
+
+        @Override
+        public void acceptUnformatted(int column, double value, int styleIndex) {
+            block.addUnformatted(column, value, styleIndex, partitions[column]);
+        }
+    }
+
+    /**
+     * Rows of cells stored in flat arrays. Text values are stored one after another in a single char array,
+     * numbers, dates and booleans are stored as long values. Unformatted numbers are formatted
+     * into the text buffers of their partitions.
+     */
+    private static class Block {
+        static final byte TEXT = 0;
+        static final byte NUMBER = 1;
+        static final byte DATE = 2;
+        static final byte BOOLEAN = 3;
+        static final byte UNFORMATTED = 4;
+
+        private final int[] rowEnds = new int[BLOCK_ROWS];
+        private int rowCount;
+
+        private int cellCount;
+        private int[] columns = new int[BLOCK_ROWS];
+        private byte[] kinds = new byte[BLOCK_ROWS];
+        private long[] values = new long[BLOCK_ROWS];
+        private int[] textEnds = new int[BLOCK_ROWS];
+
+        private char[] text = new char[BLOCK_ROWS * 16];
+        private int textLength;
+
+        //Стиль неформатированного числа и границы его текста в буфере раздела
+        private int[] styleIndexes = new int[BLOCK_ROWS];
+        private int[] formatStarts = new int[BLOCK_ROWS];
+        private int[] formatEnds = new int[BLOCK_ROWS];
+        private final FormatPartition[] partitions;
+        private final ForkJoinPool formatters;
+        private ForkJoinTask<?> formatting;
+
+        Block(int partitionCount, ForkJoinPool formatters, StyleFormats styles, boolean date1904) {
+            this.formatters = formatters;
+            this.partitions = new FormatPartition[partitionCount];
+            for (int i = 0; i < partitionCount; i++) {
+                partitions[i] = new FormatPartition(this, styles, date1904);
+            }
+        }
+
+        void addText(int column, CharSequence value) {
+            int length = value.length();
+            if (textLength + length > text.length) {
+                text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + length));
+            }
+            if (value instanceof String) {
+                ((String) value).getChars(0, length, text, textLength);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    text[textLength + i] = value.charAt(i);
+                }
+            }
+            textLength += length;
+            add(column, TEXT, 0);
+        }
+
+        void addValue(int column, byte kind, long value) {
+            add(column, kind, value);
+        }
+
+        void addUnformatted(int column, double value, int styleIndex, int partition) {
+            add(column, UNFORMATTED, Double.doubleToRawLongBits(value));
+            styleIndexes[cellCount - 1] = styleIndex;
+            partitions[partition].add(cellCount - 1);
+        }
+
+        private void add(int column, byte kind, long value) {
+            if (cellCount == columns.length) {
+                int size = cellCount * 2;
+                columns = Arrays.copyOf(columns, size);
+                kinds = Arrays.copyOf(kinds, size);
+                values = Arrays.copyOf(values, size);
+                textEnds = Arrays.copyOf(textEnds, size);
+                styleIndexes = Arrays.copyOf(styleIndexes, size);
+                formatStarts = Arrays.copyOf(formatStarts, size);
+                formatEnds = Arrays.copyOf(formatEnds, size);
+            }
+            columns[cellCount] = column;
+            kinds[cellCount] = kind;
+            values[cellCount] = value;
+            textEnds[cellCount] = textLength;
+            cellCount++;
+        }
+
+        void endRow() {
+            rowEnds[rowCount++] = cellCount;
+        }
+
+        /**
+         * Drops the cells of a row that was not read to the end.
+         */
+        void discardRow() {
+            cellCount = rowCount == 0 ? 0 : rowEnds[rowCount - 1];
+            textLength = cellCount == 0 ? 0 : textEnds[cellCount - 1];
+            for (FormatPartition partition : partitions) {
+                partition.discardFrom(cellCount);
+            }
+        }
+
+        /**
+         * Formats the unformatted numbers on the formatting pool, the partitions of the block in parallel.
+         */
+        void startFormatting() {
+            int pending = 0;
+            for (FormatPartition partition : partitions) {
+                if (partition.cellCount > 0) {
+                    pending++;
+                }
+            }
+            if (pending == 0) {
+                return;
+            }
+
+            formatting = formatters.submit(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(partitions)));
+        }
+
+        /**
+         * Waits for the numbers of the block to be formatted.
+         */
+        void awaitFormatting() {
+            if (formatting != null) {
+                try {
+                    formatting.join();
+                } catch (RuntimeException e) {
+                    throw new CellRangeReaderException(e.getMessage(), e);
+                }
+            }
+        }
+
+        void clear() {
+            //Блок нельзя переиспользовать, пока его форматируют
+            if (formatting != null) {
+                formatting.quietlyJoin();
+                formatting = null;
+            }
+            for (FormatPartition partition : partitions) {
+                partition.clear();
+            }
+            rowCount = 0;
+            cellCount = 0;
+            textLength = 0;
+        }
+    }
+
+    /**
+     * Formats the unformatted numbers of a group of text columns of a block.
+     * Each partition owns its formatter, so partitions run on different threads without sharing state.
+     */
+    private static class FormatPartition extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Block block;
+        private final StyleFormats styles;
+        private final boolean date1904;
+        //Создается в потоке ридера: локаль DataFormatter берется из его потока
+        private final CellFormatCache formats = new CellFormatCache();
+
+        private int[] cells = new int[BLOCK_ROWS];
+        private int cellCount;
+        private char[] text = new char[BLOCK_ROWS * 16];
+        private int textLength;
+
+        FormatPartition(Block block, StyleFormats styles, boolean date1904) {
+            this.block = block;
+            this.styles = styles;
+            this.date1904 = date1904;
+        }
+
+        void add(int cell) {
+            if (cellCount == cells.length) {
+                cells = Arrays.copyOf(cells, cellCount * 2);
+            }
+            cells[cellCount++] = cell;
+        }
+
+        void discardFrom(int cell) {
+            while (cellCount > 0 && cells[cellCount - 1] >= cell) {
+                cellCount--;
+            }
+        }
+
+        @Override
+        protected void compute() {
+            textLength = 0;
+            for (int i = 0; i < cellCount; i++) {
+                int cell = cells[i];
+                int styleIndex = block.styleIndexes[cell];
+                formats.compile(styleIndex, styles);
+                CharSequence value = formats.format(Double.longBitsToDouble(block.values[cell]), styleIndex, date1904);
+                int length = value.length();
+                if (textLength + length > text.length) {
+                    text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + length));
+                }
+                for (int j = 0; j < length; j++) {
+                    text[textLength + j] = value.charAt(j);
+                }
+                block.formatStarts[cell] = textLength;
+                textLength += length;
+                block.formatEnds[cell] = textLength;
+            }
+        }
+
+        void clear() {
+            cellCount = 0;
+            textLength = 0;
+            reinitialize();
+        }
+    }
+
+    /**
+     * Text value of a block passed to a consumer without copying.
+     */
+    private static class TextSlice implements CharSequence {
+        private char[] chars;
+        private int start;
+        private int end;
+
+        void set(char[] chars, int start, int end) {
+            this.chars = chars;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, this.start + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, start, end - start);
+        }
+    }
+}
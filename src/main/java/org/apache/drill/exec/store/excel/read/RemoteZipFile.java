@@ -0,0 +1,413 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Zip archive read with positional reads, so only the central directory and the requested entries
+ * are transferred from a remote file system.
+ * <p>
+ * ZIP64 archives are not supported, {@link ZipException} is thrown for them.
+ */
+class RemoteZipFile implements AutoCloseable {
+
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int DESCRIPTOR_SIGNATURE = 0x08074b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 0x08;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final int ZIP_VERSION = 20;
+    // 01.01.1980 в формате MS-DOS
+    private static final int DOS_DATE = 0x21;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FSDataInputStream in;
+    private final long length;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private long bytesRead;
+
+    RemoteZipFile(FSDataInputStream in, long length) throws IOException {
+        this.in = in;
+        this.length = length;
+        readCentralDirectory();
+    }
+
+    boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    Collection<String> getEntryNames() {
+        return entries.keySet();
+    }
+
+    /**
+     * Total count of bytes fetched from the underlying stream.
+     */
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    long getLength() {
+        return length;
+    }
+
+    /**
+     * Opens an uncompressed stream of the entry or returns {@code null} if it is absent.
+     */
+    InputStream openEntry(String name) throws IOException {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+
+        InputStream raw = new RangeInputStream(getDataOffset(entry), entry.compressedSize, entry.method == METHOD_DEFLATED);
+        switch (entry.method) {
+            case METHOD_STORED:
+                return raw;
+            case METHOD_DEFLATED:
+                return new InflaterInputStream(raw, new Inflater(true), BUFFER_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        inf.end();
+                    }
+                };
+            default:
+                throw new ZipException("Unsupported compression method " + entry.method + " of " + name);
+        }
+    }
+
+    /**
+     * Whether the entry is present and compressed with deflate.
+     */
+    boolean isDeflated(String name) {
+        Entry entry = entries.get(name);
+        return entry != null && entry.method == METHOD_DEFLATED;
+    }
+
+    /**
+     * Returns a string that changes whenever the compressed data of the entry moves or changes its size.
+     */
+    String getEntryLocation(String name) throws IOException {
+        Entry entry = getDeflatedEntry(name);
+        return name + "@" + getDataOffset(entry) + ":" + entry.compressedSize;
+    }
+
+    /**
+     * Opens the raw deflated data of the entry from the given offset, with a trailing zero byte.
+     */
+    InputStream openDeflated(String name, long offset) throws IOException {
+        Entry entry = getDeflatedEntry(name);
+        if (offset < 0 || offset > entry.compressedSize) {
+            throw new IllegalArgumentException("Invalid offset " + offset + " of " + name);
+        }
+        return new RangeInputStream(getDataOffset(entry) + offset, entry.compressedSize - offset, true);
+    }
+
+    /**
+     * Writes a zip file with the given entries copied without recompression.
+     * Stubs are written as stored entries in place of the original entries with the same name.
+     */
+    void writeSubset(File target,
+                     Collection<String> names,
+                     Map<String, byte[]> stubs) throws IOException {
+        ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+        long offset = 0;
+        int count = 0;
+
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(target), BUFFER_SIZE)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (Entry entry : entries.values()) {
+                byte[] stub = stubs.get(entry.name);
+                if (stub != null) {
+                    byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+                    CRC32 crc = new CRC32();
+                    crc.update(stub);
+                    os.write(storedLocalHeader(name, stub.length, crc.getValue()));
+                    os.write(stub);
+                    centralDirectory.write(storedCentralHeader(name, stub.length, crc.getValue(), offset));
+                    offset += LOCAL_HEADER_SIZE + name.length + stub.length;
+                    count++;
+                } else if (names.contains(entry.name)) {
+                    long start = entry.localOffset;
+                    long end = getDataOffset(entry) + entry.compressedSize;
+                    end += getDescriptorSize(entry, end);
+
+                    for (long pos = start; pos < end; ) {
+                        int len = (int) Math.min(buffer.length, end - pos);
+                        readFully(pos, buffer, 0, len);
+                        os.write(buffer, 0, len);
+                        pos += len;
+                    }
+
+                    byte[] header = entry.centralHeader.clone();
+                    putInt(header, 42, offset);
+                    centralDirectory.write(header);
+                    offset += end - start;
+                    count++;
+                }
+            }
+
+            if (offset > 0xFFFFFFFFL) {
+                throw new ZipException("Zip file is too large: " + target);
+            }
+
+            byte[] end = new byte[END_SIZE];
+            putInt(end, 0, END_SIGNATURE);
+            putShort(end, 8, count);
+            putShort(end, 10, count);
+            putInt(end, 12, centralDirectory.size());
+            putInt(end, 16, offset);
+
+            centralDirectory.writeTo(os);
+            os.write(end);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readCentralDirectory() throws IOException {
+        int tailSize = (int) Math.min(length, END_SIZE + MAX_COMMENT_SIZE);
+        byte[] tail = new byte[tailSize];
+        readFully(length - tailSize, tail, 0, tailSize);
+
+        int end = -1;
+        for (int i = tailSize - END_SIZE; i >= 0; i--) {
+            if (getInt(tail, i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+
+        if (end < 0) {
+            throw new ZipException("End of central directory not found");
+        }
+
+        int count = getShort(tail, end + 10);
+        long size = getUnsignedInt(tail, end + 12);
+        long offset = getUnsignedInt(tail, end + 16);
+        if (count == 0xFFFF || size == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 archives are not supported");
+        }
+
+        byte[] directory = new byte[(int) size];
+        readFully(offset, directory, 0, directory.length);
+
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            if (getInt(directory, pos) != CENTRAL_SIGNATURE) {
+                throw new ZipException("Invalid central directory header");
+            }
+
+            int nameLength = getShort(directory, pos + 28);
+            int headerLength = CENTRAL_HEADER_SIZE
+                    + nameLength
+                    + getShort(directory, pos + 30)
+                    + getShort(directory, pos + 32);
+
+            Entry entry = new Entry();
+            entry.name = new String(directory, pos + CENTRAL_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+            entry.flags = getShort(directory, pos + 8);
+            entry.method = getShort(directory, pos + 10);
+            entry.compressedSize = getUnsignedInt(directory, pos + 20);
+            entry.localOffset = getUnsignedInt(directory, pos + 42);
+            entry.centralHeader = new byte[headerLength];
+            System.arraycopy(directory, pos, entry.centralHeader, 0, headerLength);
+            entries.put(entry.name, entry);
+
+            pos += headerLength;
+        }
+    }
+
+    private Entry getDeflatedEntry(String name) throws ZipException {
+        Entry entry = entries.get(name);
+        if (entry == null || entry.method != METHOD_DEFLATED) {
+            throw new ZipException("No deflated entry " + name);
+        }
+        return entry;
+    }
+
+    private long getDataOffset(Entry entry) throws IOException {
+        if (entry.dataOffset < 0) {
+            byte[] header = new byte[LOCAL_HEADER_SIZE];
+            readFully(entry.localOffset, header, 0, header.length);
+            if (getInt(header, 0) != LOCAL_SIGNATURE) {
+                throw new ZipException("Invalid local header of " + entry.name);
+            }
+            entry.dataOffset = entry.localOffset + LOCAL_HEADER_SIZE + getShort(header, 26) + getShort(header, 28);
+        }
+        return entry.dataOffset;
+    }
+
+    private int getDescriptorSize(Entry entry, long position) throws IOException {
+        if ((entry.flags & FLAG_DATA_DESCRIPTOR) == 0) {
+            return 0;
+        }
+        byte[] signature = new byte[4];
+        readFully(position, signature, 0, signature.length);
+        return getInt(signature, 0) == DESCRIPTOR_SIGNATURE ? 16 : 12;
+    }
+
+    private void readFully(long position, byte[] buffer, int offset, int len) throws IOException {
+        in.readFully(position, buffer, offset, len);
+        bytesRead += len;
+    }
+
+    private static byte[] storedLocalHeader(byte[] name, int size, long crc) {
+        byte[] header = new byte[LOCAL_HEADER_SIZE + name.length];
+        putInt(header, 0, LOCAL_SIGNATURE);
+        putShort(header, 4, ZIP_VERSION);
+        putShort(header, 6, FLAG_UTF8);
+        putShort(header, 8, METHOD_STORED);
+        putShort(header, 12, DOS_DATE);
+        putInt(header, 14, crc);
+        putInt(header, 18, size);
+        putInt(header, 22, size);
+        putShort(header, 26, name.length);
+        System.arraycopy(name, 0, header, LOCAL_HEADER_SIZE, name.length);
+        return header;
+    }
+
+    private static byte[] storedCentralHeader(byte[] name, int size, long crc, long offset) {
+        byte[] header = new byte[CENTRAL_HEADER_SIZE + name.length];
+        putInt(header, 0, CENTRAL_SIGNATURE);
+        putShort(header, 4, ZIP_VERSION);
+        putShort(header, 6, ZIP_VERSION);
+        putShort(header, 8, FLAG_UTF8);
+        putShort(header, 10, METHOD_STORED);
+        putShort(header, 14, DOS_DATE);
+        putInt(header, 16, crc);
+        putInt(header, 20, size);
+        putInt(header, 24, size);
+        putShort(header, 28, name.length);
+        putInt(header, 42, offset);
+        System.arraycopy(name, 0, header, CENTRAL_HEADER_SIZE, name.length);
+        return header;
+    }
+
+    private static int getShort(byte[] b, int off) {
+        return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8;
+    }
+
+    private static int getInt(byte[] b, int off) {
+        return getShort(b, off) | getShort(b, off + 2) << 16;
+    }
+
+    private static long getUnsignedInt(byte[] b, int off) {
+        return getInt(b, off) & 0xFFFFFFFFL;
+    }
+
+    private static void putShort(byte[] b, int off, int value) {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) (value >>> 8);
+    }
+
+    private static void putInt(byte[] b, int off, long value) {
+        putShort(b, off, (int) value);
+        putShort(b, off + 2, (int) (value >>> 16));
+    }
+
+    private static class Entry {
+        private String name;
+        private int flags;
+        private int method;
+        private long compressedSize;
+        private long localOffset;
+        private long dataOffset = -1;
+        private byte[] centralHeader;
+    }
+
+    /**
+     * Reads a byte range of the archive. Deflated data gets a trailing zero byte,
+     * as {@link Inflater} in nowrap mode may need it to detect the end of data.
+     */
+    private class RangeInputStream extends InputStream {
+        private long position;
+        private final long end;
+        private boolean padded;
+
+        RangeInputStream(long position, long length, boolean pad) {
+            this.position = position;
+            this.end = position + length;
+            this.padded = !pad;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (position >= end) {
+                if (padded) {
+                    return -1;
+                }
+                padded = true;
+                b[off] = 0;
+                return 1;
+            }
+
+            int n = in.read(position, b, off, (int) Math.min(len, end - position));
+            if (n < 0) {
+                throw new EOFException("Unexpected end of zip file");
+            }
+            position += n;
+            bytesRead += n;
+            return n;
+        }
+    }
+}
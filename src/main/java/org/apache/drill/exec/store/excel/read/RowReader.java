@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the rows of a cell range one by one. Rows of the range missing in the sheet are read as empty rows.
+ */
+interface RowReader extends AutoCloseable {
+
+    boolean hasNext();
+
+    /**
+     * Reads the next row of the range and passes its non-null cell values to the consumer.
+     */
+    void readRow(CellValueConsumer consumer);
+
+    /**
+     * Moves the reader forward to the given 0-based sheet row, rows in between are skipped without reading their cells.
+     */
+    void skipTo(int row);
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    interface CellValueConsumer {
+        /**
+         * Whether the column is needed at all, cells of other columns are skipped without decoding.
+         */
+        default boolean isRequired(int column) {
+            return true;
+        }
+
+        /**
+         * @param column 0-based column index within the range
+         * @param value  formatted cell value
+         */
+        void accept(int column, String value);
+
+        /**
+         * Called instead of {@link #accept(int, String)} when the value is held in a buffer reused by the reader.
+         * The value is valid only during the call.
+         */
+        default void acceptText(int column, CharSequence value) {
+            accept(column, value.toString());
+        }
+
+        /**
+         * Whether text of the column may be passed as UTF-8 bytes to {@link #acceptUtf8(int, byte[], int)}.
+         */
+        default boolean isUtf8Accepted(int column) {
+            return false;
+        }
+
+        /**
+         * @param bytes buffer reused by the reader, valid only during the call
+         */
+        default void acceptUtf8(int column, byte[] bytes, int length) {
+            accept(column, new String(bytes, 0, length, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Consumer of native cell values. Numeric, date and boolean cells of typed columns are passed as is,
+     * blank cells of typed columns are skipped, other cells are passed as formatted text.
+     */
+    interface TypedCellConsumer extends CellValueConsumer {
+
+        boolean isTyped(int column);
+
+        void acceptNumber(int column, double value);
+
+        /**
+         * @param timestamp local date and time of the cell as milliseconds since the epoch in UTC
+         */
+        void acceptDate(int column, long timestamp);
+
+        void acceptBoolean(int column, boolean value);
+    }
+
+    /**
+     * Consumer that formats numbers of some text columns itself, e.g. on other threads.
+     * Supported by readers of streamed sheets, other readers pass formatted text.
+     */
+    interface DeferredFormatConsumer extends TypedCellConsumer {
+
+        /**
+         * Whether numbers of the column are passed to {@link #acceptUnformatted(int, double, int)}.
+         * Only columns that are not typed can be deferred.
+         */
+        boolean isFormatDeferred(int column);
+
+        /**
+         * @param styleIndex cell style of the number, see {@link SheetParser#getStyles()}
+         */
+        void acceptUnformatted(int column, double value, int styleIndex);
+    }
+}
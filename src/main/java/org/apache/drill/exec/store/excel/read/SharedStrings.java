@@ -0,0 +1,225 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared strings table of an OOXML workbook, cells of type "s" refer to the strings by index.
+ * A large table is kept off the heap, see {@link MappedSharedStrings}.
+ */
+abstract class SharedStrings {
+
+    static final SharedStrings EMPTY = new HeapStrings(new ArrayList<>());
+
+    /**
+     * Uncompressed size of a shared strings part above which the table is kept off the heap.
+     */
+    static final long OFF_HEAP_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Scratch files in the system temp directory.
+     */
+    static final TempFiles SYSTEM_TEMP_FILES = prefix -> File.createTempFile(prefix, ".tmp");
+
+    static SharedStrings read(InputStream is) throws IOException {
+        return read(is, null);
+    }
+
+    /**
+     * @param offHeapFiles creates the memory-mapped files of the table, {@code null} to keep the table on the heap
+     */
+    static SharedStrings read(InputStream is, TempFiles offHeapFiles) throws IOException {
+        Builder builder = builder(offHeapFiles);
+        try {
+            XMLStreamReader reader = OoxmlWorkbookIndex.createInputFactory().createXMLStreamReader(is);
+            try {
+                StringBuilder text = new StringBuilder();
+                int phoneticDepth = 0;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if ("sst".equals(name)) {
+                            String count = reader.getAttributeValue(null, "uniqueCount");
+                            if (count != null) {
+                                builder.expect(Integer.parseInt(count));
+                            }
+                        } else if ("si".equals(name)) {
+                            text.setLength(0);
+                        } else if ("rPh".equals(name)) {
+                            //Фонетические подсказки не являются частью значения
+                            phoneticDepth++;
+                        } else if ("t".equals(name) && phoneticDepth == 0) {
+                            text.append(reader.getElementText());
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if ("si".equals(name)) {
+                            builder.add(text);
+                        } else if ("rPh".equals(name)) {
+                            phoneticDepth--;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            return builder.build();
+        } catch (XMLStreamException | NumberFormatException e) {
+            builder.abort();
+            throw new IOException("Unable to read shared strings", e);
+        } catch (IOException | RuntimeException e) {
+            builder.abort();
+            throw e;
+        }
+    }
+
+    static SharedStrings readBinary(InputStream is) throws IOException {
+        return readBinary(is, null);
+    }
+
+    /**
+     * Reads the {@code BrtSstItem} records of an XLSB shared strings part.
+     *
+     * @param offHeapFiles creates the memory-mapped files of the table, {@code null} to keep the table on the heap
+     */
+    static SharedStrings readBinary(InputStream is, TempFiles offHeapFiles) throws IOException {
+        Builder builder = builder(offHeapFiles);
+        try (XlsbRecordReader reader = new XlsbRecordReader(is)) {
+            StringBuilder text = new StringBuilder();
+            while (reader.next()) {
+                if (reader.getType() == XlsbRecordReader.BEGIN_SST) {
+                    //cstTotal, затем cstUnique
+                    builder.expect(XlsbRecordReader.readInt(reader.getData(), 4));
+                } else if (reader.getType() == XlsbRecordReader.SST_ITEM) {
+                    //RichStr: байт флагов, затем текст; форматирование и фонетика следуют за текстом
+                    text.setLength(0);
+                    XlsbRecordReader.readWideString(reader.getData(), 1, text);
+                    builder.add(text);
+                }
+            }
+            return builder.build();
+        } catch (IOException | RuntimeException e) {
+            builder.abort();
+            throw e;
+        }
+    }
+
+    private static Builder builder(TempFiles offHeapFiles) throws IOException {
+        return offHeapFiles != null ? new MappedSharedStrings.Builder(offHeapFiles) : new HeapStrings.Builder();
+    }
+
+    abstract String get(int index);
+
+    abstract int size();
+
+    /**
+     * Creates a reader of the strings for one parser. Readers are not thread-safe, the table is.
+     */
+    Reader newReader() {
+        return (handler, col, index) -> handler.cell(col, get(index));
+    }
+
+    /**
+     * Releases the resources of the table, it cannot be read afterwards.
+     */
+    void close() {
+    }
+
+    /**
+     * Creates scratch files, e.g. in the {@link org.apache.drill.exec.store.excel.cache.WorkbookFileCache} directory.
+     */
+    interface TempFiles {
+        File create(String prefix) throws IOException;
+    }
+
+    /**
+     * Passes shared strings to cell handlers.
+     */
+    interface Reader {
+        void cell(SheetParser.CellHandler handler, int col, int index);
+    }
+
+    /**
+     * Collects the strings in the order of the table.
+     */
+    abstract static class Builder {
+        /**
+         * Declared count of the strings, may be wrong.
+         */
+        void expect(int count) {
+        }
+
+        abstract void add(CharSequence text) throws IOException;
+
+        abstract SharedStrings build() throws IOException;
+
+        /**
+         * Releases the resources of a table that failed to read.
+         */
+        void abort() {
+        }
+    }
+
+    private static class HeapStrings extends SharedStrings {
+        private final List<String> strings;
+
+        HeapStrings(List<String> strings) {
+            this.strings = strings;
+        }
+
+        @Override
+        String get(int index) {
+            return strings.get(index);
+        }
+
+        @Override
+        int size() {
+            return strings.size();
+        }
+
+        static class Builder extends SharedStrings.Builder {
+            private List<String> strings = new ArrayList<>();
+
+            @Override
+            void expect(int count) {
+                if (strings.isEmpty()) {
+                    strings = new ArrayList<>(Math.max(0, count));
+                }
+            }
+
+            @Override
+            void add(CharSequence text) {
+                strings.add(text.toString());
+            }
+
+            @Override
+            SharedStrings build() {
+                return new HeapStrings(strings);
+            }
+        }
+    }
+}
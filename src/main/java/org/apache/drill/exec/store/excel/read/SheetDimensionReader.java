@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads the {@code <dimension ref>} element of an OOXML sheet or the {@code BrtWsDim} record of an XLSB one.
+ * Both precede the sheet data, so only the head of the sheet part is inflated.
+ */
+class SheetDimensionReader {
+
+    private SheetDimensionReader() {
+    }
+
+    /**
+     * Returns the declared extent of the worksheet ({@code null} means the first one)
+     * or {@code null} if the sheet does not declare a usable one.
+     */
+    static CellRange read(File file, String worksheet) throws IOException {
+        try (ZipFile zip = new ZipFile(file)) {
+            OoxmlWorkbookIndex index = OoxmlWorkbookIndex.read(name -> {
+                ZipEntry entry = zip.getEntry(name);
+                return entry == null ? null : zip.getInputStream(entry);
+            });
+
+            OoxmlWorkbookIndex.SheetPart sheet = index.findSheet(worksheet);
+            ZipEntry entry = sheet == null ? null : zip.getEntry(sheet.getPartName());
+            if (entry == null) {
+                return null;
+            }
+
+            try (InputStream is = zip.getInputStream(entry)) {
+                return read(is, sheet.isBinary());
+            }
+        }
+    }
+
+    static CellRange read(InputStream is, boolean binary) throws IOException {
+        if (binary) {
+            try (XlsbSheetParser parser = new XlsbSheetParser(is, SharedStrings.EMPTY, StyleFormats.EMPTY, false)) {
+                return parser.getDimension();
+            }
+        }
+        return read(is);
+    }
+
+    static CellRange read(InputStream is) throws IOException {
+        try {
+            XMLStreamReader reader = OoxmlWorkbookIndex.createInputFactory().createXMLStreamReader(is);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        if ("dimension".equals(reader.getLocalName())) {
+                            return parse(reader.getAttributeValue(null, "ref"));
+                        }
+                        if ("sheetData".equals(reader.getLocalName())) {
+                            return null;
+                        }
+                    }
+                }
+                return null;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to read sheet dimension", e);
+        }
+    }
+
+    /**
+     * A single cell reference (usually "A1") is written for empty sheets and by some generators
+     * that do not track the extent, so it is not trusted.
+     */
+    static CellRange parse(String ref) {
+        if (ref == null || ref.indexOf(':') < 0) {
+            return null;
+        }
+
+        CellRangeAddress address;
+        try {
+            address = CellRangeAddress.valueOf(ref);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return new CellRange(address.getFirstRow(),
+                address.getLastRow(),
+                address.getFirstColumn(),
+                address.getLastColumn());
+    }
+}
@@ -0,0 +1,493 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.drill.exec.store.excel.cache.WorkbookFileCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Checkpoints for resuming the decompression of a deflated OOXML sheet part near a given row.
+ * <p>
+ * A checkpoint is taken at a deflate block boundary every {@link #DEFAULT_SPAN} bytes of sheet XML.
+ * It holds the bit offset of the block, the last 32K of XML before it, which back references of the block
+ * may point to, and the offset and number of the first {@code <row>} after it. The XML of the sheet before
+ * {@code <sheetData>} is kept as well, so a resumed stream is a well-formed sheet starting with the row.
+ * <p>
+ * {@link Inflater} cannot start in the middle of a byte, so a resumed stream is prefixed with empty
+ * deflate blocks of such a total bit length that the block of the checkpoint starts at the same bit
+ * of its first byte as in the original data.
+ */
+class SheetIndex {
+
+    static final int DEFAULT_SPAN = 2 * 1024 * 1024;
+
+    private static final int MAGIC = 0x58495358;
+    private static final int VERSION = 1;
+    //Заголовок листа длиннее - индекс не строится
+    private static final int MAX_HEADER_SIZE = 4 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final byte[] header;
+    private final List<Checkpoint> checkpoints;
+
+    private SheetIndex(byte[] header, List<Checkpoint> checkpoints) {
+        this.header = header;
+        this.checkpoints = checkpoints;
+    }
+
+    /**
+     * Reads the deflated sheet XML once and collects checkpoints at most every {@code span} bytes of XML.
+     * A sheet without {@code <sheetData>} gets an index without checkpoints.
+     */
+    static SheetIndex build(InputStream deflated, int span) throws IOException {
+        Builder builder = new Builder(span);
+        DeflateDecoder decoder = new DeflateDecoder(deflated, builder);
+        builder.decoder = decoder;
+        decoder.decode();
+        return builder.header == null
+                ? new SheetIndex(new byte[0], new ArrayList<>())
+                : new SheetIndex(builder.header, builder.checkpoints);
+    }
+
+    /**
+     * Loads the index from the store, building it on the first request.
+     *
+     * @param store    keeps index files between queries
+     * @param key      identifies the sheet part and its position within the file
+     * @param deflated opens the deflated sheet part to build the index
+     */
+    static SheetIndex load(Store store, String key, DeflatedSource deflated) throws IOException {
+        File file = store.get(key, target -> {
+            SheetIndex index;
+            try (InputStream is = deflated.open(0)) {
+                index = build(is, DEFAULT_SPAN);
+            }
+            index.write(target);
+        });
+        return file == null ? null : read(file);
+    }
+
+    static SheetIndex read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(new FileInputStream(file)), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Invalid sheet index " + file);
+            }
+            byte[] header = new byte[in.readInt()];
+            in.readFully(header);
+            int count = in.readInt();
+            List<Checkpoint> checkpoints = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Checkpoint checkpoint = new Checkpoint(in.readLong(), in.readLong(), new byte[in.readInt()]);
+                in.readFully(checkpoint.window);
+                checkpoint.rowOffset = in.readLong();
+                checkpoint.row = in.readInt();
+                checkpoints.add(checkpoint);
+            }
+            return new SheetIndex(header, checkpoints);
+        }
+    }
+
+    void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new DeflaterOutputStream(new FileOutputStream(file)), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(header.length);
+            out.write(header);
+            out.writeInt(checkpoints.size());
+            for (Checkpoint checkpoint : checkpoints) {
+                out.writeLong(checkpoint.bitOffset);
+                out.writeLong(checkpoint.outOffset);
+                out.writeInt(checkpoint.window.length);
+                out.write(checkpoint.window);
+                out.writeLong(checkpoint.rowOffset);
+                out.writeInt(checkpoint.row);
+            }
+        }
+    }
+
+    /**
+     * 0-based number of the last checkpoint row not after the given row, -1 if there is none.
+     */
+    int floorRow(int row) {
+        Checkpoint checkpoint = floor(row);
+        return checkpoint == null ? -1 : checkpoint.row;
+    }
+
+    List<Checkpoint> getCheckpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * Opens the sheet XML that continues with the {@code <row>} element of the last checkpoint not after
+     * the given row. The rows before it are left out.
+     */
+    InputStream open(int row, DeflatedSource deflated) throws IOException {
+        Checkpoint checkpoint = floor(row);
+        if (checkpoint == null) {
+            throw new IllegalArgumentException("No checkpoint before row " + (row + 1));
+        }
+
+        InputStream data = deflated.open(checkpoint.bitOffset >>> 3);
+        byte[] prefix = prefix((int) (checkpoint.bitOffset & 7), data);
+        Inflater inflater = new Inflater(true);
+        //Обратные ссылки блока могут указывать на 32K вывода перед ним
+        inflater.setDictionary(checkpoint.window);
+        InputStream xml = new InflaterInputStream(new SequenceInputStream(new ByteArrayInputStream(prefix), data),
+                inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                inf.end();
+            }
+        };
+        try {
+            skipFully(xml, checkpoint.rowOffset - checkpoint.outOffset);
+        } catch (IOException | RuntimeException e) {
+            xml.close();
+            throw e;
+        }
+        return new SequenceInputStream(new ByteArrayInputStream(header), xml);
+    }
+
+    private Checkpoint floor(int row) {
+        Checkpoint result = null;
+        int low = 0;
+        int high = checkpoints.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Checkpoint checkpoint = checkpoints.get(mid);
+            if (checkpoint.row <= row) {
+                result = checkpoint;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Empty deflate blocks taking {@code bit} bits modulo 8 followed by the first byte of the data with
+     * its first {@code bit} bits replaced by the last bits of the blocks.
+     */
+    static byte[] prefix(int bit, InputStream data) throws IOException {
+        BitWriter writer = new BitWriter();
+        //Пустой фиксированный блок - 10 бит, пустой динамический - 95 бит
+        if (bit % 2 == 1) {
+            writer.emptyDynamicBlock();
+        }
+        int fixedBlocks = (bit - writer.bitCount % 8 + 8) % 8 / 2;
+        for (int i = 0; i < fixedBlocks; i++) {
+            writer.emptyFixedBlock();
+        }
+        if (writer.bitCount % 8 != bit) {
+            throw new IllegalStateException("Prefix of " + writer.bitCount + " bits for bit " + bit);
+        }
+
+        if (bit != 0) {
+            int first = data.read();
+            if (first < 0) {
+                throw new EOFException("Unexpected end of deflate data");
+            }
+            writer.write(first >>> bit, 8 - bit);
+        }
+        return writer.toByteArray();
+    }
+
+    private static void skipFully(InputStream is, long count) throws IOException {
+        while (count > 0) {
+            long skipped = is.skip(count);
+            if (skipped <= 0) {
+                throw new EOFException("Unexpected end of sheet data");
+            }
+            count -= skipped;
+        }
+    }
+
+    /**
+     * Opens the deflated data of a sheet part.
+     */
+    interface DeflatedSource {
+        /**
+         * @param offset number of bytes of the deflated data to skip
+         */
+        InputStream open(long offset) throws IOException;
+    }
+
+    /**
+     * Keeps index files, e.g. in the {@link WorkbookFileCache}.
+     */
+    interface Store {
+        /**
+         * Returns the index file, creating it with the builder if needed, or {@code null} if there is no store.
+         */
+        File get(String key, WorkbookFileCache.Loader builder) throws IOException;
+    }
+
+    static class Checkpoint {
+        private final long bitOffset;
+        private final long outOffset;
+        private final byte[] window;
+        private long rowOffset;
+        private int row;
+
+        Checkpoint(long bitOffset, long outOffset, byte[] window) {
+            this.bitOffset = bitOffset;
+            this.outOffset = outOffset;
+            this.window = window;
+        }
+
+        int getRow() {
+            return row;
+        }
+
+        long getBitOffset() {
+            return bitOffset;
+        }
+    }
+
+    /**
+     * Writes bits in the order deflate reads them, the least significant bit first.
+     */
+    private static class BitWriter {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int buffer;
+        private int pending;
+        private int bitCount;
+
+        void write(int value, int count) {
+            for (int i = 0; i < count; i++) {
+                buffer |= (value >>> i & 1) << pending;
+                bitCount++;
+                if (++pending == 8) {
+                    bytes.write(buffer);
+                    buffer = 0;
+                    pending = 0;
+                }
+            }
+        }
+
+        /**
+         * Non-final block with fixed codes and just the end of block code.
+         */
+        void emptyFixedBlock() {
+            write(0, 1);
+            write(1, 2);
+            write(0, 7);
+        }
+
+        /**
+         * Non-final block with dynamic codes in which only the end of block code has a length.
+         */
+        void emptyDynamicBlock() {
+            write(0, 1);
+            write(2, 2);
+            //257 кодов литералов, 1 код расстояний, 19 длин кодов длин
+            write(0, 5);
+            write(0, 5);
+            write(15, 4);
+            //Коды длин: 18 (повтор нулей) - '0', 0 - '10', 1 - '11'
+            for (int symbol : DeflateDecoder.CODE_LENGTH_ORDER) {
+                write(symbol == 18 ? 1 : symbol == 0 || symbol == 1 ? 2 : 0, 3);
+            }
+            //256 нулевых длин литералов: 138 + 118
+            write(0, 1);
+            write(138 - 11, 7);
+            write(0, 1);
+            write(118 - 11, 7);
+            //Длина 1 у конца блока, 0 у единственного расстояния (коды пишутся со старшего бита)
+            write(3, 2);
+            write(1, 2);
+            //Конец блока
+            write(0, 1);
+        }
+
+        byte[] toByteArray() {
+            if (pending != 0) {
+                bytes.write(buffer);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * Collects the sheet header and checkpoints from the decoded XML. Tags are matched by their local names,
+     * the same way {@link XlsxSheetParser} does.
+     */
+    private static class Builder implements DeflateDecoder.Listener {
+        private static final int MAX_TAG_PREFIX = 256;
+
+        private final int span;
+        private final List<Checkpoint> checkpoints = new ArrayList<>();
+        private DeflateDecoder decoder;
+
+        private final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        private byte[] header;
+        private boolean sheetDataEnded;
+        private boolean tooLong;
+
+        //Начало тега и первые байты тега до '>'
+        private final byte[] tag = new byte[MAX_TAG_PREFIX];
+        private int tagLength = -1;
+        private long tagOffset;
+        private long offset;
+        //0-based номер последней строки, как его считает парсер
+        private int row = -1;
+        private long lastCheckpoint;
+        private Checkpoint pending;
+
+        Builder(int span) {
+            this.span = span;
+        }
+
+        @Override
+        public void blockStart(long bitOffset, long outOffset) {
+            if (header != null && !sheetDataEnded && pending == null && outOffset - lastCheckpoint >= span) {
+                pending = new Checkpoint(bitOffset, outOffset, decoder.getWindow());
+                lastCheckpoint = outOffset;
+            }
+        }
+
+        @Override
+        public void output(byte[] buffer, int start, int length) {
+            if (header == null && !tooLong) {
+                headerBytes.write(buffer, start, length);
+                tooLong = headerBytes.size() > MAX_HEADER_SIZE;
+            }
+            if (sheetDataEnded || tooLong) {
+                offset += length;
+                return;
+            }
+
+            for (int i = start; i < start + length; i++, offset++) {
+                byte b = buffer[i];
+                if (b == '<') {
+                    tagLength = 0;
+                    tagOffset = offset;
+                } else if (tagLength >= 0) {
+                    if (b == '>') {
+                        endTag(offset + 1);
+                        tagLength = -1;
+                    } else if (tagLength < MAX_TAG_PREFIX) {
+                        tag[tagLength++] = b;
+                    }
+                }
+            }
+        }
+
+        private void endTag(long end) {
+            boolean closing = tagLength > 0 && tag[0] == '/';
+            int nameStart = closing ? 1 : 0;
+            int nameEnd = nameStart;
+            while (nameEnd < tagLength && !isNameEnd(tag[nameEnd])) {
+                if (tag[nameEnd] == ':') {
+                    nameStart = nameEnd + 1;
+                }
+                nameEnd++;
+            }
+
+            if (header == null) {
+                if (!closing && isName("sheetData", nameStart, nameEnd)) {
+                    if (tag[tagLength - 1] == '/') {
+                        //Пустой лист - строк нет
+                        sheetDataEnded = true;
+                    } else {
+                        header = Arrays.copyOf(headerBytes.toByteArray(), (int) end);
+                    }
+                }
+                return;
+            }
+
+            if (closing && isName("sheetData", nameStart, nameEnd)) {
+                sheetDataEnded = true;
+                pending = null;
+            } else if (!closing && isName("row", nameStart, nameEnd)) {
+                int r = rowAttribute(nameEnd);
+                row = r > 0 ? r - 1 : row + 1;
+                //Тег, начатый до блока, не подходит - ждем следующую строку
+                if (pending != null && tagOffset >= pending.outOffset) {
+                    pending.rowOffset = tagOffset;
+                    pending.row = row;
+                    checkpoints.add(pending);
+                    pending = null;
+                }
+            }
+        }
+
+        private boolean isName(String name, int start, int end) {
+            if (end - start != name.length()) {
+                return false;
+            }
+            for (int i = 0; i < name.length(); i++) {
+                if (tag[start + i] != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Value of the {@code r} attribute of a row tag, 0 if the attribute is absent or not in the tag prefix.
+         */
+        private int rowAttribute(int from) {
+            String attributes = new String(tag, from, tagLength - from, StandardCharsets.US_ASCII);
+            int i = -1;
+            while ((i = attributes.indexOf("r=", i + 1)) >= 0) {
+                if (i > 0 && isNameEnd((byte) attributes.charAt(i - 1))) {
+                    int quote = i + 2;
+                    int end = quote < attributes.length() ? attributes.indexOf(attributes.charAt(quote), quote + 1) : -1;
+                    if (end > quote) {
+                        try {
+                            return Integer.parseInt(attributes.substring(quote + 1, end).trim());
+                        } catch (NumberFormatException e) {
+                            return 0;
+                        }
+                    }
+                    return 0;
+                }
+            }
+            return 0;
+        }
+
+        private static boolean isNameEnd(byte b) {
+            return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '/' || b == '>';
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pull parser of a sheet that reads cell records directly, without building POI row and cell objects.
+ * Cell values are formatted the same way {@link org.apache.poi.ss.usermodel.DataFormatter#formatCellValue}
+ * formats them, values of typed columns are passed as numbers, dates and booleans.
+ */
+interface SheetParser extends AutoCloseable {
+
+    int END = -1;
+
+    /**
+     * Extent declared by the sheet or {@code null} if there is no usable one.
+     */
+    CellRange getDimension();
+
+    /**
+     * Number formats of the cell styles passed to {@link CellHandler#unformattedCell(int, double, int)}.
+     */
+    StyleFormats getStyles();
+
+    boolean isDate1904();
+
+    /**
+     * Moves to the next row, skipping cells of the current one if they were not read.
+     *
+     * @return 0-based row number or {@link #END} after the last row
+     */
+    int nextRow() throws IOException;
+
+    /**
+     * Reads the cells of the row returned by the last {@link #nextRow()} call.
+     * Values of cells not required by the handler are not formatted.
+     */
+    void readCells(CellHandler handler) throws IOException;
+
+    /**
+     * Hints that the rows before the given 0-based row are not needed. The parser may skip some of them,
+     * the rows it returns next are still in order.
+     */
+    default void seek(int row) throws IOException {
+    }
+
+    @Override
+    void close() throws IOException;
+
+    /**
+     * Detects the extent of the used cells the same way {@link SheetRangeDetector} does,
+     * reading all rows of the parser. Cell values are not read.
+     */
+    static CellRange detectRange(SheetParser parser) throws IOException {
+        RangeCollector collector = new RangeCollector();
+        for (int row = parser.nextRow(); row != END; row = parser.nextRow()) {
+            collector.startRow = Math.min(collector.startRow, row);
+            collector.endRow = Math.max(collector.endRow, row);
+            parser.readCells(collector);
+        }
+        return collector.toRange();
+    }
+
+    interface CellHandler {
+        /**
+         * Called for every cell of the row, the value is read only if the column is required.
+         */
+        boolean isColumnRequired(int col);
+
+        /**
+         * @param value formatted value, may be a buffer reused for the next cells
+         */
+        void cell(int col, CharSequence value);
+
+        /**
+         * Whether numeric, date and boolean values of the column are passed as is instead of formatted text.
+         */
+        default boolean isTyped(int col) {
+            return false;
+        }
+
+        default void numericCell(int col, double value) {
+        }
+
+        default void dateCell(int col, long timestamp) {
+        }
+
+        default void booleanCell(int col, boolean value) {
+        }
+
+        /**
+         * Whether a shared string of the column may be passed as UTF-8 bytes to {@link #utf8Cell(int, byte[], int)}
+         * instead of text.
+         */
+        default boolean isUtf8Accepted(int col) {
+            return false;
+        }
+
+        /**
+         * @param bytes buffer reused for the next cells
+         */
+        default void utf8Cell(int col, byte[] bytes, int length) {
+            cell(col, new String(bytes, 0, length, StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Whether numbers of the column are passed unformatted to {@link #unformattedCell(int, double, int)},
+         * so the handler can format them later. Applies only to columns that are not typed.
+         */
+        default boolean isFormatDeferred(int col) {
+            return false;
+        }
+
+        /**
+         * @param styleIndex cell style holding the number format of the value, see {@link #getStyles()}
+         */
+        default void unformattedCell(int col, double value, int styleIndex) {
+        }
+    }
+
+    /**
+     * Collects the bounds of the cells, only cell positions are needed.
+     */
+    class RangeCollector implements CellHandler {
+        private int startRow = Integer.MAX_VALUE;
+        private int endRow = Integer.MIN_VALUE;
+        private int startCol = Integer.MAX_VALUE;
+        private int endCol = Integer.MIN_VALUE;
+
+        @Override
+        public boolean isColumnRequired(int col) {
+            startCol = Math.min(startCol, col);
+            endCol = Math.max(endCol, col);
+            return false;
+        }
+
+        @Override
+        public void cell(int col, CharSequence value) {
+        }
+
+        CellRange toRange() {
+            if (startRow == Integer.MAX_VALUE) {
+                return new CellRange(0, 0, 0, 0);
+            }
+            if (startCol == Integer.MAX_VALUE) {
+                return new CellRange(startRow, endRow, 0, 0);
+            }
+            return new CellRange(startRow, endRow, startCol, endCol);
+        }
+    }
+}
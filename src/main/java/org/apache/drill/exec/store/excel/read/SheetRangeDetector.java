@@ -26,7 +26,7 @@ import java.util.Iterator;
  * @author Oleg Zinoviev
  * @since 16.01.18.
  */
-class SheetRangeDetector {
+class SheetRangeDetector implements RangeDetector {
     private final Sheet sheet;
 
     SheetRangeDetector(Sheet sheet) {
@@ -35,7 +35,8 @@ class SheetRangeDetector {
         this.sheet = sheet;
     }
 
-    CellRange detectRange() {
+    @Override
+    public CellRange detectRange() {
         int startRow = Integer.MAX_VALUE;
         int endRow = Integer.MIN_VALUE;
 
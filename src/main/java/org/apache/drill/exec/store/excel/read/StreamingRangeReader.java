@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import java.io.IOException;
+
+/**
+ * Reads a cell range of a sheet streamed by a {@link SheetParser}. Behaves like {@link CellRangeReader}:
+ * rows missing in the sheet are read as empty rows and a range with an open end lasts until the last row.
+ */
+class StreamingRangeReader implements RowReader, SheetParser.CellHandler {
+
+    private static final int NOT_READ = -2;
+
+    private final SheetParser parser;
+    private final CellRange cellRange;
+    private final int lastRow;
+
+    private int index;
+    //Номер следующей физической строки с номером >= index
+    private int nextRowNum = NOT_READ;
+    private CellValueConsumer consumer;
+    private TypedCellConsumer typedConsumer;
+    private DeferredFormatConsumer deferredConsumer;
+
+    StreamingRangeReader(SheetParser parser, CellRange cellRange) {
+        this.parser = parser;
+        this.cellRange = cellRange;
+        this.index = cellRange.getRowStart();
+        this.lastRow = cellRange.getRowEnd();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (index > lastRow) {
+            return false;
+        }
+        return !cellRange.isOpenEnded() || peekRow() != SheetParser.END;
+    }
+
+    @Override
+    public void readRow(CellValueConsumer consumer) {
+        if (!hasNext()) {
+            throw new CellRangeReaderException("Invalid read operation");
+        }
+
+        try {
+            int row = peekRow();
+            if (row == SheetParser.END || index < row) {
+                return;
+            }
+
+            this.consumer = consumer;
+            this.typedConsumer = consumer instanceof TypedCellConsumer ? (TypedCellConsumer) consumer : null;
+            this.deferredConsumer = consumer instanceof DeferredFormatConsumer ? (DeferredFormatConsumer) consumer : null;
+            parser.readCells(this);
+            nextRowNum = NOT_READ;
+        } catch (IOException e) {
+            throw new CellRangeReaderException(e.getMessage(), e);
+        } finally {
+            this.consumer = null;
+            this.typedConsumer = null;
+            this.deferredConsumer = null;
+            index++;
+        }
+    }
+
+    @Override
+    public void skipTo(int row) {
+        index = Math.max(index, row);
+    }
+
+    @Override
+    public boolean isColumnRequired(int col) {
+        return cellRange.isColumnInRange(col) && consumer.isRequired(col - cellRange.getColStart());
+    }
+
+    @Override
+    public void cell(int col, CharSequence value) {
+        consumer.acceptText(col - cellRange.getColStart(), value);
+    }
+
+    @Override
+    public boolean isUtf8Accepted(int col) {
+        return consumer.isUtf8Accepted(col - cellRange.getColStart());
+    }
+
+    @Override
+    public void utf8Cell(int col, byte[] bytes, int length) {
+        consumer.acceptUtf8(col - cellRange.getColStart(), bytes, length);
+    }
+
+    @Override
+    public boolean isTyped(int col) {
+        return typedConsumer != null && typedConsumer.isTyped(col - cellRange.getColStart());
+    }
+
+    @Override
+    public void numericCell(int col, double value) {
+        typedConsumer.acceptNumber(col - cellRange.getColStart(), value);
+    }
+
+    @Override
+    public void dateCell(int col, long timestamp) {
+        typedConsumer.acceptDate(col - cellRange.getColStart(), timestamp);
+    }
+
+    @Override
+    public void booleanCell(int col, boolean value) {
+        typedConsumer.acceptBoolean(col - cellRange.getColStart(), value);
+    }
+
+    @Override
+    public boolean isFormatDeferred(int col) {
+        int column = col - cellRange.getColStart();
+        return deferredConsumer != null && !deferredConsumer.isTyped(column) && deferredConsumer.isFormatDeferred(column);
+    }
+
+    @Override
+    public void unformattedCell(int col, double value, int styleIndex) {
+        deferredConsumer.acceptUnformatted(col - cellRange.getColStart(), value, styleIndex);
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    private int peekRow() {
+        try {
+            if (nextRowNum != SheetParser.END && nextRowNum < index) {
+                parser.seek(index);
+            }
+            while (nextRowNum != SheetParser.END && nextRowNum < index) {
+                nextRowNum = parser.nextRow();
+            }
+        } catch (IOException e) {
+            throw new CellRangeReaderException(e.getMessage(), e);
+        }
+        return nextRowNum;
+    }
+}
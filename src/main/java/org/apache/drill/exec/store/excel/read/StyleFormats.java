@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Number formats of the cell styles of a workbook: {@code cellXfs} of an OOXML workbook
+ * or extended format records of a BIFF8 or XLSB one.
+ */
+class StyleFormats {
+
+    static final StyleFormats EMPTY = new StyleFormats(new ArrayList<>(), new HashMap<>());
+
+    private static final int GENERAL_FORMAT = 0;
+
+    private final List<Integer> styleFormats;
+    private final Map<Integer, String> customFormats;
+
+    private StyleFormats(List<Integer> styleFormats, Map<Integer, String> customFormats) {
+        this.styleFormats = styleFormats;
+        this.customFormats = customFormats;
+    }
+
+    /**
+     * @param styleFormats  format index of each cell style
+     * @param customFormats format strings defined by the workbook by format index
+     */
+    static StyleFormats of(List<Integer> styleFormats, Map<Integer, String> customFormats) {
+        return new StyleFormats(styleFormats, customFormats);
+    }
+
+    static StyleFormats read(InputStream is) throws IOException {
+        List<Integer> styleFormats = new ArrayList<>();
+        Map<Integer, String> customFormats = new HashMap<>();
+        try {
+            XMLStreamReader reader = OoxmlWorkbookIndex.createInputFactory().createXMLStreamReader(is);
+            try {
+                boolean cellXfs = false;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if ("numFmt".equals(name)) {
+                            customFormats.put(Integer.parseInt(reader.getAttributeValue(null, "numFmtId")),
+                                    reader.getAttributeValue(null, "formatCode"));
+                        } else if ("cellXfs".equals(name)) {
+                            cellXfs = true;
+                        } else if ("xf".equals(name) && cellXfs) {
+                            String format = reader.getAttributeValue(null, "numFmtId");
+                            styleFormats.add(format == null ? GENERAL_FORMAT : Integer.parseInt(format));
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT && "cellXfs".equals(reader.getLocalName())) {
+                        cellXfs = false;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw new IOException("Unable to read styles", e);
+        }
+        return new StyleFormats(styleFormats, customFormats);
+    }
+
+    /**
+     * Reads the {@code BrtFmt} and cell {@code BrtXf} records of an XLSB styles part.
+     */
+    static StyleFormats readBinary(InputStream is) throws IOException {
+        List<Integer> styleFormats = new ArrayList<>();
+        Map<Integer, String> customFormats = new HashMap<>();
+        try (XlsbRecordReader reader = new XlsbRecordReader(is)) {
+            StringBuilder text = new StringBuilder();
+            boolean cellXfs = false;
+            while (reader.next()) {
+                byte[] data = reader.getData();
+                switch (reader.getType()) {
+                    case XlsbRecordReader.FMT:
+                        text.setLength(0);
+                        XlsbRecordReader.readWideString(data, 2, text);
+                        customFormats.put(XlsbRecordReader.readUShort(data, 0), text.toString());
+                        break;
+                    case XlsbRecordReader.BEGIN_CELL_XFS:
+                        cellXfs = true;
+                        break;
+                    case XlsbRecordReader.END_CELL_XFS:
+                        cellXfs = false;
+                        break;
+                    case XlsbRecordReader.XF:
+                        if (cellXfs) {
+                            //ixfeParent, затем iFmt
+                            styleFormats.add(XlsbRecordReader.readUShort(data, 2));
+                        }
+                        break;
+                    default:
+                }
+            }
+        }
+        return new StyleFormats(styleFormats, customFormats);
+    }
+
+    int size() {
+        return styleFormats.size();
+    }
+
+    int getFormatIndex(int styleIndex) {
+        return styleIndex < styleFormats.size() ? styleFormats.get(styleIndex) : GENERAL_FORMAT;
+    }
+
+    String getFormatString(int styleIndex) {
+        int formatIndex = getFormatIndex(styleIndex);
+        String format = customFormats.get(formatIndex);
+        return format != null ? format : BuiltinFormats.getBuiltinFormat(formatIndex);
+    }
+}
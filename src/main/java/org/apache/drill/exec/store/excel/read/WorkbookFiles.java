@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.drill.exec.util.FileSystemUtil;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Expands a table location into workbook files. A location may name a single file,
+ * a directory or a glob pattern. Directories are listed recursively, only files with
+ * an Excel extension are taken from them; hidden files and Excel lock files ({@code ~$name.xlsx}) are skipped.
+ */
+public class WorkbookFiles {
+
+    private static final String[] EXTENSIONS = {".xlsx", ".xlsm", ".xlsb", ".xls"};
+    private static final String LOCK_FILE_PREFIX = "~$";
+
+    //Фильтр применяется и к каталогам, поэтому расширение проверяется отдельно
+    private static final PathFilter VISIBLE_FILTER = path -> !isHidden(path.getName());
+
+    private WorkbookFiles() {
+    }
+
+    /**
+     * Returns the files of the location sorted by path, an empty list if nothing matches.
+     */
+    public static List<FileStatus> list(FileSystem fileSystem, Path location) throws IOException {
+        FileStatus[] matches = fileSystem.globStatus(location);
+        if (matches == null) {
+            return new ArrayList<>();
+        }
+
+        //Явно указанный файл читаем при любом расширении
+        boolean glob = matches.length != 1 || !matches[0].getPath().getName().equals(location.getName());
+        List<FileStatus> files = new ArrayList<>();
+        for (FileStatus status : matches) {
+            if (status.isDirectory()) {
+                for (FileStatus file : FileSystemUtil.listFiles(fileSystem, status.getPath(), true, VISIBLE_FILTER)) {
+                    if (isWorkbookName(file.getPath().getName())) {
+                        files.add(file);
+                    }
+                }
+            } else if (!glob || isWorkbookName(status.getPath().getName()) && !isHidden(status.getPath().getName())) {
+                files.add(status);
+            }
+        }
+
+        files.sort(Comparator.comparing(FileStatus::getPath));
+        return files;
+    }
+
+    private static boolean isHidden(String name) {
+        return name.startsWith(".") || name.startsWith("_");
+    }
+
+    private static boolean isWorkbookName(String name) {
+        if (name.startsWith(LOCK_FILE_PREFIX)) {
+            return false;
+        }
+
+        String lowerCase = name.toLowerCase(Locale.ROOT);
+        for (String extension : EXTENSIONS) {
+            if (lowerCase.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.drill.exec.store.dfs.DrillFileSystem;
+import org.apache.drill.exec.store.excel.cache.SheetStatistics;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Lists the sheets of a workbook and reads their statistics at planning time. For OOXML workbooks
+ * only the package index and the heads of sheet parts are read, remote files are not copied.
+ */
+public class WorkbookSheets {
+
+    private WorkbookSheets() {
+    }
+
+    public static List<String> list(DrillFileSystem fileSystem, Path location) throws IOException {
+        try (WorkbookSource source = new WorkbookSource(fileSystem, location, null)) {
+            FileMagic fm = source.detectFormat();
+            if (fm == FileMagic.OOXML) {
+                return names(readIndex(source));
+            }
+            if (fm == FileMagic.OLE2) {
+                try (Workbook wb = openOle2(source)) {
+                    List<String> names = new ArrayList<>();
+                    for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+                        names.add(wb.getSheetName(i));
+                    }
+                    return names;
+                }
+            }
+            throw new IOException("Not an Excel workbook: " + location);
+        }
+    }
+
+    /**
+     * Reads the statistics of the sheet ({@code null} means the first one). The extent is known only
+     * for OOXML and XLSB sheets that declare it.
+     */
+    public static SheetStatistics readStatistics(DrillFileSystem fileSystem,
+                                                 FileStatus status,
+                                                 String worksheet) throws IOException {
+        try (WorkbookSource source = new WorkbookSource(fileSystem, status.getPath(), null)) {
+            CellRange dimension = null;
+            if (source.detectFormat() == FileMagic.OOXML) {
+                dimension = source.isLocal()
+                        ? SheetDimensionReader.read(source.getFile(), worksheet)
+                        : readRemoteDimension(source, status.getLen(), worksheet);
+            }
+
+            return dimension == null
+                    ? new SheetStatistics(status.getLen())
+                    : new SheetStatistics(status.getLen(),
+                            dimension.getRowStart(),
+                            dimension.getRowEnd(),
+                            dimension.getColStart(),
+                            dimension.getColEnd());
+        }
+    }
+
+    private static CellRange readRemoteDimension(WorkbookSource source, long length, String worksheet) throws IOException {
+        try (RemoteZipFile zip = new RemoteZipFile(source.openStream(), length)) {
+            OoxmlWorkbookIndex.SheetPart sheet = OoxmlWorkbookIndex.read(zip::openEntry).findSheet(worksheet);
+            if (sheet == null) {
+                return null;
+            }
+
+            try (InputStream is = zip.openEntry(sheet.getPartName())) {
+                return is == null ? null : SheetDimensionReader.read(is, sheet.isBinary());
+            }
+        }
+    }
+
+    private static OoxmlWorkbookIndex readIndex(WorkbookSource source) throws IOException {
+        if (source.isLocal()) {
+            try (ZipFile zip = new ZipFile(source.getFile())) {
+                return OoxmlWorkbookIndex.read(name -> {
+                    ZipEntry entry = zip.getEntry(name);
+                    return entry == null ? null : zip.getInputStream(entry);
+                });
+            }
+        }
+
+        try (RemoteZipFile zip = new RemoteZipFile(source.openStream(), source.getStatus().getLen())) {
+            return OoxmlWorkbookIndex.read(zip::openEntry);
+        }
+    }
+
+    private static Workbook openOle2(WorkbookSource source) throws IOException {
+        if (source.isLocal()) {
+            return WorkbookFactory.create(new POIFSFileSystem(source.getFile(), true));
+        }
+        try (InputStream is = source.openStream()) {
+            return WorkbookFactory.create(new POIFSFileSystem(is));
+        }
+    }
+
+    private static List<String> names(OoxmlWorkbookIndex index) {
+        List<String> names = new ArrayList<>();
+        for (OoxmlWorkbookIndex.SheetPart sheet : index.getSheets()) {
+            names.add(sheet.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,288 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.drill.exec.store.dfs.DrillFileSystem;
+import org.apache.drill.exec.store.excel.cache.WorkbookFileCache;
+import org.apache.drill.shaded.guava.com.google.common.collect.ImmutableSet;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.poi.poifs.filesystem.FileMagic;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipException;
+
+/**
+ * Access to a workbook file stored in a {@link DrillFileSystem}.
+ * <p>
+ * Files of a local file system are opened in place. Remote files are read as a stream
+ * and copied to a local file only when a reader requests random access through {@link #getFile()}.
+ * {@link #getSheetFile(String)} copies only the zip entries needed to read one sheet of an OOXML workbook.
+ * Local copies are kept in the {@link WorkbookFileCache} if it is enabled, otherwise in temp files.
+ */
+class WorkbookSource implements AutoCloseable {
+
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(WorkbookSource.class);
+    private static final Set<String> LOCAL_SCHEMES = ImmutableSet.of("file", "drill-local");
+    private static final byte[] EMPTY_SHEET = ("<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+            + "<sheetData/></worksheet>").getBytes(StandardCharsets.UTF_8);
+    private static final String FULL_COPY = "";
+    private static final String SHEET_PREFIX = "sheet:";
+    private static final String EVALUATION_PREFIX = "evaluation:";
+
+    private final DrillFileSystem fileSystem;
+    private final Path location;
+    private final WorkbookFileCache cache;
+    private final File localFile;
+
+    private final List<File> tempFiles = new ArrayList<>();
+    private final List<WorkbookFileCache.Lease> leases = new ArrayList<>();
+    private FileStatus status;
+    private File copy;
+
+    WorkbookSource(DrillFileSystem fileSystem, Path location, WorkbookFileCache cache) {
+        this.fileSystem = fileSystem;
+        this.location = location;
+        this.cache = cache;
+
+        Path qualified = fileSystem.makeQualified(location);
+        String scheme = qualified.toUri().getScheme();
+        this.localFile = scheme == null || LOCAL_SCHEMES.contains(scheme)
+                ? new File(qualified.toUri().getPath())
+                : null;
+    }
+
+    Path getLocation() {
+        return location;
+    }
+
+    boolean isLocal() {
+        return localFile != null;
+    }
+
+    FileMagic detectFormat() throws IOException {
+        if (localFile != null) {
+            return FileMagic.valueOf(localFile);
+        }
+
+        try (InputStream is = FileMagic.prepareToCheckMagic(openStream())) {
+            return FileMagic.valueOf(is);
+        }
+    }
+
+    FSDataInputStream openStream() throws IOException {
+        return fileSystem.open(location);
+    }
+
+    /**
+     * Returns the workbook as a local file. A remote workbook is copied once per source.
+     */
+    File getFile() throws IOException {
+        if (localFile != null) {
+            return localFile;
+        }
+
+        if (copy == null) {
+            copy = fetch(FULL_COPY, target -> {
+                try (InputStream is = openStream();
+                     FileOutputStream os = new FileOutputStream(target)) {
+                    IOUtils.copy(is, os);
+                }
+            });
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a local OOXML file that can be used to read the given worksheet ({@code null} means the first one).
+     * For a remote workbook only the parts required by a streaming reader are fetched:
+     * the sheet itself, the workbook, shared strings and styles. Other sheets are replaced with empty stubs,
+     * so the workbook structure stays intact. Falls back to {@link #getFile()} if the archive cannot be pruned.
+     */
+    File getSheetFile(String worksheet) throws IOException {
+        if (localFile != null || copy != null) {
+            return getFile();
+        }
+
+        if (cache != null) {
+            FileStatus status = getStatus();
+            WorkbookFileCache.Lease lease = cache.tryAcquire(status.getPath().toString(),
+                    status.getModificationTime(), status.getLen(), FULL_COPY);
+            if (lease != null) {
+                leases.add(lease);
+                copy = lease.getFile();
+                return copy;
+            }
+        }
+
+        String variant = SHEET_PREFIX + (worksheet == null ? "" : worksheet.toLowerCase(Locale.ROOT));
+        try {
+            return fetch(variant, target -> writeSheetSubset(worksheet, target));
+        } catch (ZipException e) {
+            logger.debug("Unable to read zip entries of {}, the whole file will be copied", location, e);
+            return getFile();
+        }
+    }
+
+    /**
+     * Returns a local OOXML file that can be loaded to evaluate the formulas of the given worksheet
+     * ({@code null} means the first one). Sheets the formulas cannot reach are replaced with empty stubs,
+     * so a formula evaluator does not have to load them. Other parts are kept as is.
+     *
+     * @see FormulaDependencies
+     */
+    File getEvaluationFile(String worksheet) throws IOException {
+        String variant = EVALUATION_PREFIX + (worksheet == null ? "" : worksheet.toLowerCase(Locale.ROOT));
+        try {
+            return fetch(variant, target -> writeEvaluationSubset(worksheet, target));
+        } catch (ZipException e) {
+            logger.debug("Unable to read zip entries of {}, the whole file will be loaded", location, e);
+            return getFile();
+        }
+    }
+
+    /**
+     * Returns a file of the {@link WorkbookFileCache} that keeps data derived from the workbook, e.g. a sheet index,
+     * writing it with the loader on the first request. Returns {@code null} if the cache is disabled.
+     *
+     * @param variant identifies the data within the workbook
+     */
+    File getIndexFile(String variant, WorkbookFileCache.Loader loader) throws IOException {
+        return cache == null ? null : fetch(variant, loader);
+    }
+
+    @Override
+    public void close() {
+        for (WorkbookFileCache.Lease lease : leases) {
+            lease.close();
+        }
+        leases.clear();
+
+        for (File file : tempFiles) {
+            delete(file);
+        }
+        tempFiles.clear();
+        copy = null;
+    }
+
+    private void writeSheetSubset(String worksheet, File target) throws IOException {
+        long length = getStatus().getLen();
+        try (RemoteZipFile zip = new RemoteZipFile(openStream(), length)) {
+            OoxmlWorkbookIndex index = OoxmlWorkbookIndex.read(zip::openEntry);
+            OoxmlWorkbookIndex.SheetPart sheet = index.findSheet(worksheet);
+            if (sheet == null) {
+                //Лист не найден - копируем все, ошибку выдаст ридер
+                zip.writeSubset(target, zip.getEntryNames(), Collections.emptyMap());
+                return;
+            }
+
+            Map<String, byte[]> stubs = new HashMap<>();
+            for (OoxmlWorkbookIndex.SheetPart part : index.getSheets()) {
+                if (part != sheet) {
+                    stubs.put(part.getPartName(), EMPTY_SHEET);
+                }
+            }
+
+            zip.writeSubset(target, index.getRequiredParts(sheet), stubs);
+            logger.debug("Fetched {} of {} bytes of {}", zip.getBytesRead(), length, location);
+        }
+    }
+
+    private void writeEvaluationSubset(String worksheet, File target) throws IOException {
+        try (RemoteZipFile zip = new RemoteZipFile(openStream(), getStatus().getLen())) {
+            OoxmlWorkbookIndex index = OoxmlWorkbookIndex.read(zip::openEntry);
+            OoxmlWorkbookIndex.SheetPart sheet = index.findSheet(worksheet);
+            //Формулы XLSB хранятся в двоичном виде, зависимости не ищем
+            Set<OoxmlWorkbookIndex.SheetPart> required = sheet == null || index.isBinary()
+                    ? null
+                    : FormulaDependencies.find(index, zip::openEntry, sheet);
+
+            Set<String> entries = new LinkedHashSet<>(zip.getEntryNames());
+            Map<String, byte[]> stubs = new HashMap<>();
+            if (required != null) {
+                for (OoxmlWorkbookIndex.SheetPart part : index.getSheets()) {
+                    if (!required.contains(part)) {
+                        stubs.put(part.getPartName(), EMPTY_SHEET);
+                        //Связи заглушки не нужны, иначе ридер загрузит рисунки и комментарии листа
+                        entries.remove(OoxmlWorkbookIndex.relationshipsPartOf(part.getPartName()));
+                    }
+                }
+            }
+
+            zip.writeSubset(target, entries, stubs);
+            logger.debug("Loading {} of {} sheets of {} to evaluate formulas",
+                    required == null ? index.getSheets().size() : required.size(), index.getSheets().size(), location);
+        }
+    }
+
+    private File fetch(String variant, WorkbookFileCache.Loader loader) throws IOException {
+        if (cache == null) {
+            File file = File.createTempFile("excel", ".tmp");
+            tempFiles.add(file);
+            loader.load(file);
+            return file;
+        }
+
+        FileStatus status = getStatus();
+        WorkbookFileCache.Lease lease = cache.acquire(status.getPath().toString(),
+                status.getModificationTime(), status.getLen(), variant, loader);
+        leases.add(lease);
+        return lease.getFile();
+    }
+
+    /**
+     * Creates a scratch file in the {@link WorkbookFileCache} directory,
+     * or in the temp directory like other local copies if the cache is disabled.
+     */
+    File createTempFile(String prefix) throws IOException {
+        return cache == null ? File.createTempFile(prefix, ".tmp") : cache.createTempFile(prefix);
+    }
+
+    FileStatus getStatus() throws IOException {
+        if (status == null) {
+            status = fileSystem.getFileStatus(location);
+        }
+        return status;
+    }
+
+    private static void delete(File file) {
+        try {
+            if (file.exists()) {
+                // Пытаемся удалить файл
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        } catch (Exception e) {
+            logger.warn("Error deleting a temp file: " + file, e);
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.poi.hssf.record.ArrayRecord;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.DimensionsRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactoryInputStream;
+import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.SharedFormulaRecord;
+import org.apache.poi.hssf.record.SharedValueRecordBase;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.ss.formula.ptg.ExpPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaError;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pull parser of a BIFF8 sheet substream that reads cell records one by one
+ * with a {@link RecordFactoryInputStream}, without building an HSSF sheet.
+ * Cell records of a row are adjacent in the stream, so a row is read up to the first cell of the next one.
+ * Formula cells are read as formula text or, if requested, as the results cached in the formula records.
+ */
+class XlsSheetParser implements SheetParser {
+
+    //Коды типа кэшированного результата в FormulaRecord, совпадают с кодами CellType
+    private static final int CACHED_NUMBER = 0;
+    private static final int CACHED_BOOLEAN = 4;
+    private static final int CACHED_ERROR = 5;
+
+    private final InputStream is;
+    private final RecordFactoryInputStream records;
+    private final XlsWorkbook workbook;
+    private final boolean cachedFormulas;
+    private final CellFormatCache formats = new CellFormatCache();
+    //Общие формулы и формулы массивов текущего блока строк, на них ссылаются ExpPtg
+    private final Map<Integer, SharedValueRecordBase> sharedValues = new HashMap<>();
+    //Строки из записей ROW текущего блока, они идут перед ячейками блока и могут быть без ячеек
+    private final Deque<Integer> rows = new ArrayDeque<>();
+
+    private CellRange dimension;
+    //Запись, прочитанная на шаг вперед
+    private Record pending;
+    private int depth;
+    private int rowNum = -1;
+    private boolean rowPending;
+    private boolean finished;
+
+    XlsSheetParser(InputStream is,
+                   RecordFactoryInputStream records,
+                   XlsWorkbook workbook,
+                   boolean cachedFormulas) throws IOException {
+        this.is = is;
+        this.records = records;
+        this.workbook = workbook;
+        this.cachedFormulas = cachedFormulas;
+        seekDimension();
+    }
+
+    /**
+     * Extent declared by the {@code DIMENSIONS} record.
+     */
+    @Override
+    public StyleFormats getStyles() {
+        return workbook.getStyles();
+    }
+
+    @Override
+    public boolean isDate1904() {
+        return workbook.isDate1904();
+    }
+
+    @Override
+    public CellRange getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public int nextRow() throws IOException {
+        try {
+            if (rowPending) {
+                while (peekCell() != null && rowOf(pending) == rowNum) {
+                    pending = null;
+                }
+                rowPending = false;
+            }
+
+            Record cell = peekCell();
+            int next = cell == null ? END : rowOf(cell);
+            while (!rows.isEmpty() && rows.peekFirst() <= rowNum) {
+                rows.pollFirst();
+            }
+            if (!rows.isEmpty() && (next == END || rows.peekFirst() < next)) {
+                rowNum = rows.pollFirst();
+            } else if (next != END) {
+                rowNum = next;
+            } else {
+                return END;
+            }
+            rowPending = true;
+            return rowNum;
+        } catch (RuntimeException e) {
+            throw new IOException("Unable to read sheet row", e);
+        }
+    }
+
+    @Override
+    public void readCells(CellHandler handler) throws IOException {
+        if (!rowPending) {
+            throw new IllegalStateException("No row to read");
+        }
+        rowPending = false;
+
+        try {
+            while (peekCell() != null && rowOf(pending) == rowNum) {
+                Record cell = pending;
+                pending = null;
+                readCell(handler, cell);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Unable to read sheet row " + (rowNum + 1), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        is.close();
+    }
+
+    /**
+     * Reads the dimension, it precedes the rows of the sheet substream.
+     */
+    private void seekDimension() throws IOException {
+        try {
+            Record record;
+            while ((record = nextRecord()) != null) {
+                if (record instanceof DimensionsRecord && depth == 1) {
+                    DimensionsRecord dimensions = (DimensionsRecord) record;
+                    //Последние строка и столбец в записи - следующие за последними занятыми
+                    if (dimensions.getLastRow() > dimensions.getFirstRow()
+                            && dimensions.getLastCol() > dimensions.getFirstCol()) {
+                        dimension = new CellRange(dimensions.getFirstRow(),
+                                dimensions.getLastRow() - 1,
+                                dimensions.getFirstCol(),
+                                dimensions.getLastCol() - 1);
+                    }
+                    return;
+                }
+                if (record instanceof RowRecord || isCell(record)) {
+                    pending = record;
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Unable to read sheet", e);
+        }
+    }
+
+    /**
+     * Reads up to the next cell record and leaves it {@link #pending}.
+     *
+     * @return the cell record or {@code null} at the end of the sheet
+     */
+    private Record peekCell() {
+        if (pending != null && isCell(pending)) {
+            return pending;
+        }
+
+        Record record;
+        while ((record = nextRecord()) != null) {
+            if (isCell(record)) {
+                pending = record;
+                return record;
+            }
+            if (record instanceof RowRecord && depth == 1) {
+                rows.addLast(((RowRecord) record).getRowNumber());
+            } else {
+                collectSharedValue(record);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the next record of the sheet substream or {@code null} after its {@code EOF}.
+     * Records of embedded substreams (charts) are passed through, they are never cells.
+     */
+    private Record nextRecord() {
+        if (pending != null) {
+            Record record = pending;
+            pending = null;
+            return record;
+        }
+        if (finished) {
+            return null;
+        }
+
+        Record record = records.nextRecord();
+        if (record instanceof BOFRecord) {
+            depth++;
+        } else if (record instanceof EOFRecord && --depth == 0 || record == null) {
+            finished = true;
+            return null;
+        }
+        return record;
+    }
+
+    private boolean isCell(Record record) {
+        return depth == 1 && (record instanceof CellValueRecordInterface || record instanceof MulBlankRecord);
+    }
+
+    private static int rowOf(Record record) {
+        return record instanceof MulBlankRecord
+                ? ((MulBlankRecord) record).getRow()
+                : ((CellValueRecordInterface) record).getRow();
+    }
+
+    private void collectSharedValue(Record record) {
+        if (record instanceof SharedFormulaRecord || record instanceof ArrayRecord) {
+            SharedValueRecordBase shared = (SharedValueRecordBase) record;
+            sharedValues.put(cellKey(shared.getFirstRow(), shared.getFirstColumn()), shared);
+        }
+    }
+
+    private void readCell(CellHandler handler, Record record) {
+        if (record instanceof MulBlankRecord) {
+            MulBlankRecord blanks = (MulBlankRecord) record;
+            for (int col = blanks.getFirstColumn(); col <= blanks.getLastColumn(); col++) {
+                if (handler.isColumnRequired(col) && !handler.isTyped(col)) {
+                    handler.cell(col, "");
+                }
+            }
+            return;
+        }
+
+        CellValueRecordInterface cell = (CellValueRecordInterface) record;
+        int col = cell.getColumn();
+        if (!handler.isColumnRequired(col)) {
+            return;
+        }
+
+        int styleIndex = cell.getXFIndex() & 0xFFFF;
+        if (record instanceof NumberRecord) {
+            numericCell(handler, col, styleIndex, ((NumberRecord) record).getValue());
+        } else if (record instanceof LabelSSTRecord) {
+            handler.cell(col, workbook.getString(((LabelSSTRecord) record).getSSTIndex()));
+        } else if (record instanceof LabelRecord) {
+            handler.cell(col, ((LabelRecord) record).getValue());
+        } else if (record instanceof BoolErrRecord) {
+            BoolErrRecord boolErr = (BoolErrRecord) record;
+            if (boolErr.isBoolean()) {
+                booleanCell(handler, col, boolErr.getBooleanValue());
+            } else {
+                handler.cell(col, FormulaError.forInt(boolErr.getErrorValue()).getString());
+            }
+        } else if (record instanceof FormulaRecord) {
+            formulaCell(handler, col, styleIndex, (FormulaRecord) record);
+        } else if (record instanceof BlankRecord && !handler.isTyped(col)) {
+            handler.cell(col, "");
+        }
+    }
+
+    private void formulaCell(CellHandler handler, int col, int styleIndex, FormulaRecord formula) {
+        //За формулой могут идти общая формула блока и строковый результат
+        String cachedString = null;
+        Record record;
+        while ((record = nextRecord()) != null) {
+            if (record instanceof StringRecord) {
+                cachedString = ((StringRecord) record).getString();
+            } else if (record instanceof SharedFormulaRecord || record instanceof ArrayRecord) {
+                collectSharedValue(record);
+            } else {
+                pending = record;
+                break;
+            }
+        }
+
+        if (!cachedFormulas) {
+            //Без вычислителя DataFormatter возвращает текст формулы
+            handler.cell(col, workbook.toFormulaString(getTokens(formula)));
+            return;
+        }
+
+        switch (formula.getCachedResultType()) {
+            case CACHED_NUMBER:
+                numericCell(handler, col, styleIndex, formula.getValue());
+                break;
+            case CACHED_BOOLEAN:
+                booleanCell(handler, col, formula.getCachedBooleanValue());
+                break;
+            case CACHED_ERROR:
+                handler.cell(col, FormulaError.forInt(formula.getCachedErrorValue()).getString());
+                break;
+            default:
+                handler.cell(col, cachedString == null ? "" : cachedString);
+        }
+    }
+
+    /**
+     * Tokens of the formula, a reference to a shared or array formula is replaced with the tokens it refers to.
+     */
+    private Ptg[] getTokens(FormulaRecord formula) {
+        Ptg[] tokens = formula.getParsedExpression();
+        if (tokens.length != 1 || !(tokens[0] instanceof ExpPtg)) {
+            return tokens;
+        }
+
+        ExpPtg exp = (ExpPtg) tokens[0];
+        SharedValueRecordBase shared = sharedValues.get(cellKey(exp.getRow(), exp.getColumn()));
+        if (shared instanceof SharedFormulaRecord) {
+            return ((SharedFormulaRecord) shared).getFormulaTokens(formula);
+        }
+        if (shared instanceof ArrayRecord) {
+            return ((ArrayRecord) shared).getFormulaTokens();
+        }
+        throw new IllegalStateException("Shared formula not found for row " + (formula.getRow() + 1)
+                + ", column " + (formula.getColumn() + 1));
+    }
+
+    //В BIFF8 не больше 65536 строк и 256 столбцов
+    private static int cellKey(int row, int col) {
+        return row << 8 | col;
+    }
+
+    private void numericCell(CellHandler handler, int col, int styleIndex, double value) {
+        formats.compile(styleIndex, workbook.getStyles());
+        if (handler.isFormatDeferred(col)) {
+            handler.unformattedCell(col, value, styleIndex);
+        } else if (!handler.isTyped(col)) {
+            handler.cell(col, formats.format(value, styleIndex, workbook.isDate1904()));
+        } else if (formats.isDateStyle(styleIndex) && DateUtil.isValidExcelDate(value)) {
+            handler.dateCell(col, ExcelDates.toTimestamp(value, workbook.isDate1904()));
+        } else {
+            handler.numericCell(col, value);
+        }
+    }
+
+    private static void booleanCell(CellHandler handler, int col, boolean value) {
+        if (handler.isTyped(col)) {
+            handler.booleanCell(col, value);
+        } else {
+            handler.cell(col, value ? "TRUE" : "FALSE");
+        }
+    }
+}
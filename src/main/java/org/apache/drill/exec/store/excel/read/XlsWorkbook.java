@@ -0,0 +1,290 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.poi.hssf.model.InternalWorkbook;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.ExtendedFormatRecord;
+import org.apache.poi.hssf.record.FilePassRecord;
+import org.apache.poi.hssf.record.FormatRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactoryInputStream;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.DocumentInputStream;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.formula.EvaluationWorkbook;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.FormulaRenderingWorkbook;
+import org.apache.poi.ss.formula.ptg.NamePtg;
+import org.apache.poi.ss.formula.ptg.NameXPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BIFF8 workbook read with {@link XlsSheetParser}. Only the workbook globals substream
+ * (shared strings, formats, sheet list) is kept in memory, sheet substreams are streamed record by record
+ * from the OLE2 file.
+ */
+class XlsWorkbook implements AutoCloseable {
+
+    private final POIFSFileSystem fs;
+    private final String streamName;
+    private final List<Record> globals;
+    private final List<BoundSheetRecord> sheets;
+    private final SSTRecord sharedStrings;
+    private final StyleFormats styles;
+    private final boolean date1904;
+    private final boolean encrypted;
+    private FormulaRenderingWorkbook formulaBook;
+
+    private XlsWorkbook(POIFSFileSystem fs, String streamName, List<Record> globals) {
+        this.fs = fs;
+        this.streamName = streamName;
+        this.globals = globals;
+
+        List<BoundSheetRecord> sheets = new ArrayList<>();
+        List<Integer> styleFormats = new ArrayList<>();
+        Map<Integer, String> customFormats = new HashMap<>();
+        SSTRecord sharedStrings = null;
+        boolean date1904 = false;
+        boolean encrypted = false;
+        for (Record record : globals) {
+            if (record instanceof BoundSheetRecord) {
+                sheets.add((BoundSheetRecord) record);
+            } else if (record instanceof SSTRecord) {
+                sharedStrings = (SSTRecord) record;
+            } else if (record instanceof ExtendedFormatRecord) {
+                styleFormats.add(((ExtendedFormatRecord) record).getFormatIndex() & 0xFFFF);
+            } else if (record instanceof FormatRecord) {
+                FormatRecord format = (FormatRecord) record;
+                customFormats.put(format.getIndexCode(), format.getFormatString());
+            } else if (record instanceof DateWindow1904Record) {
+                date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+            } else if (record instanceof FilePassRecord) {
+                encrypted = true;
+            }
+        }
+
+        this.sheets = sheets;
+        this.sharedStrings = sharedStrings;
+        this.styles = StyleFormats.of(styleFormats, customFormats);
+        this.date1904 = date1904;
+        this.encrypted = encrypted;
+    }
+
+    static XlsWorkbook open(File file) throws IOException {
+        POIFSFileSystem fs = new POIFSFileSystem(file, true);
+        try {
+            String streamName = HSSFWorkbook.getWorkbookDirEntryName(fs.getRoot());
+            List<Record> globals = new ArrayList<>();
+            try (DocumentInputStream is = fs.createDocumentInputStream(streamName)) {
+                RecordFactoryInputStream records = new RecordFactoryInputStream(is, false);
+                for (Record record = records.nextRecord(); record != null; record = records.nextRecord()) {
+                    globals.add(record);
+                    if (record instanceof EOFRecord) {
+                        break;
+                    }
+                }
+            }
+            return new XlsWorkbook(fs, streamName, globals);
+        } catch (IOException | RuntimeException e) {
+            fs.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Finds a sheet the same way {@code Workbook.getSheet} does; {@code null} name means the first sheet.
+     *
+     * @throws CellRangeReaderException if there is no such sheet
+     */
+    BoundSheetRecord getSheet(String name) {
+        for (BoundSheetRecord sheet : sheets) {
+            if (name == null || name.equalsIgnoreCase(sheet.getSheetname())) {
+                return sheet;
+            }
+        }
+        throw new CellRangeReaderException(String.format("Sheet '%s' not found", name));
+    }
+
+    XlsSheetParser openSheet(BoundSheetRecord sheet) throws IOException {
+        return openSheet(sheet, false);
+    }
+
+    /**
+     * @param cachedFormulas whether formula cells are read as their stored results instead of formula text
+     */
+    XlsSheetParser openSheet(BoundSheetRecord sheet, boolean cachedFormulas) throws IOException {
+        DocumentInputStream is = fs.createDocumentInputStream(streamName);
+        try {
+            RecordFactoryInputStream records;
+            if (!encrypted) {
+                //Смещение BOF листа известно, предыдущие листы не читаем
+                skipFully(is, sheet.getPositionOfBof());
+                records = new RecordFactoryInputStream(is, false);
+            } else {
+                //Расшифровка зависит от позиции в потоке, поэтому читаем с начала
+                records = new RecordFactoryInputStream(is, false);
+                skipSubstreams(records, substreamsBefore(sheet));
+            }
+            return new XlsSheetParser(is, records, this, cachedFormulas);
+        } catch (IOException | RuntimeException e) {
+            is.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Detects the extent of the used cells with a separate pass over the sheet. Cell values are not read.
+     */
+    RangeDetector getRangeDetector(BoundSheetRecord sheet) {
+        return () -> {
+            try (XlsSheetParser parser = openSheet(sheet)) {
+                return SheetParser.detectRange(parser);
+            } catch (IOException e) {
+                throw new CellRangeReaderException("Unable to detect the range of " + sheet.getSheetname(), e);
+            }
+        };
+    }
+
+    String getString(int index) {
+        if (sharedStrings == null) {
+            throw new IllegalStateException("Workbook has no shared strings");
+        }
+        return sharedStrings.getString(index).getString();
+    }
+
+    StyleFormats getStyles() {
+        return styles;
+    }
+
+    boolean isDate1904() {
+        return date1904;
+    }
+
+    /**
+     * Renders formula tokens as text. Sheet, name and external references are resolved
+     * by the workbook model built from the globals substream, sheets are not loaded.
+     */
+    String toFormulaString(Ptg[] tokens) {
+        if (formulaBook == null) {
+            formulaBook = new GlobalsRenderingWorkbook(InternalWorkbook.createWorkbook(globals));
+        }
+        return FormulaRenderer.toFormulaString(formulaBook, tokens);
+    }
+
+    @Override
+    public void close() throws IOException {
+        fs.close();
+    }
+
+    /**
+     * Number of substreams preceding the sheet substream, including the globals.
+     */
+    private int substreamsBefore(BoundSheetRecord sheet) {
+        BoundSheetRecord[] ordered = BoundSheetRecord.orderByBofPosition(sheets);
+        return Arrays.asList(ordered).indexOf(sheet) + 1;
+    }
+
+    private static void skipSubstreams(RecordFactoryInputStream records, int count) throws IOException {
+        int depth = 0;
+        int skipped = 0;
+        while (skipped < count) {
+            Record record = records.nextRecord();
+            if (record == null) {
+                throw new IOException("Unexpected end of workbook stream");
+            }
+            if (record instanceof BOFRecord) {
+                depth++;
+            } else if (record instanceof EOFRecord && --depth == 0) {
+                skipped++;
+            }
+        }
+    }
+
+    private static void skipFully(DocumentInputStream is, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = is.skip(remaining);
+            if (skipped <= 0) {
+                throw new IOException("Unexpected end of workbook stream");
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Resolves references the same way {@code HSSFEvaluationWorkbook} does, without sheet objects.
+     */
+    private static class GlobalsRenderingWorkbook implements FormulaRenderingWorkbook {
+        private final InternalWorkbook workbook;
+
+        GlobalsRenderingWorkbook(InternalWorkbook workbook) {
+            this.workbook = workbook;
+        }
+
+        @Override
+        public EvaluationWorkbook.ExternalSheet getExternalSheet(int externSheetIndex) {
+            EvaluationWorkbook.ExternalSheet sheet = workbook.getExternalSheet(externSheetIndex);
+            if (sheet != null) {
+                return sheet;
+            }
+
+            //Ссылка на листы этой книги
+            int first = workbook.getFirstSheetIndexFromExternSheetIndex(externSheetIndex);
+            if (first < 0) {
+                return null;
+            }
+            int last = workbook.getLastSheetIndexFromExternSheetIndex(externSheetIndex);
+            return last == first
+                    ? new EvaluationWorkbook.ExternalSheet(null, workbook.getSheetName(first))
+                    : new EvaluationWorkbook.ExternalSheetRange(null, workbook.getSheetName(first), workbook.getSheetName(last));
+        }
+
+        @Override
+        public String getSheetFirstNameByExternSheet(int externSheetIndex) {
+            return workbook.findSheetFirstNameFromExternSheet(externSheetIndex);
+        }
+
+        @Override
+        public String getSheetLastNameByExternSheet(int externSheetIndex) {
+            return workbook.findSheetLastNameFromExternSheet(externSheetIndex);
+        }
+
+        @Override
+        public String resolveNameXText(NameXPtg nameXPtg) {
+            return workbook.resolveNameXText(nameXPtg.getSheetRefIndex(), nameXPtg.getNameIndex());
+        }
+
+        @Override
+        public String getNameText(NamePtg namePtg) {
+            return workbook.getNameRecord(namePtg.getIndex()).getNameText();
+        }
+    }
+}
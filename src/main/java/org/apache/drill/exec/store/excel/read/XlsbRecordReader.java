@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Pull reader of BIFF12 records, the binary format of XLSB package parts.
+ * A record is a variable-length type, a variable-length size and the data. The data of the current record
+ * is read into a buffer reused for all records.
+ */
+class XlsbRecordReader implements AutoCloseable {
+
+    //Типы записей, MS-XLSB 2.3.2
+    static final int ROW_HEADER = 0;
+    static final int CELL_BLANK = 1;
+    static final int CELL_RK = 2;
+    static final int CELL_ERROR = 3;
+    static final int CELL_BOOL = 4;
+    static final int CELL_REAL = 5;
+    static final int CELL_ST = 6;
+    static final int CELL_ISST = 7;
+    static final int FMLA_STRING = 8;
+    static final int FMLA_NUM = 9;
+    static final int FMLA_BOOL = 10;
+    static final int FMLA_ERROR = 11;
+    static final int SST_ITEM = 19;
+    static final int FMT = 44;
+    static final int XF = 47;
+    static final int CELL_RSTRING = 62;
+    static final int BEGIN_SHEET_DATA = 145;
+    static final int END_SHEET_DATA = 146;
+    static final int WB_PROP = 153;
+    static final int BUNDLE_SH = 156;
+    static final int BEGIN_SST = 159;
+    static final int WS_DIM = 148;
+    static final int BEGIN_CELL_XFS = 617;
+    static final int END_CELL_XFS = 618;
+
+    private static final int MAX_RECORD_LENGTH = 1 << 28;
+
+    private final InputStream is;
+    private byte[] data = new byte[256];
+    private int type;
+    private int length;
+
+    XlsbRecordReader(InputStream is) {
+        this.is = new BufferedInputStream(is, 1 << 16);
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return {@code false} at the end of the part
+     */
+    boolean next() throws IOException {
+        int b = is.read();
+        if (b < 0) {
+            return false;
+        }
+        type = b & 0x7F;
+        if ((b & 0x80) != 0) {
+            type |= (readByte() & 0x7F) << 7;
+        }
+
+        length = 0;
+        for (int i = 0; i < 4; i++) {
+            b = readByte();
+            length |= (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        if (length > MAX_RECORD_LENGTH) {
+            throw new IOException("Record " + type + " is too long: " + length);
+        }
+
+        if (data.length < length) {
+            data = new byte[Math.max(length, data.length * 2)];
+        }
+        int offset = 0;
+        while (offset < length) {
+            int read = is.read(data, offset, length - offset);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of record " + type);
+            }
+            offset += read;
+        }
+        return true;
+    }
+
+    int getType() {
+        return type;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Data of the current record, valid up to {@link #getLength()} until the next record is read.
+     */
+    byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public void close() throws IOException {
+        is.close();
+    }
+
+    private int readByte() throws IOException {
+        int b = is.read();
+        if (b < 0) {
+            throw new EOFException("Unexpected end of record header");
+        }
+        return b;
+    }
+
+    static int readInt(byte[] data, int offset) {
+        return data[offset] & 0xFF
+                | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF) << 16
+                | (data[offset + 3] & 0xFF) << 24;
+    }
+
+    static int readUShort(byte[] data, int offset) {
+        return data[offset] & 0xFF | (data[offset + 1] & 0xFF) << 8;
+    }
+
+    static int read24BitInt(byte[] data, int offset) {
+        return data[offset] & 0xFF | (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF) << 16;
+    }
+
+    static double readDouble(byte[] data, int offset) {
+        long bits = readInt(data, offset) & 0xFFFFFFFFL | (long) readInt(data, offset + 4) << 32;
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * Decodes an {@code RkNumber}: the upper 30 bits of a double or a 30-bit integer, optionally multiplied by 100.
+     */
+    static double readRkNumber(byte[] data, int offset) {
+        int rk = readInt(data, offset);
+        double value = (rk & 0x02) != 0
+                ? rk >> 2
+                : Double.longBitsToDouble((long) (rk & 0xFFFFFFFC) << 32);
+        return (rk & 0x01) != 0 ? value / 100 : value;
+    }
+
+    /**
+     * Appends an {@code XLWideString} (a character count and UTF-16LE characters) to the buffer.
+     *
+     * @return offset of the data after the string
+     */
+    static int readWideString(byte[] data, int offset, StringBuilder buffer) throws IOException {
+        int count = readInt(data, offset);
+        int start = offset + 4;
+        //Длина -1 у XLNullableWideString означает null
+        if (count == -1) {
+            return start;
+        }
+        if (count < 0 || start + 2L * count > data.length) {
+            throw new IOException("Invalid string length: " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            int pos = start + 2 * i;
+            buffer.append((char) (data[pos] & 0xFF | (data[pos + 1] & 0xFF) << 8));
+        }
+        return start + 2 * count;
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaError;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Pull parser of an XLSB worksheet part that reads row and cell records directly.
+ * A row header record precedes the cell records of the row.
+ * Formulas are stored as binary tokens that cannot be rendered as text, so formula cells are always read
+ * as their cached results.
+ */
+class XlsbSheetParser implements SheetParser {
+
+    private static final int NONE = -2;
+    //Ячейка начинается с номера столбца и 24-битного индекса стиля с флагами
+    private static final int CELL_HEADER_LENGTH = 8;
+
+    private final XlsbRecordReader reader;
+    private final SharedStrings.Reader sharedStrings;
+    private final StyleFormats styles;
+    private final boolean date1904;
+    private final CellFormatCache formats = new CellFormatCache();
+    private final StringBuilder text = new StringBuilder();
+
+    private CellRange dimension;
+    //0-based номер текущей строки
+    private int rowNum = -1;
+    //Заголовок следующей строки, прочитанный при чтении ячеек текущей
+    private int nextRowNum = NONE;
+    private boolean rowPending;
+    private boolean finished;
+
+    XlsbSheetParser(InputStream is,
+                    SharedStrings sharedStrings,
+                    StyleFormats styles,
+                    boolean date1904) throws IOException {
+        this.reader = new XlsbRecordReader(is);
+        this.sharedStrings = sharedStrings.newReader();
+        this.styles = styles;
+        this.date1904 = date1904;
+        try {
+            seekSheetData();
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Extent declared by the {@code BrtWsDim} record.
+     */
+    @Override
+    public StyleFormats getStyles() {
+        return styles;
+    }
+
+    @Override
+    public boolean isDate1904() {
+        return date1904;
+    }
+
+    @Override
+    public CellRange getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public int nextRow() throws IOException {
+        if (nextRowNum != NONE) {
+            rowNum = nextRowNum;
+            nextRowNum = NONE;
+            rowPending = true;
+            return rowNum;
+        }
+
+        while (!finished && reader.next()) {
+            int type = reader.getType();
+            if (type == XlsbRecordReader.ROW_HEADER) {
+                rowNum = XlsbRecordReader.readInt(reader.getData(), 0);
+                rowPending = true;
+                return rowNum;
+            } else if (type == XlsbRecordReader.END_SHEET_DATA) {
+                break;
+            }
+        }
+
+        finished = true;
+        rowPending = false;
+        return END;
+    }
+
+    @Override
+    public void readCells(CellHandler handler) throws IOException {
+        if (!rowPending) {
+            throw new IllegalStateException("No row to read");
+        }
+        rowPending = false;
+
+        try {
+            while (reader.next()) {
+                int type = reader.getType();
+                if (type == XlsbRecordReader.ROW_HEADER) {
+                    nextRowNum = XlsbRecordReader.readInt(reader.getData(), 0);
+                    return;
+                } else if (type == XlsbRecordReader.END_SHEET_DATA) {
+                    finished = true;
+                    return;
+                } else if (type <= XlsbRecordReader.FMLA_ERROR || type == XlsbRecordReader.CELL_RSTRING) {
+                    int col = XlsbRecordReader.readInt(reader.getData(), 0);
+                    if (handler.isColumnRequired(col)) {
+                        readCell(handler, type, col);
+                    }
+                }
+            }
+            finished = true;
+        } catch (RuntimeException e) {
+            throw new IOException("Unable to read sheet row " + (rowNum + 1), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void seekSheetData() throws IOException {
+        while (reader.next()) {
+            if (reader.getType() == XlsbRecordReader.WS_DIM) {
+                byte[] data = reader.getData();
+                int firstRow = XlsbRecordReader.readInt(data, 0);
+                int lastRow = XlsbRecordReader.readInt(data, 4);
+                int firstCol = XlsbRecordReader.readInt(data, 8);
+                int lastCol = XlsbRecordReader.readInt(data, 12);
+                //Как и ссылка из одной ячейки в OOXML, размер в одну ячейку не достоверен
+                if (lastRow >= firstRow && lastCol >= firstCol && (lastRow > firstRow || lastCol > firstCol)) {
+                    dimension = new CellRange(firstRow, lastRow, firstCol, lastCol);
+                }
+            } else if (reader.getType() == XlsbRecordReader.BEGIN_SHEET_DATA) {
+                return;
+            }
+        }
+        finished = true;
+    }
+
+    /**
+     * Reads the value of the current cell record, the value follows the cell header.
+     */
+    private void readCell(CellHandler handler, int type, int col) throws IOException {
+        byte[] data = reader.getData();
+        int styleIndex = XlsbRecordReader.read24BitInt(data, 4);
+        boolean typed = handler.isTyped(col);
+        switch (type) {
+            case XlsbRecordReader.CELL_BLANK:
+                if (!typed) {
+                    handler.cell(col, "");
+                }
+                break;
+            case XlsbRecordReader.CELL_RK:
+                numericCell(handler, col, styleIndex, XlsbRecordReader.readRkNumber(data, CELL_HEADER_LENGTH));
+                break;
+            case XlsbRecordReader.CELL_REAL:
+            case XlsbRecordReader.FMLA_NUM:
+                numericCell(handler, col, styleIndex, XlsbRecordReader.readDouble(data, CELL_HEADER_LENGTH));
+                break;
+            case XlsbRecordReader.CELL_ERROR:
+            case XlsbRecordReader.FMLA_ERROR:
+                handler.cell(col, FormulaError.forInt(data[CELL_HEADER_LENGTH]).getString());
+                break;
+            case XlsbRecordReader.CELL_BOOL:
+            case XlsbRecordReader.FMLA_BOOL:
+                boolean value = data[CELL_HEADER_LENGTH] != 0;
+                if (typed) {
+                    handler.booleanCell(col, value);
+                } else {
+                    handler.cell(col, value ? "TRUE" : "FALSE");
+                }
+                break;
+            case XlsbRecordReader.CELL_ISST:
+                sharedStrings.cell(handler, col, XlsbRecordReader.readInt(data, CELL_HEADER_LENGTH));
+                break;
+            case XlsbRecordReader.CELL_ST:
+            case XlsbRecordReader.FMLA_STRING:
+                text.setLength(0);
+                XlsbRecordReader.readWideString(data, CELL_HEADER_LENGTH, text);
+                handler.cell(col, text);
+                break;
+            case XlsbRecordReader.CELL_RSTRING:
+                //Байт флагов RichStr перед текстом
+                text.setLength(0);
+                XlsbRecordReader.readWideString(data, CELL_HEADER_LENGTH + 1, text);
+                handler.cell(col, text);
+                break;
+            default:
+        }
+    }
+
+    private void numericCell(CellHandler handler, int col, int styleIndex, double value) {
+        formats.compile(styleIndex, styles);
+        if (handler.isFormatDeferred(col)) {
+            handler.unformattedCell(col, value, styleIndex);
+        } else if (!handler.isTyped(col)) {
+            handler.cell(col, formats.format(value, styleIndex, date1904));
+        } else if (formats.isDateStyle(styleIndex) && DateUtil.isValidExcelDate(value)) {
+            handler.dateCell(col, ExcelDates.toTimestamp(value, date1904));
+        } else {
+            handler.numericCell(col, value);
+        }
+    }
+}
@@ -0,0 +1,445 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Pull parser of an OOXML worksheet part that reads {@code <row>} and {@code <c>} elements directly.
+ * Formula cells are read as formula text or, if requested, as the results stored in {@code <v>}.
+ * With a {@link RowSeeker} the parser can skip to a distant row without parsing the rows before it.
+ */
+class XlsxSheetParser implements SheetParser {
+
+    //Ближе проще дочитать строки, чем переоткрывать поток
+    static final int MIN_SEEK_ROWS = 50_000;
+
+    private final RowSeeker seeker;
+    private InputStream is;
+    private XMLStreamReader reader;
+    private final SharedStrings.Reader sharedStrings;
+    private final StyleFormats styles;
+    private final boolean date1904;
+    private final boolean cachedFormulas;
+    private final CellFormatCache formats = new CellFormatCache();
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder value = new StringBuilder();
+    private final StringBuilder formula = new StringBuilder();
+
+    private CellRange dimension;
+    //0-based номер текущей строки
+    private int rowNum = -1;
+    private boolean rowPending;
+    private boolean finished;
+
+    XlsxSheetParser(InputStream is,
+                    SharedStrings sharedStrings,
+                    StyleFormats styles,
+                    boolean date1904,
+                    boolean cachedFormulas) throws IOException {
+        this(is, sharedStrings, styles, date1904, cachedFormulas, null);
+    }
+
+    /**
+     * @param seeker opens the sheet part at indexed rows, {@code null} if rows can only be read in order
+     */
+    XlsxSheetParser(InputStream is,
+                    SharedStrings sharedStrings,
+                    StyleFormats styles,
+                    boolean date1904,
+                    boolean cachedFormulas,
+                    RowSeeker seeker) throws IOException {
+        this.is = is;
+        this.seeker = seeker;
+        this.sharedStrings = sharedStrings.newReader();
+        this.styles = styles;
+        this.date1904 = date1904;
+        this.cachedFormulas = cachedFormulas;
+        try {
+            this.reader = OoxmlWorkbookIndex.createInputFactory().createXMLStreamReader(is);
+            seekSheetData();
+        } catch (XMLStreamException e) {
+            is.close();
+            throw new IOException("Unable to read sheet", e);
+        }
+    }
+
+    /**
+     * Extent declared by the {@code <dimension>} element.
+     */
+    @Override
+    public StyleFormats getStyles() {
+        return styles;
+    }
+
+    @Override
+    public boolean isDate1904() {
+        return date1904;
+    }
+
+    @Override
+    public CellRange getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public int nextRow() throws IOException {
+        if (finished) {
+            return END;
+        }
+
+        try {
+            if (rowPending) {
+                skipElement();
+                rowPending = false;
+            }
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT && "row".equals(reader.getLocalName())) {
+                    String r = reader.getAttributeValue(null, "r");
+                    //Атрибут r необязателен, без него строки идут подряд
+                    rowNum = r == null ? rowNum + 1 : Integer.parseInt(r) - 1;
+                    rowPending = true;
+                    return rowNum;
+                } else if (event == XMLStreamConstants.END_ELEMENT && "sheetData".equals(reader.getLocalName())) {
+                    break;
+                }
+            }
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw new IOException("Unable to read sheet row", e);
+        }
+
+        finished = true;
+        return END;
+    }
+
+    @Override
+    public void readCells(CellHandler handler) throws IOException {
+        if (!rowPending) {
+            throw new IllegalStateException("No row to read");
+        }
+        rowPending = false;
+
+        try {
+            int col = -1;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT && "row".equals(reader.getLocalName())) {
+                    return;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT || !"c".equals(reader.getLocalName())) {
+                    continue;
+                }
+
+                String ref = reader.getAttributeValue(null, "r");
+                col = ref == null ? col + 1 : columnIndex(ref);
+                if (handler.isColumnRequired(col)) {
+                    readCell(handler, col);
+                } else {
+                    skipElement();
+                }
+            }
+        } catch (XMLStreamException | RuntimeException e) {
+            throw new IOException("Unable to read sheet row " + (rowNum + 1), e);
+        }
+    }
+
+    /**
+     * Reopens the sheet at the last indexed row not after the given one if it is far enough ahead.
+     */
+    @Override
+    public void seek(int row) throws IOException {
+        if (seeker == null || finished || row - rowNum < MIN_SEEK_ROWS) {
+            return;
+        }
+
+        int indexed = seeker.floorRow(row);
+        if (indexed < 0 || indexed - rowNum < MIN_SEEK_ROWS) {
+            return;
+        }
+
+        close();
+        is = seeker.open(indexed);
+        try {
+            reader = OoxmlWorkbookIndex.createInputFactory().createXMLStreamReader(is);
+            seekSheetData();
+        } catch (XMLStreamException e) {
+            is.close();
+            throw new IOException("Unable to read sheet from row " + (indexed + 1), e);
+        }
+        //Строка без атрибута r получит номер indexed
+        rowNum = indexed - 1;
+        rowPending = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            is.close();
+        }
+    }
+
+    private void seekSheetData() throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if ("dimension".equals(name)) {
+                    dimension = SheetDimensionReader.parse(reader.getAttributeValue(null, "ref"));
+                } else if ("sheetData".equals(name)) {
+                    return;
+                }
+            }
+        }
+        finished = true;
+    }
+
+    /**
+     * Reads a {@code <c>} element, the reader is positioned at its start.
+     * Element texts are collected into buffers reused for all cells.
+     */
+    private void readCell(CellHandler handler, int col) throws XMLStreamException {
+        String type = reader.getAttributeValue(null, "t");
+        String style = reader.getAttributeValue(null, "s");
+        boolean hasValue = false;
+        boolean hasFormula = false;
+        boolean hasInline = false;
+
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if ("v".equals(name)) {
+                    value.setLength(0);
+                    appendElementText(value);
+                    hasValue = true;
+                } else if ("f".equals(name)) {
+                    formula.setLength(0);
+                    appendElementText(formula);
+                    hasFormula = true;
+                } else if ("is".equals(name)) {
+                    readInlineString();
+                    hasInline = true;
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+
+        if (hasFormula && !cachedFormulas) {
+            //Без вычислителя DataFormatter возвращает текст формулы
+            handler.cell(col, formula);
+            return;
+        }
+        //Сохраненный результат формулы читается как обычное значение, без него ячейка пустая
+
+        boolean typed = handler.isTyped(col);
+        boolean empty = !hasValue || value.length() == 0;
+        if (typed && empty && !hasInline) {
+            return;
+        }
+
+        if (type == null || "n".equals(type)) {
+            if (empty) {
+                handler.cell(col, "");
+                return;
+            }
+            int styleIndex = style == null ? 0 : Integer.parseInt(style);
+            double number = parseNumber(value);
+            formats.compile(styleIndex, styles);
+            if (handler.isFormatDeferred(col)) {
+                handler.unformattedCell(col, number, styleIndex);
+            } else if (!typed) {
+                handler.cell(col, formats.format(number, styleIndex, date1904));
+            } else if (formats.isDateStyle(styleIndex) && DateUtil.isValidExcelDate(number)) {
+                handler.dateCell(col, ExcelDates.toTimestamp(number, date1904));
+            } else {
+                handler.numericCell(col, number);
+            }
+            return;
+        }
+
+        switch (type) {
+            case "s":
+                if (hasValue) {
+                    sharedStrings.cell(handler, col, (int) parseNumber(value));
+                } else {
+                    handler.cell(col, "");
+                }
+                break;
+            case "inlineStr":
+                handler.cell(col, hasInline ? text : hasValue ? value : "");
+                break;
+            case "b":
+                boolean bool = hasValue && isTrue(value);
+                if (!hasValue) {
+                    handler.cell(col, "");
+                } else if (typed) {
+                    handler.booleanCell(col, bool);
+                } else {
+                    handler.cell(col, bool ? "TRUE" : "FALSE");
+                }
+                break;
+            default:
+                //str, e, d - значение хранится текстом
+                handler.cell(col, hasValue ? value : "");
+        }
+    }
+
+    /**
+     * Appends the text of the current element to the buffer, the reader is left at the end of the element.
+     */
+    private void appendElementText(StringBuilder buffer) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    buffer.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                default:
+            }
+        }
+    }
+
+    private static boolean isTrue(CharSequence value) {
+        return value.length() == 1 && value.charAt(0) == '1'
+                || "true".contentEquals(value);
+    }
+
+    /**
+     * Parses plain integers in place, other numbers the same way {@link Double#parseDouble} does.
+     */
+    static double parseNumber(CharSequence value) {
+        int length = value.length();
+        int start = length > 0 && value.charAt(0) == '-' ? 1 : 0;
+        //Целые до 15 цифр представимы в double точно
+        if (length > start && length - start <= 15) {
+            long result = 0;
+            int i = start;
+            for (; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                result = result * 10 + (c - '0');
+            }
+            if (i == length) {
+                return start == 0 ? result : -(double) result;
+            }
+        }
+        return Double.parseDouble(value.toString());
+    }
+
+    /**
+     * Concatenates the text runs of an {@code <is>} element into {@link #text}, phonetic runs are skipped.
+     */
+    private void readInlineString() throws XMLStreamException {
+        text.setLength(0);
+        int depth = 1;
+        int phoneticDepth = 0;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if ("t".equals(name) && phoneticDepth == 0) {
+                    appendElementText(text);
+                } else {
+                    depth++;
+                    if ("rPh".equals(name)) {
+                        phoneticDepth++;
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                if ("rPh".equals(reader.getLocalName())) {
+                    phoneticDepth--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Skips the current element, the reader is positioned at its start.
+     */
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * 0-based column index of a cell reference like "AB12".
+     */
+    static int columnIndex(String ref) {
+        int col = 0;
+        for (int i = 0; i < ref.length(); i++) {
+            char c = ref.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                col = col * 26 + (c - 'A' + 1);
+            } else if (c >= 'a' && c <= 'z') {
+                col = col * 26 + (c - 'a' + 1);
+            } else if (c != '$') {
+                break;
+            }
+        }
+        return col - 1;
+    }
+
+    /**
+     * Opens the sheet part so that the first row of the sheet data is an indexed one.
+     */
+    interface RowSeeker {
+        /**
+         * 0-based number of the last indexed row not after the given one, -1 if there is none.
+         */
+        int floorRow(int row) throws IOException;
+
+        /**
+         * Opens the sheet XML without the rows before the given indexed row.
+         */
+        InputStream open(int indexedRow) throws IOException;
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * OOXML workbook read with {@link XlsxSheetParser}, or {@link XlsbSheetParser} for an XLSB one.
+ * Only the package index, shared strings and styles are kept in memory, sheets are streamed from the zip file.
+ * <p>
+ * With an index store, XML sheets can be read from a distant row using a {@link SheetIndex},
+ * which is built on the first such read.
+ */
+class XlsxWorkbook implements AutoCloseable {
+
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(XlsxWorkbook.class);
+
+    private final File file;
+    private final ZipFile zip;
+    private final OoxmlWorkbookIndex index;
+    private SharedStrings sharedStrings;
+    private StyleFormats styles;
+    private SheetIndex.Store indexStore;
+    private SharedStrings.TempFiles tempFiles = SharedStrings.SYSTEM_TEMP_FILES;
+    //Позиционное чтение сжатых данных листов, открывается при первом переходе к строке
+    private RemoteZipFile rawZip;
+
+    private XlsxWorkbook(File file, ZipFile zip, OoxmlWorkbookIndex index) {
+        this.file = file;
+        this.zip = zip;
+        this.index = index;
+    }
+
+    static XlsxWorkbook open(File file) throws IOException {
+        ZipFile zip = new ZipFile(file);
+        try {
+            return new XlsxWorkbook(file, zip, OoxmlWorkbookIndex.read(name -> openEntry(zip, name)));
+        } catch (IOException | RuntimeException e) {
+            zip.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Finds a sheet by name ({@code null} means the first one).
+     *
+     * @throws CellRangeReaderException if there is no such sheet
+     */
+    OoxmlWorkbookIndex.SheetPart getSheet(String name) {
+        OoxmlWorkbookIndex.SheetPart sheet = index.findSheet(name);
+        if (sheet == null) {
+            throw new CellRangeReaderException(String.format("Sheet '%s' not found", name));
+        }
+        return sheet;
+    }
+
+    /**
+     * Sets the store of sheet indexes, sheets opened after that can skip to distant rows.
+     */
+    void setIndexStore(SheetIndex.Store indexStore) {
+        this.indexStore = indexStore;
+    }
+
+    /**
+     * Sets where a large shared strings table is kept off the heap, the system temp directory by default.
+     */
+    void setTempFiles(SharedStrings.TempFiles tempFiles) {
+        this.tempFiles = tempFiles;
+    }
+
+    SheetParser openSheet(OoxmlWorkbookIndex.SheetPart sheet) throws IOException {
+        return openSheet(sheet, false);
+    }
+
+    /**
+     * @param cachedFormulas whether formula cells are read as their stored results instead of formula text.
+     *                       XLSB formulas are always read as results
+     */
+    SheetParser openSheet(OoxmlWorkbookIndex.SheetPart sheet, boolean cachedFormulas) throws IOException {
+        InputStream is = openEntry(zip, sheet.getPartName());
+        if (is == null) {
+            throw new IOException("Sheet part not found: " + sheet.getPartName());
+        }
+        return sheet.isBinary()
+                ? new XlsbSheetParser(is, getSharedStrings(), getStyles(), index.isDate1904())
+                : new XlsxSheetParser(is, getSharedStrings(), getStyles(), index.isDate1904(), cachedFormulas,
+                        indexStore == null ? null : new IndexSeeker(sheet.getPartName()));
+    }
+
+    /**
+     * Detects the extent of the used cells with a separate pass over the sheet. Cell values are not read.
+     */
+    RangeDetector getRangeDetector(OoxmlWorkbookIndex.SheetPart sheet) {
+        return () -> {
+            try (SheetParser parser = openSheet(sheet)) {
+                return SheetParser.detectRange(parser);
+            } catch (IOException e) {
+                throw new CellRangeReaderException("Unable to detect the range of " + sheet.getName(), e);
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            zip.close();
+        } finally {
+            try {
+                if (rawZip != null) {
+                    rawZip.close();
+                    rawZip = null;
+                }
+            } finally {
+                //Отображенные файлы строк освобождаются сразу, а не сборщиком мусора
+                if (sharedStrings != null) {
+                    sharedStrings.close();
+                    sharedStrings = null;
+                }
+            }
+        }
+    }
+
+    private RemoteZipFile getRawZip() throws IOException {
+        if (rawZip == null) {
+            RawLocalFileSystem fs = new RawLocalFileSystem();
+            fs.initialize(URI.create("file:///"), new Configuration(false));
+            rawZip = new RemoteZipFile(fs.open(new Path(file.getAbsolutePath())), file.length());
+        }
+        return rawZip;
+    }
+
+    private SharedStrings getSharedStrings() throws IOException {
+        if (sharedStrings == null) {
+            sharedStrings = SharedStrings.EMPTY;
+            ZipEntry entry = index.getSharedStringsPart() == null ? null : zip.getEntry(index.getSharedStringsPart());
+            if (entry != null) {
+                //Большая таблица строк хранится вне кучи
+                SharedStrings.TempFiles offHeapFiles = entry.getSize() > SharedStrings.OFF_HEAP_SIZE ? tempFiles : null;
+                try (InputStream is = zip.getInputStream(entry)) {
+                    sharedStrings = index.isBinary()
+                            ? SharedStrings.readBinary(is, offHeapFiles)
+                            : SharedStrings.read(is, offHeapFiles);
+                }
+            }
+        }
+        return sharedStrings;
+    }
+
+    private StyleFormats getStyles() throws IOException {
+        if (styles == null) {
+            styles = StyleFormats.EMPTY;
+            if (index.getStylesPart() != null) {
+                try (InputStream is = openEntry(zip, index.getStylesPart())) {
+                    if (is != null) {
+                        styles = index.isBinary() ? StyleFormats.readBinary(is) : StyleFormats.read(is);
+                    }
+                }
+            }
+        }
+        return styles;
+    }
+
+    private static InputStream openEntry(ZipFile zip, String name) throws IOException {
+        ZipEntry entry = zip.getEntry(name);
+        return entry == null ? null : zip.getInputStream(entry);
+    }
+
+    /**
+     * Loads the index of a sheet part on the first seek. Stored parts and parts the store does not keep
+     * an index for are read in order.
+     */
+    private class IndexSeeker implements XlsxSheetParser.RowSeeker {
+        private final String partName;
+        private SheetIndex sheetIndex;
+        private boolean loaded;
+
+        IndexSeeker(String partName) {
+            this.partName = partName;
+        }
+
+        @Override
+        public int floorRow(int row) throws IOException {
+            if (!loaded) {
+                loaded = true;
+                RemoteZipFile raw = getRawZip();
+                if (raw.isDeflated(partName)) {
+                    try {
+                        sheetIndex = SheetIndex.load(indexStore, "index:" + raw.getEntryLocation(partName),
+                                offset -> raw.openDeflated(partName, offset));
+                    } catch (IOException e) {
+                        //Без индекса лист читается подряд
+                        logger.warn("Unable to index sheet part {} of {}", partName, file, e);
+                    }
+                }
+            }
+            return sheetIndex == null ? -1 : sheetIndex.floorRow(row);
+        }
+
+        @Override
+        public InputStream open(int indexedRow) throws IOException {
+            RemoteZipFile raw = getRawZip();
+            return sheetIndex.open(indexedRow, offset -> raw.openDeflated(partName, offset));
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.drill.common.exceptions.CustomErrorContext;
+import org.apache.drill.common.exceptions.EmptyErrorContext;
+import org.apache.drill.common.expression.SchemaPath;
+import org.apache.drill.common.logical.FormatPluginConfig;
+import org.apache.drill.common.types.TypeProtos.MinorType;
+import org.apache.drill.exec.memory.BufferAllocator;
+import org.apache.drill.exec.memory.RootAllocator;
+import org.apache.drill.exec.ops.OperatorContext;
+import org.apache.drill.exec.physical.impl.scan.framework.SchemaNegotiator;
+import org.apache.drill.exec.physical.resultSet.ResultSetLoader;
+import org.apache.drill.exec.physical.resultSet.impl.OptionBuilder;
+import org.apache.drill.exec.physical.resultSet.impl.ResultSetLoaderImpl;
+import org.apache.drill.exec.record.VectorContainer;
+import org.apache.drill.exec.record.metadata.TupleMetadata;
+import org.apache.drill.exec.store.dfs.DrillFileSystem;
+import org.apache.drill.exec.store.excel.config.ExcelFormatConfig;
+import org.apache.drill.exec.store.excel.read.ExcelBatchReader;
+import org.apache.drill.exec.store.excel.read.ParsingExecutors;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ExcelBatchReaderTest {
+
+    private static final Path TEST3 = new Path(new File("src/test/resources/test3.xlsx").getAbsolutePath());
+    private static final ParsingExecutors EXECUTORS = new ParsingExecutors(2, 2);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BufferAllocator allocator;
+
+    @Before
+    public void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+    }
+
+    @After
+    public void tearDown() {
+        allocator.close();
+    }
+
+    @Test
+    public void testBatchesFollowLoaderLimit() throws Exception {
+        List<List<Object>> rows = read(config(true), null, null, 2);
+        //Лист Jan: 5 строк данных, лимит загрузчика - 2 строки на пакет
+        Assert.assertEquals(5, rows.size());
+        Assert.assertEquals(Arrays.asList(1.0, "Jan item 1"), rows.get(0).subList(0, 2));
+        Assert.assertEquals(5.0, rows.get(4).get(0));
+    }
+
+    @Test
+    public void testTypedSchema() throws Exception {
+        TestNegotiator negotiator = new TestNegotiator(4096);
+        ExcelBatchReader reader = reader(config(true), null, null);
+        reader.open(negotiator, new DrillFileSystem(new Configuration()));
+        try {
+            Assert.assertEquals(MinorType.FLOAT8, negotiator.schema.metadata("id").type());
+            Assert.assertEquals(MinorType.VARCHAR, negotiator.schema.metadata("name").type());
+            Assert.assertEquals(MinorType.FLOAT8, negotiator.schema.metadata("amount").type());
+            Assert.assertEquals(MinorType.BIT, negotiator.schema.metadata("paid").type());
+            Assert.assertEquals(MinorType.TIMESTAMP, negotiator.schema.metadata("date").type());
+        } finally {
+            reader.close();
+            negotiator.loader.close();
+        }
+    }
+
+    @Test
+    public void testMismatchedCellsAfterSample() throws Exception {
+        File file = folder.newFile("mismatch.xlsx");
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            Sheet sheet = wb.createSheet("values");
+            sheet.createRow(0).createCell(0).setCellValue("value");
+            //Первые 150 строк - целые числа, тип выводится по первым 100
+            for (int i = 1; i <= 150; i++) {
+                sheet.createRow(i).createCell(0).setCellValue(i);
+            }
+            sheet.createRow(151).createCell(0).setCellValue(2.5);
+            sheet.createRow(152).createCell(0).setCellValue("n/a");
+            sheet.createRow(153).createCell(0).setCellValue(7);
+            try (FileOutputStream os = new FileOutputStream(file)) {
+                wb.write(os);
+            }
+        }
+
+        RuntimeExcelTableConfig config = config(new Path(file.getAbsolutePath()), true, false);
+        TestNegotiator negotiator = new TestNegotiator(4096);
+        ExcelBatchReader reader = reader(config, null, null);
+        reader.open(negotiator, new DrillFileSystem(new Configuration()));
+        try {
+            Assert.assertEquals(MinorType.FLOAT8, negotiator.schema.metadata("value").type());
+        } finally {
+            reader.close();
+            negotiator.loader.close();
+        }
+
+        List<List<Object>> rows = read(config, null, null, 4096);
+        Assert.assertEquals(153, rows.size());
+        Assert.assertEquals(1.0, rows.get(0).get(0));
+        Assert.assertEquals(2.5, rows.get(150).get(0));
+        Assert.assertNull(rows.get(151).get(0));
+        Assert.assertEquals(7.0, rows.get(152).get(0));
+    }
+
+    @Test
+    public void testImplicitColumnsAndRowFilter() throws Exception {
+        List<SchemaPath> columns = Arrays.asList(SchemaPath.getSimplePath("name"),
+                SchemaPath.getSimplePath(ExcelBatchReader.ROW_NUMBER_COLUMN),
+                SchemaPath.getSimplePath(ExcelBatchReader.SHEET_NAME_COLUMN));
+        List<List<Object>> rows = read(config(false), columns, new RowFilter(3, 4), 4096);
+        Assert.assertEquals(2, rows.size());
+        List<Object> first = rows.get(0);
+        Assert.assertTrue(first.contains("Jan item 2"));
+        Assert.assertTrue(first.contains(3L));
+        Assert.assertTrue(first.contains("Jan"));
+    }
+
+    @Test
+    public void testWildcardWithImplicitColumn() throws Exception {
+        List<List<Object>> star = read(config(false), Collections.singletonList(SchemaPath.STAR_COLUMN), null, 4096);
+        List<SchemaPath> columns = Arrays.asList(SchemaPath.STAR_COLUMN,
+                SchemaPath.getSimplePath(ExcelBatchReader.ROW_NUMBER_COLUMN));
+        List<List<Object>> rows = read(config(false), columns, null, 4096);
+        Assert.assertEquals(star.size(), rows.size());
+        //К колонкам листа добавляется только явно указанный номер строки
+        List<Object> first = rows.get(0);
+        Assert.assertEquals(star.get(0).size() + 1, first.size());
+        Assert.assertEquals(star.get(0), first.subList(0, star.get(0).size()));
+        Assert.assertEquals(2L, first.get(first.size() - 1));
+    }
+
+    @Test
+    public void testPipelinedParsing() throws Exception {
+        Assert.assertEquals(read(config(true), null, null, 2),
+                read(config(true, true), null, null, 2));
+
+        List<SchemaPath> columns = Arrays.asList(SchemaPath.getSimplePath("name"),
+                SchemaPath.getSimplePath(ExcelBatchReader.ROW_NUMBER_COLUMN));
+        List<List<Object>> rows = read(config(false, true), columns, new RowFilter(3, 4), 4096);
+        Assert.assertEquals(read(config(false), columns, new RowFilter(3, 4), 4096), rows);
+        Assert.assertEquals(2, rows.size());
+    }
+
+    @Test
+    public void testLimitReleasesWorkbook() throws Exception {
+        TestNegotiator negotiator = new TestNegotiator(4096);
+        ExcelBatchReader reader = new ExcelBatchReader(null, config(false), null, null, null, EXECUTORS, 2, null);
+        //Файл читается как удаленный: лист копируется во временный файл, который удаляется вместе с книгой
+        DrillFileSystem fileSystem = Mockito.spy(new DrillFileSystem(new Configuration()));
+        Mockito.doReturn(new Path("remote://host" + TEST3.toUri().getPath())).when(fileSystem).makeQualified(TEST3);
+        Set<File> existing = tempCopies();
+        try {
+            Assert.assertTrue(reader.open(negotiator, fileSystem));
+            Set<File> copies = tempCopies();
+            copies.removeAll(existing);
+            Assert.assertFalse(copies.isEmpty());
+
+            negotiator.loader.startBatch();
+            //Лимит достигнут в первом пакете, хотя в листе 5 строк
+            Assert.assertFalse(reader.next());
+            VectorContainer container = negotiator.loader.harvest();
+            Assert.assertEquals(2, container.getRecordCount());
+            container.zeroVectors();
+            for (File copy : copies) {
+                Assert.assertFalse(copy.exists());
+            }
+        } finally {
+            reader.close();
+            negotiator.loader.close();
+        }
+    }
+
+    private static Set<File> tempCopies() {
+        File[] files = new File(System.getProperty("java.io.tmpdir"))
+                .listFiles((dir, name) -> name.startsWith("excel") && name.endsWith(".tmp"));
+        return files == null ? new HashSet<>() : new HashSet<>(Arrays.asList(files));
+    }
+
+    private static RuntimeExcelTableConfig config(boolean inferColumnTypes) throws Exception {
+        return config(inferColumnTypes, false);
+    }
+
+    private static RuntimeExcelTableConfig config(boolean inferColumnTypes, boolean pipelinedParsing) throws Exception {
+        return config(TEST3, inferColumnTypes, pipelinedParsing);
+    }
+
+    private static RuntimeExcelTableConfig config(Path path,
+                                                  boolean inferColumnTypes,
+                                                  boolean pipelinedParsing) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerSubtypes(ExcelFormatConfig.class);
+        ExcelFormatConfig formatConfig = (ExcelFormatConfig) mapper.readValue(
+                "{\"type\": \"excel\", \"inferColumnTypes\": " + inferColumnTypes
+                        + ", \"pipelinedParsing\": " + pipelinedParsing + "}", FormatPluginConfig.class);
+        return new RuntimeExcelTableConfig(path, formatConfig);
+    }
+
+    private static ExcelBatchReader reader(RuntimeExcelTableConfig config, List<SchemaPath> columns, RowFilter rowFilter) {
+        return new ExcelBatchReader(columns, config, null, null, null, EXECUTORS, -1, rowFilter);
+    }
+
+    private List<List<Object>> read(RuntimeExcelTableConfig config,
+                                    List<SchemaPath> columns,
+                                    RowFilter rowFilter,
+                                    int rowLimit) throws Exception {
+        TestNegotiator negotiator = new TestNegotiator(rowLimit);
+        ExcelBatchReader reader = reader(config, columns, rowFilter);
+        List<List<Object>> rows = new ArrayList<>();
+        try {
+            Assert.assertTrue(reader.open(negotiator, new DrillFileSystem(new Configuration())));
+            boolean more = true;
+            while (more) {
+                negotiator.loader.startBatch();
+                more = reader.next();
+                VectorContainer container = negotiator.loader.harvest();
+                Assert.assertTrue(container.getRecordCount() <= rowLimit);
+                for (int i = 0; i < container.getRecordCount(); i++) {
+                    List<Object> row = new ArrayList<>();
+                    for (int j = 0; j < container.getNumberOfColumns(); j++) {
+                        Object value = container.getValueVector(j).getValueVector().getAccessor().getObject(i);
+                        row.add(value == null ? null : value instanceof Number || value instanceof Boolean ? value : value.toString());
+                    }
+                    rows.add(row);
+                }
+                container.zeroVectors();
+            }
+        } finally {
+            reader.close();
+            negotiator.loader.close();
+        }
+        return rows;
+    }
+
+    /**
+     * Negotiator of a bare result set loader, without a scan operator around it.
+     */
+    private class TestNegotiator implements SchemaNegotiator {
+        private final int rowLimit;
+        private TupleMetadata schema;
+        private ResultSetLoader loader;
+
+        TestNegotiator(int rowLimit) {
+            this.rowLimit = rowLimit;
+        }
+
+        @Override
+        public OperatorContext context() {
+            return null;
+        }
+
+        @Override
+        public void setErrorContext(CustomErrorContext context) {
+        }
+
+        @Override
+        public String userName() {
+            return null;
+        }
+
+        @Override
+        public void setTableSchema(TupleMetadata schema, boolean isComplete) {
+            this.schema = schema;
+        }
+
+        @Override
+        public void setBatchSize(int maxRecordsPerBatch) {
+        }
+
+        @Override
+        public ResultSetLoader build() {
+            loader = new ResultSetLoaderImpl(allocator, new OptionBuilder()
+                    .setSchema(schema)
+                    .setRowCountLimit(rowLimit)
+                    .build());
+            return loader;
+        }
+
+        @Override
+        public boolean isProjectionEmpty() {
+            return false;
+        }
+
+        @Override
+        public CustomErrorContext parentErrorContext() {
+            return new EmptyErrorContext();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel;
+
+import com.fasterxml.jackson.databind.InjectableValues;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.drill.common.config.DrillConfig;
+import org.apache.drill.common.config.LogicalPlanPersistence;
+import org.apache.drill.common.expression.SchemaPath;
+import org.apache.drill.common.scanner.ClassPathScanner;
+import org.apache.drill.exec.store.StoragePluginRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ExcelGroupScanTest {
+
+    private static final ExcelWork SHEET = new ExcelWork("/data/export.xlsx", "Data");
+
+    private ObjectMapper mapper;
+    private ExcelStoragePluginConfig pluginConfig;
+    private ExcelStoragePlugin plugin;
+
+    @Before
+    public void setUp() throws Exception {
+        DrillConfig config = DrillConfig.create();
+        //Маппер планов Drill: сериализация SchemaPath и подтипы операторов
+        mapper = new LogicalPlanPersistence(config, ClassPathScanner.fromPrescan(config)).getMapper();
+        mapper.registerSubtypes(ExcelStoragePluginConfig.class, ExcelGroupScan.class, ExcelSubScan.class);
+        pluginConfig = mapper.readValue("{\"type\": \"excel\", \"connection\": \"file:///\"}",
+                ExcelStoragePluginConfig.class);
+
+        plugin = Mockito.mock(ExcelStoragePlugin.class);
+        Mockito.when(plugin.getConfig()).thenReturn(pluginConfig);
+        StoragePluginRegistry registry = Mockito.mock(StoragePluginRegistry.class);
+        Mockito.when(registry.getPlugin(Mockito.any(ExcelStoragePluginConfig.class))).thenReturn(plugin);
+        mapper.setInjectableValues(new InjectableValues.Std().addValue(StoragePluginRegistry.class, registry));
+    }
+
+    @Test
+    public void testApplyLimit() throws Exception {
+        ExcelGroupScan scan = mapper.readValue("{\"pop\": \"excel-scan\", \"@id\": 1, \"userName\": \"user\", "
+                        + "\"spec\": {\"table\": \"export\"}, "
+                        + "\"storagePluginConfig\": {\"type\": \"excel\", \"connection\": \"file:///\"}, "
+                        + "\"works\": [{\"path\": \"/data/export.xlsx\", \"worksheet\": \"Data\"}]}",
+                ExcelGroupScan.class);
+        Assert.assertEquals(-1, scan.getMaxRecords());
+
+        ExcelGroupScan limited = (ExcelGroupScan) scan.applyLimit(10);
+        Assert.assertNotNull(limited);
+        Assert.assertNotSame(scan, limited);
+        Assert.assertEquals(10, limited.getMaxRecords());
+        Assert.assertEquals(scan.getWorks(), limited.getWorks());
+        //Исходный скан не меняется
+        Assert.assertEquals(-1, scan.getMaxRecords());
+
+        Assert.assertNull(limited.applyLimit(10));
+    }
+
+    @Test
+    public void testSubScanSerialization() throws Exception {
+        List<SchemaPath> columns = Arrays.asList(SchemaPath.getSimplePath("name"), SchemaPath.getSimplePath("_excel_row"));
+        RowFilter rowFilter = new RowFilter(100, 200);
+        ExcelSubScan subScan = new ExcelSubScan("user", new ExcelScanSpec("export"), plugin, columns, 25, rowFilter,
+                Collections.singletonList(SHEET));
+
+        ExcelSubScan copy = mapper.readValue(mapper.writeValueAsString(subScan), ExcelSubScan.class);
+        Assert.assertEquals(25, copy.getMaxRecords());
+        Assert.assertEquals(rowFilter, copy.getRowFilter());
+        Assert.assertEquals(columns, copy.getColumns());
+        Assert.assertEquals(subScan.getWorks(), copy.getWorks());
+        Assert.assertSame(plugin, copy.getStoragePlugin());
+    }
+
+    @Test
+    public void testSplitRows() {
+        List<ExcelWork> parts = ExcelGroupScan.split(SHEET, 2, 3_000_000, 1_000_000, null);
+        Assert.assertEquals(Arrays.asList(
+                new ExcelWork(SHEET.getPath(), SHEET.getWorksheet(), new RowFilter(1, 1_000_001)),
+                new ExcelWork(SHEET.getPath(), SHEET.getWorksheet(), new RowFilter(1_000_002, 2_000_001)),
+                new ExcelWork(SHEET.getPath(), SHEET.getWorksheet(), new RowFilter(2_000_002, Integer.MAX_VALUE))), parts);
+    }
+
+    @Test
+    public void testSplitWithinRowFilter() {
+        List<ExcelWork> parts = ExcelGroupScan.split(SHEET, 2, 3_000_000, 100_000, new RowFilter(500_001, 700_000));
+        Assert.assertEquals(2, parts.size());
+        Assert.assertEquals(new RowFilter(1, 600_000), parts.get(0).getRows());
+        Assert.assertEquals(new RowFilter(600_001, Integer.MAX_VALUE), parts.get(1).getRows());
+    }
+
+    @Test
+    public void testSmallSheetNotSplit() {
+        Assert.assertEquals(Collections.singletonList(SHEET), ExcelGroupScan.split(SHEET, 2, 1000, 1000, null));
+        //Пустой фильтр
+        Assert.assertEquals(Collections.singletonList(SHEET),
+                ExcelGroupScan.split(SHEET, 2, 3_000_000, 1000, new RowFilter(10, 5)));
+    }
+
+    @Test
+    public void testSplitCount() {
+        List<ExcelWork> parts = ExcelGroupScan.split(SHEET, 1, 1_000_000, 1000, null);
+        Assert.assertEquals(ExcelGroupScan.MAX_SPLITS, parts.size());
+        for (int i = 1; i < parts.size(); i++) {
+            Assert.assertEquals(parts.get(i - 1).getRows().getLast() + 1, parts.get(i).getRows().getFirst());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel;
+
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlOperator;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+public class ExcelPushRowFilterIntoScanTest {
+
+    private final RelDataTypeFactory typeFactory = new JavaTypeFactoryImpl();
+    private final RexBuilder rexBuilder = new RexBuilder(typeFactory);
+    private final RelDataType rowType = typeFactory.builder()
+            .add("name", SqlTypeName.VARCHAR)
+            .add("_EXCEL_ROW", SqlTypeName.BIGINT)
+            .build();
+
+    @Test
+    public void testRange() {
+        RexNode condition = rexBuilder.makeCall(SqlStdOperatorTable.AND,
+                call(SqlStdOperatorTable.GREATER_THAN_OR_EQUAL, row(), literal(100000)),
+                call(SqlStdOperatorTable.LESS_THAN, row(), literal(100500)));
+        Assert.assertEquals(new RowFilter(100000, 100499), ExcelPushRowFilterIntoScan.analyze(condition, rowType));
+    }
+
+    @Test
+    public void testReversedOperands() {
+        RexNode condition = call(SqlStdOperatorTable.GREATER_THAN, literal(10), row());
+        Assert.assertEquals(new RowFilter(1, 9), ExcelPushRowFilterIntoScan.analyze(condition, rowType));
+    }
+
+    @Test
+    public void testEquals() {
+        Assert.assertEquals(new RowFilter(7, 7),
+                ExcelPushRowFilterIntoScan.analyze(call(SqlStdOperatorTable.EQUALS, row(), literal(7)), rowType));
+
+        RowFilter empty = ExcelPushRowFilterIntoScan.analyze(call(SqlStdOperatorTable.EQUALS, row(), literal(7.5)), rowType);
+        Assert.assertTrue(empty.getFirst() > empty.getLast());
+    }
+
+    @Test
+    public void testNotPushed() {
+        RexNode name = rexBuilder.makeInputRef(rowType, 0);
+        Assert.assertNull(ExcelPushRowFilterIntoScan.analyze(
+                call(SqlStdOperatorTable.EQUALS, name, rexBuilder.makeLiteral("x")), rowType));
+        //Дизъюнкция не сужает диапазон
+        Assert.assertNull(ExcelPushRowFilterIntoScan.analyze(rexBuilder.makeCall(SqlStdOperatorTable.OR,
+                call(SqlStdOperatorTable.LESS_THAN, row(), literal(5)),
+                call(SqlStdOperatorTable.GREATER_THAN, row(), literal(50))), rowType));
+    }
+
+    private RexNode row() {
+        return rexBuilder.makeInputRef(rowType, 1);
+    }
+
+    private RexNode literal(double value) {
+        return rexBuilder.makeExactLiteral(BigDecimal.valueOf(value));
+    }
+
+    private RexNode call(SqlOperator operator, RexNode left, RexNode right) {
+        return rexBuilder.makeCall(operator, left, right);
+    }
+}
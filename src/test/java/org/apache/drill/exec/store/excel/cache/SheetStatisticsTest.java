@@ -0,0 +1,48 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SheetStatisticsTest {
+
+    @Test
+    public void testDimension() {
+        SheetStatistics sheet = new SheetStatistics(10_000, 0, 999, 0, 4);
+        Assert.assertEquals(999, sheet.estimateRowCount(null, false, true));
+        Assert.assertEquals(5, sheet.estimateColumnCount(null));
+    }
+
+    @Test
+    public void testCellRange() {
+        SheetStatistics sheet = new SheetStatistics(10_000, 0, 999, 0, 4);
+        Assert.assertEquals(3, sheet.estimateRowCount("M12:V14", false, false));
+        Assert.assertEquals(10, sheet.estimateColumnCount("M12:V14"));
+        //Плавающий футер - до конца листа
+        Assert.assertEquals(989, sheet.estimateRowCount("M12:V14", true, false));
+    }
+
+    @Test
+    public void testFileLength() {
+        SheetStatistics sheet = new SheetStatistics(1_200_000);
+        Assert.assertEquals(10_000, sheet.estimateRowCount(null, false, false));
+        Assert.assertEquals(SheetStatistics.DEFAULT_COLUMN_COUNT, sheet.estimateColumnCount(null));
+        Assert.assertEquals(1, new SheetStatistics(0).estimateRowCount(null, false, true));
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.cache;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class WorkbookFileCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testHitAndMiss() throws IOException {
+        WorkbookFileCache cache = new WorkbookFileCache(folder.getRoot(), 1024);
+
+        try (WorkbookFileCache.Lease lease = cache.acquire("/a.xlsx", 1, 10, "", target -> write(target, 10))) {
+            Assert.assertEquals(10, lease.getFile().length());
+        }
+        try (WorkbookFileCache.Lease lease = cache.acquire("/a.xlsx", 1, 10, "", target -> Assert.fail())) {
+            Assert.assertTrue(lease.getFile().exists());
+        }
+        //Файл изменился - другой ключ
+        try (WorkbookFileCache.Lease lease = cache.acquire("/a.xlsx", 2, 10, "", target -> write(target, 10))) {
+            Assert.assertEquals(10, lease.getFile().length());
+            Assert.assertNull(cache.tryAcquire("/a.xlsx", 1, 10, "sheet:"));
+        }
+
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(20, cache.getSize());
+    }
+
+    @Test
+    public void testLruEviction() throws IOException {
+        WorkbookFileCache cache = new WorkbookFileCache(folder.getRoot(), 25);
+
+        File first;
+        try (WorkbookFileCache.Lease lease = cache.acquire("/a.xlsx", 1, 10, "", target -> write(target, 10))) {
+            first = lease.getFile();
+        }
+        cache.acquire("/b.xlsx", 1, 10, "", target -> write(target, 10)).close();
+        cache.acquire("/a.xlsx", 1, 10, "", target -> Assert.fail()).close();
+
+        WorkbookFileCache.Lease pinned = cache.acquire("/c.xlsx", 1, 10, "", target -> write(target, 10));
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertTrue(first.exists());
+        Assert.assertNull(cache.tryAcquire("/b.xlsx", 1, 10, ""));
+
+        //Используемые файлы не вытесняются
+        cache.acquire("/d.xlsx", 1, 10, "", target -> write(target, 10)).close();
+        Assert.assertTrue(pinned.getFile().exists());
+        pinned.close();
+        Assert.assertEquals(20, cache.getSize());
+    }
+
+    @Test
+    public void testRestore() throws IOException {
+        WorkbookFileCache cache = new WorkbookFileCache(folder.getRoot(), 1024);
+        cache.acquire("/a.xlsx", 1, 10, "", target -> write(target, 10)).close();
+
+        WorkbookFileCache restored = new WorkbookFileCache(folder.getRoot(), 1024);
+        Assert.assertEquals(10, restored.getSize());
+        restored.acquire("/a.xlsx", 1, 10, "", target -> Assert.fail()).close();
+        Assert.assertEquals(1, restored.getHitCount());
+    }
+
+    @Test
+    public void testTempFiles() throws IOException {
+        File directory = new File(folder.getRoot(), "cache");
+        WorkbookFileCache cache = new WorkbookFileCache(directory, 1024);
+        File temp = cache.createTempFile("excel-strings");
+        Assert.assertEquals(directory, temp.getParentFile());
+        write(temp, 10);
+        Assert.assertEquals(0, cache.getSize());
+
+        //Оставшийся после сбоя файл не становится записью кэша
+        WorkbookFileCache restored = new WorkbookFileCache(directory, 1024);
+        Assert.assertFalse(temp.exists());
+        Assert.assertEquals(0, restored.getSize());
+    }
+
+    private static void write(File target, int size) throws IOException {
+        Files.write(target.toPath(), new byte[size]);
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.cache;
+
+import org.apache.drill.common.exceptions.EmptyErrorContext;
+import org.apache.drill.common.types.TypeProtos.MinorType;
+import org.apache.drill.exec.memory.BufferAllocator;
+import org.apache.drill.exec.memory.RootAllocator;
+import org.apache.drill.exec.physical.impl.scan.framework.SchemaNegotiator;
+import org.apache.drill.exec.physical.resultSet.ResultSetLoader;
+import org.apache.drill.exec.physical.resultSet.impl.OptionBuilder;
+import org.apache.drill.exec.physical.resultSet.impl.ResultSetLoaderImpl;
+import org.apache.drill.exec.record.metadata.TupleMetadata;
+import org.apache.drill.exec.store.dfs.DrillFileSystem;
+import org.apache.drill.exec.store.excel.RuntimeExcelTableConfig;
+import org.apache.drill.exec.store.excel.config.FormulaMode;
+import org.apache.drill.exec.store.excel.read.ExcelBatchReader;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+public class WorkbookMetadataCacheTest {
+
+    private static final Path TEST3 = new Path(new File("src/test/resources/test3.xlsx").getAbsolutePath());
+
+    private final WorkbookMetadataCache cache = new WorkbookMetadataCache(TimeUnit.HOURS.toMillis(1), 100);
+    private BufferAllocator allocator;
+    private DrillFileSystem fileSystem;
+    private RuntimeExcelTableConfig table;
+
+    @Before
+    public void setUp() throws Exception {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+        fileSystem = new DrillFileSystem(new Configuration());
+        //Ключ кэша сравнивается по ссылке, ридеру нужны только свойства листа
+        table = Mockito.mock(RuntimeExcelTableConfig.class);
+        Mockito.when(table.getLocation()).thenReturn(TEST3);
+        Mockito.when(table.isExtractHeaders()).thenReturn(true);
+        Mockito.when(table.isInferColumnTypes()).thenReturn(true);
+        Mockito.when(table.getFormulaMode()).thenReturn(FormulaMode.FORMULA);
+    }
+
+    @After
+    public void tearDown() {
+        allocator.close();
+    }
+
+    @Test
+    public void testSecondReadReusesMetadata() throws Exception {
+        TupleMetadata parsed = open();
+        FileStatus status = fileSystem.getFileStatus(TEST3);
+        SheetMetadata metadata = cache.get(table, status);
+        Assert.assertNotNull(metadata);
+        Assert.assertEquals(Arrays.asList(metadata.getHeaders()).subList(0, 2),
+                Arrays.asList(parsed.metadata(0).name(), parsed.metadata(1).name()));
+        Assert.assertEquals(MinorType.FLOAT8, parsed.metadata("amount").type());
+
+        //Подменяем запись: второе чтение берет заголовки и типы из кэша, а не из листа
+        String[] headers = metadata.getHeaders();
+        MinorType[] types = metadata.getTypes();
+        for (int i = 0; i < headers.length; i++) {
+            headers[i] = "cached_" + headers[i];
+            types[i] = MinorType.VARCHAR;
+        }
+        cache.put(table, status, new SheetMetadata(metadata.getSheetName(),
+                metadata.getRowStart(),
+                metadata.getRowEnd(),
+                metadata.getColStart(),
+                metadata.getColEnd(),
+                headers,
+                types));
+
+        TupleMetadata cached = open();
+        Assert.assertEquals(parsed.size(), cached.size());
+        Assert.assertEquals(MinorType.VARCHAR, cached.metadata("cached_amount").type());
+        Assert.assertNull(cached.metadata("amount"));
+    }
+
+    @Test
+    public void testFileChangeInvalidatesEntry() throws Exception {
+        FileStatus status = fileSystem.getFileStatus(TEST3);
+        cache.put(table, status, new SheetMetadata("Jan", 0, 5, 0, 1, new String[]{"id", "name"}, null));
+        Assert.assertNotNull(cache.get(table, status));
+
+        FileStatus modified = new FileStatus(status.getLen(), false, 1, 0, status.getModificationTime() + 1000, TEST3);
+        Assert.assertNull(cache.get(table, modified));
+
+        FileStatus resized = new FileStatus(status.getLen() + 1, false, 1, 0, status.getModificationTime(), TEST3);
+        Assert.assertNull(cache.get(table, resized));
+
+        //Заново прочитанный лист заменяет устаревшую запись новой версией файла
+        open(modified);
+        Assert.assertNotNull(cache.get(table, modified));
+    }
+
+    /**
+     * Opens a reader of the sheet with the metadata cache and returns the schema it declares.
+     */
+    private TupleMetadata open() throws Exception {
+        return open(null);
+    }
+
+    /**
+     * @param status status reported by the file system instead of the real one, {@code null} to keep the real one
+     */
+    private TupleMetadata open(FileStatus status) throws Exception {
+        DrillFileSystem fs = fileSystem;
+        if (status != null) {
+            fs = Mockito.spy(fileSystem);
+            Mockito.doReturn(status).when(fs).getFileStatus(TEST3);
+        }
+
+        TupleMetadata[] schema = new TupleMetadata[1];
+        ResultSetLoader[] loader = new ResultSetLoader[1];
+        SchemaNegotiator negotiator = Mockito.mock(SchemaNegotiator.class);
+        Mockito.when(negotiator.parentErrorContext()).thenReturn(new EmptyErrorContext());
+        Mockito.doAnswer(invocation -> schema[0] = invocation.getArgument(0))
+                .when(negotiator).setTableSchema(Mockito.any(), Mockito.anyBoolean());
+        Mockito.when(negotiator.build()).thenAnswer(invocation -> loader[0] = new ResultSetLoaderImpl(allocator,
+                new OptionBuilder().setSchema(schema[0]).build()));
+
+        ExcelBatchReader reader = new ExcelBatchReader(null, table, null, null, cache, null, -1, null);
+        try {
+            Assert.assertTrue(reader.open(negotiator, fs));
+            return schema[0];
+        } finally {
+            reader.close();
+            if (loader[0] != null) {
+                loader[0].close();
+            }
+        }
+    }
+}
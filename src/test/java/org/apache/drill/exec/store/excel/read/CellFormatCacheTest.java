@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+public class CellFormatCacheTest {
+
+    private static final String[] FORMATS = {"General", "@", "0.00", "#,##0", "0%", "yyyy-mm-dd", "0.00E+00"};
+
+    @Test
+    public void testSameAsDataFormatter() {
+        DataFormatter dataFormatter = new DataFormatter(Locale.US);
+        CellFormatCache formats = new CellFormatCache(Locale.US);
+        for (int style = 0; style < FORMATS.length; style++) {
+            formats.compile(style, style == 0 ? 0 : 164 + style, FORMATS[style]);
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            double value = randomValue(random);
+            for (int style = 0; style < FORMATS.length; style++) {
+                String expected = dataFormatter.formatRawCellContents(value, style == 0 ? 0 : 164 + style, FORMATS[style]);
+                Assert.assertEquals(value + " " + FORMATS[style], expected, formats.format(value, style, false).toString());
+            }
+        }
+    }
+
+    @Test
+    public void testDateStyles() {
+        CellFormatCache formats = new CellFormatCache(Locale.US);
+        formats.compile(0, 0, "General");
+        formats.compile(100, 14, "m/d/yy");
+        Assert.assertFalse(formats.isDateStyle(0));
+        Assert.assertTrue(formats.isDateStyle(100));
+        Assert.assertTrue(formats.isCompiled(100));
+        Assert.assertFalse(formats.isCompiled(99));
+    }
+
+    @Test
+    public void testFormatCellValue() throws Exception {
+        DataFormatter dataFormatter = new DataFormatter(Locale.US);
+        CellFormatCache formats = new CellFormatCache(Locale.US);
+        try (Workbook workbook = new XSSFWorkbook()) {
+            CellStyle percent = workbook.createCellStyle();
+            percent.setDataFormat(workbook.createDataFormat().getFormat("0.0%"));
+            Row row = workbook.createSheet().createRow(0);
+            double[] values = {1, -2.5, 0.125, 1234567.891234, 1E12};
+            for (int i = 0; i < values.length; i++) {
+                Cell general = row.createCell(i * 2);
+                general.setCellValue(values[i]);
+                Cell styled = row.createCell(i * 2 + 1);
+                styled.setCellValue(values[i]);
+                styled.setCellStyle(percent);
+                Assert.assertEquals(dataFormatter.formatCellValue(general), formats.formatCellValue(general, null).toString());
+                Assert.assertEquals(dataFormatter.formatCellValue(styled), formats.formatCellValue(styled, null).toString());
+            }
+        }
+    }
+
+    private static double randomValue(Random random) {
+        switch (random.nextInt(5)) {
+            case 0:
+                return random.nextInt(2000000) - 1000000;
+            case 1:
+                return Math.round(random.nextGaussian() * 100000) / 100.0;
+            case 2:
+                return random.nextGaussian() * Math.pow(10, random.nextInt(30) - 15);
+            case 3:
+                return (random.nextLong() % 1000000000000L) / 1000.0;
+            default:
+                return random.nextDouble();
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package org.apache.drill.exec.store.excel.read;
 
 import com.monitorjbl.xlsx.StreamingReader;
+import org.apache.drill.exec.store.excel.config.FormulaMode;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
@@ -79,6 +80,15 @@ public class CellRangeReaderTest {
 
     }
 
+    @Test
+    public void test2ReadOpenEnded() throws IOException, InvalidFormatException {
+        CellRange range = new CellRange(2, CellRange.OPEN_END, 0, 6);
+        List<String[]> result = readRange("src/test/resources/test2.xlsx", range);
+        //Последняя строка листа - 80-я
+        Assert.assertEquals(78, result.size());
+        assertNullArray(result, 0);
+        Assert.assertNotNull(result.get(77)[0]);
+    }
 
     private List<String[]> readRange(String fileName, CellRange range) throws IOException, InvalidFormatException {
         Workbook sheets = StreamingReader.builder()
@@ -88,7 +98,7 @@ public class CellRangeReaderTest {
         Sheet sheet = sheets.getSheetAt(0);
 
         List<String[]> result = new ArrayList<>();
-        CellRangeReader reader = new CellRangeReader(sheet, range, false);
+        CellRangeReader reader = new CellRangeReader(sheet, range, FormulaMode.FORMULA);
         while (reader.hasNext()) {
             result.add(reader.next());
         }
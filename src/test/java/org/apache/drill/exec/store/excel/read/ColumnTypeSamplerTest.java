@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.drill.common.types.TypeProtos.MinorType;
+import org.apache.drill.exec.store.excel.config.FormulaMode;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class ColumnTypeSamplerTest {
+
+    private static final File TEST3 = new File("src/test/resources/test3.xlsx");
+    //Первая строка - заголовки
+    private static final CellRange DATA = new CellRange(1, 5, 0, 5);
+
+    @Test
+    public void testStreamedSheet() throws Exception {
+        try (XlsxWorkbook wb = XlsxWorkbook.open(TEST3);
+             StreamingRangeReader reader = new StreamingRangeReader(wb.openSheet(wb.getSheet("Jan")), DATA)) {
+            Assert.assertArrayEquals(new MinorType[]{
+                    MinorType.FLOAT8,
+                    MinorType.VARCHAR,
+                    MinorType.FLOAT8,
+                    MinorType.BIT,
+                    MinorType.TIMESTAMP,
+                    MinorType.VARCHAR
+            }, ColumnTypeSampler.sample(reader, 6, 100));
+        }
+    }
+
+    @Test
+    public void testEvaluatedFormulas() throws Exception {
+        try (XSSFWorkbook wb = new XSSFWorkbook(OPCPackage.open(TEST3, PackageAccess.READ))) {
+            CellRangeReader reader = new CellRangeReader(wb.getSheet("Jan"), DATA, FormulaMode.EVALUATE);
+            MinorType[] types = ColumnTypeSampler.sample(reader, 6, 100);
+            Assert.assertEquals(MinorType.TIMESTAMP, types[4]);
+            Assert.assertEquals(MinorType.FLOAT8, types[5]);
+        }
+    }
+
+    @Test
+    public void testSampleSize() throws Exception {
+        try (XlsxWorkbook wb = XlsxWorkbook.open(TEST3);
+             StreamingRangeReader reader = new StreamingRangeReader(wb.openSheet(wb.getSheet("Jan")), DATA)) {
+            //Строк нет - тип не определить
+            Assert.assertEquals(MinorType.VARCHAR, ColumnTypeSampler.sample(reader, 6, 0)[0]);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class ColumnWriterTest {
+
+    @Test
+    public void testEncodeUtf8() {
+        String[] values = {"", "plain", "Привет", "日本語", "€ 1", "emoji 😀", "lone \uD800 high", "lone \uDC00", "end \uD83D"};
+        byte[] buffer = new byte[64];
+        for (String value : values) {
+            int length = ColumnWriter.encodeUtf8(new StringBuilder(value), buffer);
+            Assert.assertArrayEquals(value, value.getBytes(StandardCharsets.UTF_8), Arrays.copyOf(buffer, length));
+        }
+    }
+}
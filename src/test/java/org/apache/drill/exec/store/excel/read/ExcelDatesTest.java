@@ -0,0 +1,45 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExcelDatesTest {
+
+    @Test
+    public void testSameAsDateUtil() {
+        double[] values = {0, 0.5, 1, 59, 59.999, 60, 60.25, 61, 61.0000001, 25569, 43831.123456, 2958465.99999};
+        for (double value : values) {
+            Assert.assertEquals(String.valueOf(value),
+                    DateUtil.getJavaCalendarUTC(value, false).getTimeInMillis(),
+                    ExcelDates.toTimestamp(value, false));
+            Assert.assertEquals(String.valueOf(value),
+                    DateUtil.getJavaCalendarUTC(value, true).getTimeInMillis(),
+                    ExcelDates.toTimestamp(value, true));
+        }
+    }
+
+    @Test
+    public void testEpoch() {
+        //1970-01-01 - день 25569 в системе 1900
+        Assert.assertEquals(0, ExcelDates.toTimestamp(25569, false));
+        Assert.assertEquals(0, ExcelDates.toTimestamp(25569 - 1462, true));
+    }
+}
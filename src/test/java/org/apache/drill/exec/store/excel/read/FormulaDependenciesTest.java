@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.drill.exec.store.dfs.DrillFileSystem;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipFile;
+
+public class FormulaDependenciesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSheetClosure() throws Exception {
+        File file = writeWorkbook("'Data 1'!A1*2", "Rates*10");
+        Assert.assertEquals("[Data 1, Lookup, Rates, Summary]", findSheets(file, "Summary"));
+        Assert.assertEquals("[Lookup]", findSheets(file, "Lookup"));
+        Assert.assertEquals("[Data 1, Lookup, Rates, Summary, Unused]", findSheets(file, "Unused"));
+    }
+
+    @Test
+    public void testSheetSpan() throws Exception {
+        File file = writeWorkbook("SUM(Lookup:Rates!A1)", "1");
+        //Data 1 стоит перед Lookup и в диапазон не входит
+        Assert.assertEquals("[Lookup, Rates, Summary]", findSheets(file, "Summary"));
+    }
+
+    @Test
+    public void testIndirectNeedsAllSheets() throws Exception {
+        File file = writeWorkbook("INDIRECT(\"Lookup!A1\")", "1");
+        Assert.assertEquals("null", findSheets(file, "Summary"));
+    }
+
+    @Test
+    public void testEvaluationFile() throws Exception {
+        File file = writeWorkbook("'Data 1'!A1*2", "Rates*10");
+        DrillFileSystem fs = new DrillFileSystem(new Configuration());
+        try (WorkbookSource source = new WorkbookSource(fs, new Path(file.getAbsolutePath()), null)) {
+            File subset = source.getEvaluationFile("Summary");
+            try (XSSFWorkbook wb = new XSSFWorkbook(OPCPackage.open(subset, PackageAccess.READ))) {
+                Assert.assertEquals(5, wb.getNumberOfSheets());
+                Assert.assertEquals(0, wb.getSheet("Unused").getPhysicalNumberOfRows());
+
+                FormulaEvaluator evaluator = wb.getCreationHelper().createFormulaEvaluator();
+                XSSFSheet summary = wb.getSheet("Summary");
+                Assert.assertEquals(12, evaluator.evaluate(summary.getRow(0).getCell(0)).getNumberValue(), 0);
+                Assert.assertEquals(1, evaluator.evaluate(summary.getRow(0).getCell(1)).getNumberValue(), 1E-9);
+            }
+        }
+    }
+
+    /**
+     * Summary -> Data 1 -> Lookup, Summary -> Rates by the defined name, Unused -> Summary.
+     */
+    private File writeWorkbook(String summaryA1, String summaryB1) throws IOException {
+        File file = folder.newFile();
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            XSSFSheet summary = wb.createSheet("Summary");
+            XSSFSheet data = wb.createSheet("Data 1");
+            XSSFSheet lookup = wb.createSheet("Lookup");
+            XSSFSheet rates = wb.createSheet("Rates");
+            XSSFSheet unused = wb.createSheet("Unused");
+
+            lookup.createRow(0).createCell(0).setCellValue(5);
+            rates.createRow(0).createCell(0).setCellValue(0.1);
+            data.createRow(0).createCell(0).setCellFormula("Lookup!A1+1");
+            unused.createRow(0).createCell(0).setCellFormula("Summary!A1");
+            Name name = wb.createName();
+            name.setNameName("Rates");
+            name.setRefersToFormula("Rates!$A$1");
+
+            summary.createRow(0).createCell(0).setCellFormula(summaryA1);
+            summary.getRow(0).createCell(1).setCellFormula(summaryB1);
+            try (FileOutputStream os = new FileOutputStream(file)) {
+                wb.write(os);
+            }
+        }
+        return file;
+    }
+
+    private static String findSheets(File file, String worksheet) throws IOException {
+        try (ZipFile zip = new ZipFile(file)) {
+            OoxmlWorkbookIndex.PartOpener opener = name -> zip.getEntry(name) == null ? null : zip.getInputStream(zip.getEntry(name));
+            OoxmlWorkbookIndex index = OoxmlWorkbookIndex.read(opener);
+            Set<OoxmlWorkbookIndex.SheetPart> sheets = FormulaDependencies.find(index, opener, index.findSheet(worksheet));
+            if (sheets == null) {
+                return "null";
+            }
+            Set<String> names = new TreeSet<>();
+            sheets.forEach(sheet -> names.add(sheet.getName()));
+            return names.toString();
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PrefetchingRowReaderTest {
+
+    private static final int ROWS = PrefetchingRowReader.BLOCK_ROWS * PrefetchingRowReader.BLOCK_COUNT * 3 + 7;
+    private static final ParsingExecutors EXECUTORS = new ParsingExecutors(4, 4);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRowsMatchWrappedReader() throws Exception {
+        List<String> rows = new ArrayList<>();
+        Collector collector = new Collector(rows);
+        try (PrefetchingRowReader reader = new PrefetchingRowReader(new GeneratedRows(ROWS, -1), collector, 3, ROWS, EXECUTORS)) {
+            while (reader.hasNext()) {
+                reader.readRow(collector);
+            }
+        }
+
+        Assert.assertEquals(ROWS, rows.size());
+        //Колонка 1 не нужна потребителю и не передается
+        Assert.assertEquals("0:text 0|2:0.0|", rows.get(0));
+        Assert.assertEquals("2:1.0|", rows.get(1));
+        Assert.assertEquals("0:text " + (ROWS - 1) + "|2:" + (ROWS - 1) + ".0|", rows.get(ROWS - 1));
+    }
+
+    @Test
+    public void testMaxRows() throws Exception {
+        GeneratedRows delegate = new GeneratedRows(ROWS, -1);
+        Collector collector = new Collector(new ArrayList<>());
+        int count = 0;
+        try (PrefetchingRowReader reader = new PrefetchingRowReader(delegate, collector, 3, 10, EXECUTORS)) {
+            while (reader.hasNext()) {
+                reader.readRow(collector);
+                count++;
+            }
+        }
+        Assert.assertEquals(10, count);
+        Assert.assertEquals(10, delegate.read.get());
+    }
+
+    @Test
+    public void testParserFailure() throws Exception {
+        Collector collector = new Collector(new ArrayList<>());
+        try (PrefetchingRowReader reader = new PrefetchingRowReader(new GeneratedRows(ROWS, 300), collector, 3, ROWS, EXECUTORS)) {
+            int count = 0;
+            try {
+                while (reader.hasNext()) {
+                    reader.readRow(collector);
+                    count++;
+                }
+                Assert.fail();
+            } catch (CellRangeReaderException e) {
+                Assert.assertTrue(e.getMessage().endsWith("broken row 300"));
+                Assert.assertEquals(300, count);
+            }
+        }
+    }
+
+    @Test
+    public void testCloseStopsParser() throws Exception {
+        GeneratedRows delegate = new GeneratedRows(ROWS, -1);
+        Collector collector = new Collector(new ArrayList<>());
+        PrefetchingRowReader reader = new PrefetchingRowReader(delegate, collector, 3, ROWS, EXECUTORS);
+        Assert.assertTrue(reader.hasNext());
+        reader.readRow(collector);
+        reader.close();
+
+        Assert.assertTrue(delegate.closed);
+        //Парсер остановлен: прочитано не больше, чем помещается в блоки
+        int read = delegate.read.get();
+        Assert.assertTrue(read <= PrefetchingRowReader.BLOCK_ROWS * (PrefetchingRowReader.BLOCK_COUNT + 1));
+        Thread.sleep(50);
+        Assert.assertEquals(read, delegate.read.get());
+    }
+
+    @Test
+    public void testSaturatedParsersReadOnCallerThread() throws Exception {
+        ParsingExecutors executors = new ParsingExecutors(1, 1);
+        Collector collector = new Collector(new ArrayList<>());
+        //Единственный поток парсера ждет, пока первый ридер освободит блоки
+        try (PrefetchingRowReader busy = new PrefetchingRowReader(new GeneratedRows(ROWS, -1), collector, 3, ROWS, executors)) {
+            Assert.assertTrue(busy.hasNext());
+
+            GeneratedRows delegate = new GeneratedRows(ROWS, -1);
+            List<String> rows = new ArrayList<>();
+            Collector direct = new Collector(rows);
+            try (PrefetchingRowReader reader = new PrefetchingRowReader(delegate, direct, 3, 10, executors)) {
+                while (reader.hasNext()) {
+                    reader.readRow(direct);
+                }
+            }
+
+            Assert.assertEquals(10, rows.size());
+            Assert.assertEquals("0:text 0|2:0.0|", rows.get(0));
+            Assert.assertEquals(10, delegate.read.get());
+            Assert.assertTrue(delegate.closed);
+        }
+    }
+
+    @Test
+    public void testWideSheetFormatting() throws Exception {
+        int width = PrefetchingRowReader.MIN_COLUMNS_PER_PARTITION * 4;
+        File file = folder.newFile("wide.xlsx");
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            String[] formats = {"General", "0.00", "#,##0", "yyyy-mm-dd", "0.0%"};
+            CellStyle[] styles = new CellStyle[formats.length];
+            for (int i = 0; i < formats.length; i++) {
+                styles[i] = wb.createCellStyle();
+                styles[i].setDataFormat(wb.createDataFormat().getFormat(formats[i]));
+            }
+            Sheet sheet = wb.createSheet("wide");
+            for (int i = 0; i < 300; i++) {
+                Row row = sheet.createRow(i);
+                for (int j = 0; j < width; j++) {
+                    if ((i + j) % 11 == 0) {
+                        row.createCell(j).setCellValue("text " + i);
+                    } else if ((i + j) % 13 != 0) {
+                        row.createCell(j).setCellValue(i * 1000.5 + j / 3.0);
+                        row.getCell(j).setCellStyle(styles[(i + j) % styles.length]);
+                    }
+                }
+            }
+            try (FileOutputStream os = new FileOutputStream(file)) {
+                wb.write(os);
+            }
+        }
+
+        CellRange range = new CellRange(0, 299, 0, width - 1);
+        List<String> expected = new ArrayList<>();
+        List<String> actual = new ArrayList<>();
+        try (XlsxWorkbook wb = XlsxWorkbook.open(file)) {
+            OoxmlWorkbookIndex.SheetPart sheet = wb.getSheet("wide");
+            try (StreamingRangeReader reader = new StreamingRangeReader(wb.openSheet(sheet), range)) {
+                TextRows rows = new TextRows(expected);
+                while (reader.hasNext()) {
+                    reader.readRow(rows);
+                    rows.endRow();
+                }
+            }
+
+            SheetParser parser = wb.openSheet(sheet);
+            TextRows rows = new TextRows(actual);
+            try (PrefetchingRowReader reader = new PrefetchingRowReader(new StreamingRangeReader(parser, range),
+                    rows, width, Long.MAX_VALUE, EXECUTORS, parser.getStyles(), parser.isDate1904())) {
+                while (reader.hasNext()) {
+                    reader.readRow(rows);
+                    rows.endRow();
+                }
+            }
+        }
+
+        Assert.assertEquals(300, expected.size());
+        Assert.assertEquals(expected, actual);
+    }
+
+    /**
+     * Row i has a text cell in column 0, a text cell in column 1 and a number in column 2, only odd rows miss text.
+     */
+    private static class GeneratedRows implements RowReader {
+        private final int count;
+        private final int brokenRow;
+        private final AtomicInteger read = new AtomicInteger();
+        private volatile boolean closed;
+
+        GeneratedRows(int count, int brokenRow) {
+            this.count = count;
+            this.brokenRow = brokenRow;
+        }
+
+        @Override
+        public boolean hasNext() {
+            Assert.assertFalse(closed);
+            return read.get() < count;
+        }
+
+        @Override
+        public void readRow(CellValueConsumer consumer) {
+            int row = read.get();
+            if (row == brokenRow) {
+                throw new CellRangeReaderException("broken row " + row);
+            }
+            TypedCellConsumer typed = (TypedCellConsumer) consumer;
+            if (row % 2 == 0) {
+                for (int column = 0; column < 2; column++) {
+                    if (typed.isRequired(column)) {
+                        typed.acceptText(column, new StringBuilder("text ").append(row));
+                    }
+                }
+            }
+            if (typed.isRequired(2) && typed.isTyped(2)) {
+                typed.acceptNumber(2, row);
+            }
+            read.incrementAndGet();
+        }
+
+        @Override
+        public void skipTo(int row) {
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static class TextRows implements RowReader.CellValueConsumer {
+        private final List<String> rows;
+        private final StringBuilder row = new StringBuilder();
+
+        TextRows(List<String> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public void accept(int column, String value) {
+            row.append(column).append(':').append(value).append('|');
+        }
+
+        void endRow() {
+            rows.add(row.toString());
+            row.setLength(0);
+        }
+    }
+
+    private static class Collector implements RowReader.TypedCellConsumer {
+        private final List<String> rows;
+        private final StringBuilder row = new StringBuilder();
+
+        Collector(List<String> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean isRequired(int column) {
+            return column != 1;
+        }
+
+        @Override
+        public boolean isTyped(int column) {
+            return column == 2;
+        }
+
+        @Override
+        public void accept(int column, String value) {
+            row.append(column).append(':').append(value).append('|');
+        }
+
+        @Override
+        public void acceptNumber(int column, double value) {
+            accept(column, String.valueOf(value));
+            //Числовая колонка последняя в строке
+            rows.add(row.toString());
+            row.setLength(0);
+        }
+
+        @Override
+        public void acceptDate(int column, long timestamp) {
+            accept(column, String.valueOf(timestamp));
+        }
+
+        @Override
+        public void acceptBoolean(int column, boolean value) {
+            accept(column, String.valueOf(value));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import com.monitorjbl.xlsx.StreamingReader;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+public class RemoteZipFileTest {
+
+    private static final String FILE_NAME = "src/test/resources/test3.xlsx";
+    private static final byte[] EMPTY_SHEET = "<worksheet><sheetData/></worksheet>".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testWorkbookIndex() throws IOException {
+        try (RemoteZipFile zip = open(FILE_NAME)) {
+            OoxmlWorkbookIndex index = OoxmlWorkbookIndex.read(zip::openEntry);
+            Assert.assertEquals("xl/workbook.xml", index.getWorkbookPart());
+            Assert.assertEquals("xl/sharedStrings.xml", index.getSharedStringsPart());
+            Assert.assertEquals("xl/styles.xml", index.getStylesPart());
+            Assert.assertEquals(3, index.getSheets().size());
+            Assert.assertEquals("Jan", index.findSheet(null).getName());
+            Assert.assertEquals("xl/worksheets/sheet2.xml", index.findSheet("feb").getPartName());
+            Assert.assertNull(index.findSheet("Apr"));
+        }
+    }
+
+    @Test
+    public void testWriteSubset() throws IOException {
+        File target = File.createTempFile("excel", ".tmp");
+        try (RemoteZipFile zip = open(FILE_NAME)) {
+            OoxmlWorkbookIndex index = OoxmlWorkbookIndex.read(zip::openEntry);
+            OoxmlWorkbookIndex.SheetPart sheet = index.findSheet("Feb");
+
+            Map<String, byte[]> stubs = new HashMap<>();
+            stubs.put("xl/worksheets/sheet1.xml", EMPTY_SHEET);
+            stubs.put("xl/worksheets/sheet3.xml", EMPTY_SHEET);
+            zip.writeSubset(target, index.getRequiredParts(sheet), stubs);
+            Assert.assertTrue(target.length() < zip.getLength());
+
+            try (Workbook wb = StreamingReader.builder().open(target)) {
+                Assert.assertEquals(3, wb.getNumberOfSheets());
+                Assert.assertFalse(wb.getSheet("Jan").rowIterator().hasNext());
+
+                Iterator<Row> rows = wb.getSheet("Feb").rowIterator();
+                Assert.assertEquals("id", rows.next().getCell(0).getStringCellValue());
+                Assert.assertEquals("Feb item 1", rows.next().getCell(1).getStringCellValue());
+            }
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            target.delete();
+        }
+    }
+
+    private RemoteZipFile open(String fileName) throws IOException {
+        FileSystem fs = FileSystem.getLocal(new Configuration());
+        Path path = new Path(new File(fileName).getAbsolutePath());
+        return new RemoteZipFile(fs.open(path), fs.getFileStatus(path).getLen());
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SharedStringsTest {
+
+    private static final String[] STRINGS = {"plain", "", "Привет", "emoji 😀", "bold and plain", "ルビ"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOffHeapSameAsHeap() throws Exception {
+        SharedStrings heap = SharedStrings.read(new ByteArrayInputStream(sst()));
+        SharedStrings mapped = SharedStrings.read(new ByteArrayInputStream(sst()), this::createTempFile);
+        Assert.assertTrue(mapped instanceof MappedSharedStrings);
+        Assert.assertEquals(STRINGS.length, heap.size());
+        Assert.assertEquals(heap.size(), mapped.size());
+
+        for (int i = 0; i < STRINGS.length; i++) {
+            Assert.assertEquals(STRINGS[i], heap.get(i));
+            Assert.assertEquals(STRINGS[i], mapped.get(i));
+
+            byte[] expected = STRINGS[i].getBytes(StandardCharsets.UTF_8);
+            byte[] bytes = new byte[expected.length];
+            ((MappedSharedStrings) mapped).copy(i, bytes);
+            Assert.assertArrayEquals(expected, bytes);
+        }
+    }
+
+    @Test
+    public void testMappedFilesInDirectory() throws Exception {
+        List<File> files = new ArrayList<>();
+        SharedStrings mapped = SharedStrings.read(new ByteArrayInputStream(sst()), prefix -> {
+            File file = createTempFile(prefix);
+            files.add(file);
+            return file;
+        });
+        Assert.assertEquals(2, files.size());
+        for (File file : files) {
+            Assert.assertEquals(folder.getRoot(), file.getParentFile());
+            //Файлы удаляются сразу после отображения
+            Assert.assertFalse(file.exists());
+        }
+        Assert.assertEquals(STRINGS[2], mapped.get(2));
+
+        mapped.close();
+        try {
+            mapped.get(2);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            //Отображения освобождены
+        }
+        mapped.close();
+    }
+
+    @Test
+    public void testUtf8Cells() throws Exception {
+        StringBuilder xml = new StringBuilder("<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+                + "<sheetData>");
+        for (int i = 0; i < STRINGS.length; i++) {
+            xml.append("<row r=\"").append(i + 1).append("\"><c r=\"A").append(i + 1).append("\" t=\"s\"><v>")
+                    .append(STRINGS.length - 1 - i).append("</v></c></row>");
+        }
+        xml.append("</sheetData></worksheet>");
+        SharedStrings mapped = SharedStrings.read(new ByteArrayInputStream(sst()), this::createTempFile);
+
+        List<String> values = new ArrayList<>();
+        RowReader.CellValueConsumer consumer = new RowReader.CellValueConsumer() {
+            @Override
+            public boolean isUtf8Accepted(int column) {
+                return true;
+            }
+
+            @Override
+            public void accept(int column, String value) {
+                Assert.fail("Shared strings are passed as bytes");
+            }
+
+            @Override
+            public void acceptUtf8(int column, byte[] bytes, int length) {
+                values.add(new String(bytes, 0, length, StandardCharsets.UTF_8));
+            }
+        };
+        try (StreamingRangeReader reader = new StreamingRangeReader(new XlsxSheetParser(
+                new ByteArrayInputStream(xml.toString().getBytes(StandardCharsets.UTF_8)),
+                mapped, StyleFormats.EMPTY, false, false), new CellRange(0, STRINGS.length - 1, 0, 0))) {
+            while (reader.hasNext()) {
+                reader.readRow(consumer);
+            }
+        }
+
+        Assert.assertEquals(STRINGS.length, values.size());
+        for (int i = 0; i < STRINGS.length; i++) {
+            Assert.assertEquals(STRINGS[STRINGS.length - 1 - i], values.get(i));
+        }
+    }
+
+    private File createTempFile(String prefix) throws IOException {
+        return File.createTempFile(prefix, ".tmp", folder.getRoot());
+    }
+
+    /**
+     * Table with a rich text string and a phonetic hint, which is not part of the value.
+     */
+    private static byte[] sst() {
+        StringBuilder xml = new StringBuilder("<sst xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\""
+                + " uniqueCount=\"" + STRINGS.length + "\">");
+        for (String s : STRINGS) {
+            if (s.startsWith("bold")) {
+                xml.append("<si><r><rPr><b/></rPr><t>bold</t></r><r><t xml:space=\"preserve\"> and plain</t></r></si>");
+            } else if (s.equals("ルビ")) {
+                xml.append("<si><t>ルビ</t><rPh sb=\"0\" eb=\"2\"><t>るび</t></rPh></si>");
+            } else {
+                xml.append("<si><t>").append(s).append("</t></si>");
+            }
+        }
+        xml.append("</sst>");
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class SheetDimensionReaderTest {
+
+    @Test
+    public void test1() throws IOException {
+        CellRange range = SheetDimensionReader.read(new File("src/test/resources/test1.xlsx"), null);
+        Assert.assertNotNull(range);
+        Assert.assertEquals(0, range.getRowStart());
+        Assert.assertEquals(6, range.getRowEnd());
+        Assert.assertEquals(0, range.getColStart());
+        Assert.assertEquals(2, range.getColEnd());
+    }
+
+    @Test
+    public void testNamedSheet() throws IOException {
+        CellRange range = SheetDimensionReader.read(new File("src/test/resources/test3.xlsx"), "Mar");
+        Assert.assertNotNull(range);
+        Assert.assertEquals(5, range.getRowEnd());
+        Assert.assertEquals(5, range.getColEnd());
+        Assert.assertNull(SheetDimensionReader.read(new File("src/test/resources/test3.xlsx"), "Apr"));
+    }
+
+    @Test
+    public void testSingleCellDimension() throws IOException {
+        Assert.assertNull(read("<worksheet><dimension ref=\"A1\"/><sheetData/></worksheet>"));
+        Assert.assertNull(read("<worksheet><sheetData><row r=\"1\"/></sheetData></worksheet>"));
+    }
+
+    private CellRange read(String xml) throws IOException {
+        return SheetDimensionReader.read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+}
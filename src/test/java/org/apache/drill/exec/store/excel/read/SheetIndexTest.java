@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+public class SheetIndexTest {
+
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+            + "<dimension ref=\"A1:B200000\"/><sheetData>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDecoderSameAsInflater() throws Exception {
+        byte[] xml = sheetXml(30_000);
+        for (int level : new int[]{Deflater.NO_COMPRESSION, Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION,
+                Deflater.BEST_COMPRESSION}) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            new DeflateDecoder(new ByteArrayInputStream(deflate(xml, level)), new DeflateDecoder.Listener() {
+                @Override
+                public void blockStart(long bitOffset, long outOffset) {
+                    Assert.assertEquals(output.size(), outOffset);
+                }
+
+                @Override
+                public void output(byte[] buffer, int offset, int length) {
+                    output.write(buffer, offset, length);
+                }
+            }).decode();
+            Assert.assertArrayEquals("Level " + level, xml, output.toByteArray());
+        }
+    }
+
+    @Test
+    public void testResumeAtEveryCheckpoint() throws Exception {
+        String xml = new String(sheetXml(30_000), StandardCharsets.UTF_8);
+        byte[] deflated = deflate(xml.getBytes(StandardCharsets.UTF_8), Deflater.DEFAULT_COMPRESSION);
+        SheetIndex built = SheetIndex.build(new ByteArrayInputStream(deflated), 16 * 1024);
+
+        File file = folder.newFile();
+        built.write(file);
+        SheetIndex index = SheetIndex.read(file);
+        Assert.assertEquals(built.getCheckpoints().size(), index.getCheckpoints().size());
+        Assert.assertTrue(index.getCheckpoints().size() > 10);
+
+        BitSet residues = new BitSet();
+        for (SheetIndex.Checkpoint checkpoint : index.getCheckpoints()) {
+            residues.set((int) (checkpoint.getBitOffset() & 7));
+            int row = checkpoint.getRow();
+            Assert.assertEquals(row, index.floorRow(row));
+
+            String expected = HEADER + xml.substring(xml.lastIndexOf("<row", xml.indexOf("<c r=\"A" + (row + 1) + "\"")));
+            try (InputStream is = index.open(row + 1, offset -> source(deflated, offset))) {
+                Assert.assertEquals("Row " + (row + 1), expected, IOUtils.toString(is, StandardCharsets.UTF_8));
+            }
+        }
+        //Сдвиги блоков внутри байта должны встретиться разные
+        Assert.assertTrue(residues.cardinality() > 1);
+        Assert.assertEquals(-1, index.floorRow(index.getCheckpoints().get(0).getRow() - 1));
+    }
+
+    @Test
+    public void testPrefixAtEveryBit() throws Exception {
+        for (int bit = 0; bit < 8; bit++) {
+            byte[] xml = sheetXml(100);
+            //Сжатые данные, сдвинутые на bit бит: перед ними bit нулевых битов
+            byte[] deflated = deflate(xml, Deflater.DEFAULT_COMPRESSION);
+            byte[] shifted = new byte[deflated.length + 1];
+            for (int i = 0; i < deflated.length; i++) {
+                int b = deflated[i] & 0xFF;
+                shifted[i] |= (byte) (b << bit);
+                shifted[i + 1] |= (byte) (b >>> (8 - bit));
+            }
+
+            InputStream data = new ByteArrayInputStream(shifted);
+            byte[] prefix = SheetIndex.prefix(bit, data);
+            Inflater inflater = new Inflater(true);
+            try (InputStream is = new InflaterInputStream(new SequenceInputStream(
+                    new ByteArrayInputStream(prefix), data), inflater)) {
+                Assert.assertArrayEquals("Bit " + bit, xml, IOUtils.toByteArray(is));
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    @Test
+    public void testSeekSameAsSequentialRead() throws Exception {
+        int rows = 3 * XlsxSheetParser.MIN_SEEK_ROWS;
+        byte[] deflated = deflate(sheetXml(rows), Deflater.DEFAULT_COMPRESSION);
+        SheetIndex index = SheetIndex.build(new ByteArrayInputStream(deflated), SheetIndex.DEFAULT_SPAN);
+        AtomicInteger opened = new AtomicInteger();
+        XlsxSheetParser.RowSeeker seeker = new XlsxSheetParser.RowSeeker() {
+            @Override
+            public int floorRow(int row) {
+                return index.floorRow(row);
+            }
+
+            @Override
+            public InputStream open(int indexedRow) throws IOException {
+                opened.incrementAndGet();
+                return index.open(indexedRow, offset -> source(deflated, offset));
+            }
+        };
+
+        CellRange range = new CellRange(rows - 1000, rows + 10, 0, 1);
+        List<String> expected = readRange(new XlsxSheetParser(inflated(deflated),
+                SharedStrings.EMPTY, StyleFormats.EMPTY, false, false), range);
+        List<String> actual = readRange(new XlsxSheetParser(inflated(deflated),
+                SharedStrings.EMPTY, StyleFormats.EMPTY, false, false, seeker), range);
+        Assert.assertEquals(1011 * 2, expected.size());
+        Assert.assertEquals("row" + (rows - 999), expected.get(1));
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals(1, opened.get());
+    }
+
+    private static List<String> readRange(SheetParser parser, CellRange range) throws IOException {
+        List<String> values = new ArrayList<>();
+        try (StreamingRangeReader reader = new StreamingRangeReader(parser, range)) {
+            RowReader.CellValueConsumer consumer = (column, value) -> values.add(value);
+            while (reader.hasNext()) {
+                int size = values.size();
+                reader.readRow(consumer);
+                if (values.size() == size) {
+                    values.add(null);
+                    values.add(null);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Sheet with a number and an inline string in each row, every tenth row has no {@code r} attribute.
+     */
+    private static byte[] sheetXml(int rows) {
+        StringBuilder xml = new StringBuilder(HEADER);
+        for (int i = 1; i <= rows; i++) {
+            xml.append(i % 10 == 0 ? "<row>" : "<row r=\"" + i + "\">")
+                    .append("<c r=\"A").append(i).append("\"><v>").append(i * 2654435761L % 1000000007).append("</v></c>")
+                    .append("<c r=\"B").append(i).append("\" t=\"inlineStr\"><is><t>row").append(i)
+                    .append("</t></is></c></row>");
+        }
+        xml.append("</sheetData></worksheet>");
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] deflate(byte[] data, int level) throws IOException {
+        Deflater deflater = new Deflater(level, true);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DeflaterOutputStream os = new DeflaterOutputStream(bytes, deflater)) {
+            os.write(data);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static InputStream source(byte[] deflated, long offset) {
+        //Как RemoteZipFile, добавляем нулевой байт в конце
+        byte[] padded = new byte[deflated.length + 1];
+        System.arraycopy(deflated, 0, padded, 0, deflated.length);
+        return new ByteArrayInputStream(padded, (int) offset, padded.length - (int) offset);
+    }
+
+    private static InputStream inflated(byte[] deflated) {
+        return new InflaterInputStream(source(deflated, 0), new Inflater(true));
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class WorkbookFilesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDirectory() throws Exception {
+        createFiles();
+        Assert.assertEquals(Arrays.asList("a.xlsx", "b.XLS", "d.xlsb", "c.xlsx"), list(folder.getRoot().getPath()));
+    }
+
+    @Test
+    public void testGlob() throws Exception {
+        createFiles();
+        Assert.assertEquals(Arrays.asList("a.xlsx"), list(folder.getRoot().getPath() + "/*.xlsx"));
+    }
+
+    @Test
+    public void testExplicitFile() throws Exception {
+        createFiles();
+        Assert.assertEquals(Arrays.asList("notes.txt"), list(folder.getRoot().getPath() + "/notes.txt"));
+        Assert.assertEquals(new ArrayList<String>(), list(folder.getRoot().getPath() + "/missing.xlsx"));
+    }
+
+    private void createFiles() throws Exception {
+        folder.newFile("a.xlsx");
+        folder.newFile("b.XLS");
+        folder.newFile("d.xlsb");
+        folder.newFile("~$a.xlsx");
+        folder.newFile(".hidden.xlsx");
+        folder.newFile("notes.txt");
+        File sub = folder.newFolder("sub");
+        Assert.assertTrue(new File(sub, "c.xlsx").createNewFile());
+    }
+
+    private static List<String> list(String location) throws Exception {
+        List<String> names = new ArrayList<>();
+        for (FileStatus status : WorkbookFiles.list(FileSystem.getLocal(new Configuration()), new Path(location))) {
+            names.add(status.getPath().getName());
+        }
+        return names;
+    }
+}
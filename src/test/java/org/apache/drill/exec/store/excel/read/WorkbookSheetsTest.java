@@ -0,0 +1,48 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.drill.exec.store.dfs.DrillFileSystem;
+import org.apache.drill.exec.store.excel.cache.SheetStatistics;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class WorkbookSheetsTest {
+
+    @Test
+    public void testListOoxml() throws Exception {
+        DrillFileSystem fs = new DrillFileSystem(new Configuration());
+        Path location = new Path(new File("src/test/resources/test3.xlsx").getAbsolutePath());
+        Assert.assertEquals(Arrays.asList("Jan", "Feb", "Mar"), WorkbookSheets.list(fs, location));
+    }
+
+    @Test
+    public void testReadStatistics() throws Exception {
+        DrillFileSystem fs = new DrillFileSystem(new Configuration());
+        Path location = new Path(new File("src/test/resources/test2.xlsx").getAbsolutePath());
+        SheetStatistics sheet = WorkbookSheets.readStatistics(fs, fs.getFileStatus(location), null);
+        Assert.assertTrue(sheet.hasDimension());
+        Assert.assertEquals(79, sheet.estimateRowCount(null, false, true));
+        Assert.assertEquals(7, sheet.estimateColumnCount(null));
+    }
+}
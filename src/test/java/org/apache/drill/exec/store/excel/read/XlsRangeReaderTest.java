@@ -0,0 +1,220 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.drill.exec.store.excel.config.FormulaMode;
+import org.apache.poi.hssf.record.crypto.Biff8EncryptionKey;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class XlsRangeReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameAsCellRangeReader() throws Exception {
+        File file = writeWorkbook(null);
+        for (FormulaMode mode : new FormulaMode[]{FormulaMode.FORMULA, FormulaMode.CACHED}) {
+            assertSameRows(file, null, mode);
+            assertSameRows(file, "data", mode);
+        }
+    }
+
+    @Test
+    public void testEncryptedWorkbook() throws Exception {
+        File file = writeWorkbook("secret");
+        Biff8EncryptionKey.setCurrentUserPassword("secret");
+        try {
+            assertSameRows(file, "data", FormulaMode.CACHED);
+        } finally {
+            Biff8EncryptionKey.setCurrentUserPassword(null);
+        }
+    }
+
+    @Test
+    public void testTypedValues() throws Exception {
+        File file = writeWorkbook(null);
+        CellRange range = new CellRange(1, 1, 0, 8);
+        List<Object> expected = new ArrayList<>();
+        try (HSSFWorkbook wb = new HSSFWorkbook(new POIFSFileSystem(file, true))) {
+            new CellRangeReader(wb.getSheet("data"), range, FormulaMode.EVALUATE).readRow(new TypedCollector(expected));
+        }
+
+        List<Object> actual = new ArrayList<>();
+        try (XlsWorkbook wb = XlsWorkbook.open(file);
+             StreamingRangeReader reader = new StreamingRangeReader(wb.openSheet(wb.getSheet("data"), true), range)) {
+            reader.readRow(new TypedCollector(actual));
+        }
+
+        Assert.assertEquals(Arrays.asList(0, 42.0, 1, "text", 2, 1451606400000L, 3, true, 5, "#DIV/0!", 6, 84.0,
+                7, "textx", 8, 42.0), expected);
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testDimension() throws Exception {
+        File file = writeWorkbook(null);
+        try (XlsWorkbook wb = XlsWorkbook.open(file);
+             XlsSheetParser parser = wb.openSheet(wb.getSheet("data"))) {
+            CellRange dimension = parser.getDimension();
+            Assert.assertEquals(0, dimension.getRowStart());
+            Assert.assertEquals(6, dimension.getRowEnd());
+            Assert.assertEquals(0, dimension.getColStart());
+            Assert.assertEquals(8, dimension.getColEnd());
+        }
+    }
+
+    private File writeWorkbook(String password) throws Exception {
+        File file = folder.newFile();
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            Sheet first = wb.createSheet("first");
+            first.createRow(0).createCell(0).setCellValue(21);
+
+            CellStyle date = wb.createCellStyle();
+            date.setDataFormat(wb.createDataFormat().getFormat("yyyy-mm-dd"));
+            CellStyle decimal = wb.createCellStyle();
+            decimal.setDataFormat(wb.createDataFormat().getFormat("0.000"));
+            Name name = wb.createName();
+            name.setNameName("Base");
+            name.setRefersToFormula("first!$A$1");
+
+            Sheet sheet = wb.createSheet("data");
+            Row header = sheet.createRow(0);
+            String[] names = {"number", "text", "date", "bool", "blank", "error", "ref", "concat", "named"};
+            for (int i = 0; i < names.length; i++) {
+                header.createCell(i).setCellValue(names[i]);
+            }
+            for (int r = 1; r <= 4; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue(r == 1 ? 42 : r * 1.125);
+                row.createCell(1).setCellValue("text");
+                row.createCell(2).setCellValue(42370 + r - 1);
+                row.getCell(2).setCellStyle(date);
+                row.createCell(3).setCellValue(r % 2 == 1);
+                row.createCell(4).setCellStyle(decimal);
+                row.createCell(5).setCellErrorValue(FormulaError.DIV0.getCode());
+                row.createCell(6).setCellFormula("A" + (r + 1) + "*2");
+                row.createCell(7).setCellFormula("B" + (r + 1) + "&\"x\"");
+                row.createCell(8).setCellFormula(r == 1 ? "Base*2" : "first!A1*" + r);
+            }
+            //Строка без ячеек, только со стилем
+            sheet.createRow(5).setRowStyle(decimal);
+            sheet.createRow(6).createCell(4).setCellValue(0.5);
+            sheet.getRow(6).getCell(4).setCellStyle(decimal);
+
+            wb.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            if (password != null) {
+                Biff8EncryptionKey.setCurrentUserPassword(password);
+            }
+            try (FileOutputStream os = new FileOutputStream(file)) {
+                wb.write(os);
+            } finally {
+                Biff8EncryptionKey.setCurrentUserPassword(null);
+            }
+        }
+        return file;
+    }
+
+    private void assertSameRows(File file, String worksheet, FormulaMode mode) throws Exception {
+        List<String> expected = new ArrayList<>();
+        CellRange expectedRange;
+        try (HSSFWorkbook wb = new HSSFWorkbook(new POIFSFileSystem(file, true))) {
+            Sheet sheet = worksheet == null ? wb.getSheetAt(0) : wb.getSheet(worksheet);
+            expectedRange = new SheetRangeDetector(sheet).detectRange();
+            //Формулы пересчитаны при записи, вычисленные значения совпадают с сохраненными
+            CellRangeReader reader = new CellRangeReader(sheet, expectedRange,
+                    mode == FormulaMode.CACHED ? FormulaMode.EVALUATE : mode);
+            while (reader.hasNext()) {
+                expected.add(Arrays.toString(reader.next()));
+            }
+        }
+
+        List<String> actual = new ArrayList<>();
+        try (XlsWorkbook wb = XlsWorkbook.open(file)) {
+            CellRange range = wb.getRangeDetector(wb.getSheet(worksheet)).detectRange();
+            Assert.assertEquals(expectedRange.getRowStart(), range.getRowStart());
+            Assert.assertEquals(expectedRange.getRowEnd(), range.getRowEnd());
+            Assert.assertEquals(expectedRange.getColStart(), range.getColStart());
+            Assert.assertEquals(expectedRange.getColEnd(), range.getColEnd());
+            try (StreamingRangeReader reader = new StreamingRangeReader(
+                    wb.openSheet(wb.getSheet(worksheet), mode == FormulaMode.CACHED), range)) {
+                while (reader.hasNext()) {
+                    String[] row = new String[range.getColEnd() - range.getColStart() + 1];
+                    reader.readRow((column, value) -> row[column] = value);
+                    actual.add(Arrays.toString(row));
+                }
+            }
+        }
+
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(mode.toString(), expected, actual);
+    }
+
+    private static class TypedCollector implements RowReader.TypedCellConsumer {
+        private final List<Object> values;
+
+        TypedCollector(List<Object> values) {
+            this.values = values;
+        }
+
+        @Override
+        public boolean isTyped(int column) {
+            return true;
+        }
+
+        @Override
+        public void accept(int column, String value) {
+            values.add(column);
+            values.add(value);
+        }
+
+        @Override
+        public void acceptNumber(int column, double value) {
+            values.add(column);
+            values.add(value);
+        }
+
+        @Override
+        public void acceptDate(int column, long timestamp) {
+            values.add(column);
+            values.add(timestamp);
+        }
+
+        @Override
+        public void acceptBoolean(int column, boolean value) {
+            values.add(column);
+            values.add(value);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class XlsbSheetParserTest {
+
+    private static final String RELS_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+    private static final String REL_TYPE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships/";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadRows() throws Exception {
+        File file = writeWorkbook();
+        List<String> rows = new ArrayList<>();
+        try (XlsxWorkbook wb = XlsxWorkbook.open(file)) {
+            OoxmlWorkbookIndex.SheetPart sheet = wb.getSheet("data");
+            Assert.assertTrue(sheet.isBinary());
+
+            CellRange range = wb.getRangeDetector(sheet).detectRange();
+            Assert.assertEquals(0, range.getRowStart());
+            Assert.assertEquals(3, range.getRowEnd());
+            Assert.assertEquals(0, range.getColStart());
+            Assert.assertEquals(5, range.getColEnd());
+
+            try (StreamingRangeReader reader = new StreamingRangeReader(wb.openSheet(sheet), range)) {
+                while (reader.hasNext()) {
+                    String[] row = new String[6];
+                    reader.readRow((column, value) -> row[column] = value);
+                    rows.add(Arrays.toString(row));
+                }
+            }
+        }
+
+        Assert.assertEquals(Arrays.asList(
+                "[name, value, null, null, null, null]",
+                "[Alice, 42, 3.14, 2019-01-01, TRUE, #DIV/0!]",
+                "[null, null, null, null, null, null]",
+                "[84, xy, , rich, 12.34, null]"), rows);
+    }
+
+    @Test
+    public void testTypedValues() throws Exception {
+        File file = writeWorkbook();
+        List<Object> values = new ArrayList<>();
+        try (XlsxWorkbook wb = XlsxWorkbook.open(file);
+             StreamingRangeReader reader = new StreamingRangeReader(wb.openSheet(wb.getSheet(null)), new CellRange(1, 1, 0, 5))) {
+            reader.readRow(new RowReader.TypedCellConsumer() {
+                @Override
+                public boolean isTyped(int column) {
+                    return true;
+                }
+
+                @Override
+                public void accept(int column, String value) {
+                    values.add(value);
+                }
+
+                @Override
+                public void acceptNumber(int column, double value) {
+                    values.add(value);
+                }
+
+                @Override
+                public void acceptDate(int column, long timestamp) {
+                    values.add(timestamp);
+                }
+
+                @Override
+                public void acceptBoolean(int column, boolean value) {
+                    values.add(value);
+                }
+            });
+        }
+        Assert.assertEquals(Arrays.asList("Alice", 42.0, 3.14159, 1546300800000L, true, "#DIV/0!"), values);
+    }
+
+    @Test
+    public void testDimension() throws Exception {
+        CellRange dimension = SheetDimensionReader.read(writeWorkbook(), "DATA");
+        Assert.assertEquals(3, dimension.getRowEnd());
+        Assert.assertEquals(5, dimension.getColEnd());
+    }
+
+    @Test
+    public void testRkNumber() {
+        Assert.assertEquals(42, XlsbRecordReader.readRkNumber(le(42 << 2 | 2), 0), 0);
+        Assert.assertEquals(-7, XlsbRecordReader.readRkNumber(le(-7 << 2 | 2), 0), 0);
+        Assert.assertEquals(12.34, XlsbRecordReader.readRkNumber(le(1234 << 2 | 3), 0), 0);
+        long bits = Double.doubleToLongBits(2.5);
+        Assert.assertEquals(2.5, XlsbRecordReader.readRkNumber(le((int) (bits >>> 32)), 0), 0);
+    }
+
+    private File writeWorkbook() throws Exception {
+        File file = folder.newFile("book.xlsb");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+            put(zip, "_rels/.rels", relationships(
+                    relationship("rId1", "officeDocument", "xl/workbook.bin")));
+            put(zip, "xl/_rels/workbook.bin.rels", relationships(
+                    relationship("rId1", "worksheet", "worksheets/sheet1.bin")
+                            + relationship("rId2", "sharedStrings", "sharedStrings.bin")
+                            + relationship("rId3", "styles", "styles.bin")));
+
+            ByteArrayOutputStream workbook = new ByteArrayOutputStream();
+            record(workbook, XlsbRecordReader.WB_PROP, new byte[]{0, 0, 0, 0});
+            record(workbook, XlsbRecordReader.BUNDLE_SH, concat(le(0), le(1), wide("rId1"), wide("Data")));
+            put(zip, "xl/workbook.bin", workbook.toByteArray());
+
+            ByteArrayOutputStream styles = new ByteArrayOutputStream();
+            record(styles, XlsbRecordReader.FMT, concat(new byte[]{(byte) 164, 0}, wide("yyyy-mm-dd")));
+            record(styles, XlsbRecordReader.BEGIN_CELL_XFS, le(3));
+            record(styles, XlsbRecordReader.XF, concat(new byte[]{-1, -1, 0, 0}, new byte[12]));
+            record(styles, XlsbRecordReader.XF, concat(new byte[]{0, 0, (byte) 164, 0}, new byte[12]));
+            record(styles, XlsbRecordReader.XF, concat(new byte[]{0, 0, 2, 0}, new byte[12]));
+            record(styles, XlsbRecordReader.END_CELL_XFS, new byte[0]);
+            put(zip, "xl/styles.bin", styles.toByteArray());
+
+            ByteArrayOutputStream strings = new ByteArrayOutputStream();
+            record(strings, XlsbRecordReader.BEGIN_SST, concat(le(2), le(2)));
+            record(strings, XlsbRecordReader.SST_ITEM, concat(new byte[1], wide("name")));
+            record(strings, XlsbRecordReader.SST_ITEM, concat(new byte[1], wide("Alice")));
+            put(zip, "xl/sharedStrings.bin", strings.toByteArray());
+
+            ByteArrayOutputStream sheet = new ByteArrayOutputStream();
+            record(sheet, XlsbRecordReader.WS_DIM, concat(le(0), le(3), le(0), le(5)));
+            record(sheet, XlsbRecordReader.BEGIN_SHEET_DATA, new byte[0]);
+            record(sheet, XlsbRecordReader.ROW_HEADER, concat(le(0), new byte[13]));
+            record(sheet, XlsbRecordReader.CELL_ISST, concat(cell(0, 0), le(0)));
+            record(sheet, XlsbRecordReader.CELL_ST, concat(cell(1, 0), wide("value")));
+            record(sheet, XlsbRecordReader.ROW_HEADER, concat(le(1), new byte[13]));
+            record(sheet, XlsbRecordReader.CELL_ISST, concat(cell(0, 0), le(1)));
+            record(sheet, XlsbRecordReader.CELL_RK, concat(cell(1, 0), le(42 << 2 | 2)));
+            record(sheet, XlsbRecordReader.CELL_REAL, concat(cell(2, 2), le(3.14159)));
+            record(sheet, XlsbRecordReader.CELL_RK, concat(cell(3, 1), le(43466 << 2 | 2)));
+            record(sheet, XlsbRecordReader.CELL_BOOL, concat(cell(4, 0), new byte[]{1}));
+            record(sheet, XlsbRecordReader.CELL_ERROR, concat(cell(5, 0), new byte[]{0x07}));
+            record(sheet, XlsbRecordReader.ROW_HEADER, concat(le(3), new byte[13]));
+            //Формула: результат, флаги и токены, которые парсер не читает
+            record(sheet, XlsbRecordReader.FMLA_NUM, concat(cell(0, 0), le(84.0), new byte[2], le(0)));
+            record(sheet, XlsbRecordReader.FMLA_STRING, concat(cell(1, 0), wide("xy"), new byte[2], le(0)));
+            record(sheet, XlsbRecordReader.CELL_BLANK, cell(2, 0));
+            record(sheet, XlsbRecordReader.CELL_RSTRING, concat(cell(3, 0), new byte[1], wide("rich")));
+            record(sheet, XlsbRecordReader.CELL_RK, concat(cell(4, 0), le(1234 << 2 | 3)));
+            record(sheet, XlsbRecordReader.END_SHEET_DATA, new byte[0]);
+            put(zip, "xl/worksheets/sheet1.bin", sheet.toByteArray());
+        }
+        return file;
+    }
+
+    private static void put(ZipOutputStream zip, String name, String content) throws Exception {
+        put(zip, name, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void put(ZipOutputStream zip, String name, byte[] content) throws Exception {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    private static String relationships(String content) {
+        return "<Relationships xmlns=\"" + RELS_NS + "\">" + content + "</Relationships>";
+    }
+
+    private static String relationship(String id, String type, String target) {
+        return "<Relationship Id=\"" + id + "\" Type=\"" + REL_TYPE + type + "\" Target=\"" + target + "\"/>";
+    }
+
+    private static void record(ByteArrayOutputStream os, int type, byte[] data) {
+        if (type < 0x80) {
+            os.write(type);
+        } else {
+            os.write(type & 0x7F | 0x80);
+            os.write(type >> 7);
+        }
+        int length = data.length;
+        do {
+            int b = length & 0x7F;
+            length >>= 7;
+            os.write(length > 0 ? b | 0x80 : b);
+        } while (length > 0);
+        os.write(data, 0, data.length);
+    }
+
+    private static byte[] cell(int col, int style) {
+        return concat(le(col), new byte[]{(byte) style, 0, 0, 0});
+    }
+
+    private static byte[] wide(String value) {
+        return concat(le(value.length()), value.getBytes(StandardCharsets.UTF_16LE));
+    }
+
+    private static byte[] le(int value) {
+        return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+    }
+
+    private static byte[] le(double value) {
+        return ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putDouble(value).array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            os.write(part, 0, part.length);
+        }
+        return os.toByteArray();
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.excel.read;
+
+import org.apache.drill.exec.store.excel.config.FormulaMode;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class XlsxRangeReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test1SameAsCellRangeReader() throws Exception {
+        assertSameRows("src/test/resources/test1.xlsx", null);
+    }
+
+    @Test
+    public void test3SameAsCellRangeReader() throws Exception {
+        assertSameRows("src/test/resources/test3.xlsx", "Feb");
+    }
+
+    @Test
+    public void testRequiredColumns() throws Exception {
+        List<String> values = new ArrayList<>();
+        try (XlsxWorkbook wb = XlsxWorkbook.open(new File("src/test/resources/test3.xlsx"));
+             StreamingRangeReader reader = new StreamingRangeReader(wb.openSheet(wb.getSheet("Jan")), new CellRange(0, 2, 0, 5))) {
+            RowReader.CellValueConsumer consumer = new RowReader.CellValueConsumer() {
+                @Override
+                public boolean isRequired(int column) {
+                    return column == 1;
+                }
+
+                @Override
+                public void accept(int column, String value) {
+                    Assert.assertEquals(1, column);
+                    values.add(value);
+                }
+            };
+            while (reader.hasNext()) {
+                reader.readRow(consumer);
+            }
+        }
+        Assert.assertEquals(3, values.size());
+        Assert.assertEquals("name", values.get(0));
+    }
+
+    @Test
+    public void testParseNumber() {
+        for (String value : new String[]{"0", "-0", "42", "-17", "123456789012345", "1234567890123456",
+                "3.14", "-2.5E-3", "1e10"}) {
+            Assert.assertEquals(value, Double.parseDouble(value), XlsxSheetParser.parseNumber(new StringBuilder(value)), 0);
+        }
+    }
+
+    @Test
+    public void testColumnIndex() {
+        Assert.assertEquals(0, XlsxSheetParser.columnIndex("A1"));
+        Assert.assertEquals(25, XlsxSheetParser.columnIndex("Z100"));
+        Assert.assertEquals(27, XlsxSheetParser.columnIndex("AB3"));
+        Assert.assertEquals(16383, XlsxSheetParser.columnIndex("XFD1048576"));
+    }
+
+    @Test
+    public void testCachedFormulas() throws Exception {
+        File file = folder.newFile("formulas.xlsx");
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            Row row = wb.createSheet("calc").createRow(0);
+            row.createCell(0).setCellValue(2.5);
+            row.createCell(1).setCellValue("x");
+            row.createCell(2).setCellFormula("A1*4");
+            row.createCell(3).setCellFormula("B1&\"y\"");
+            row.createCell(4).setCellFormula("A1>1");
+            row.createCell(5).setCellFormula("1/0");
+            wb.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            try (FileOutputStream os = new FileOutputStream(file)) {
+                wb.write(os);
+            }
+        }
+
+        CellRange range = new CellRange(0, 0, 0, 5);
+        String[] evaluated;
+        try (XSSFWorkbook wb = new XSSFWorkbook(OPCPackage.open(file, PackageAccess.READ))) {
+            evaluated = new CellRangeReader(wb.getSheetAt(0), range, FormulaMode.EVALUATE).next();
+        }
+        Assert.assertEquals("[2.5, x, 10, xy, TRUE, #DIV/0!]", Arrays.toString(evaluated));
+
+        String[] streamed = new String[6];
+        String[] formulas = new String[6];
+        try (XlsxWorkbook wb = XlsxWorkbook.open(file)) {
+            try (StreamingRangeReader reader = new StreamingRangeReader(wb.openSheet(wb.getSheet(null), true), range)) {
+                reader.readRow((column, value) -> streamed[column] = value);
+            }
+            try (StreamingRangeReader reader = new StreamingRangeReader(wb.openSheet(wb.getSheet(null), false), range)) {
+                reader.readRow((column, value) -> formulas[column] = value);
+            }
+        }
+        Assert.assertArrayEquals(evaluated, streamed);
+        Assert.assertEquals("[2.5, x, A1*4, B1&\"y\", A1>1, 1/0]", Arrays.toString(formulas));
+    }
+
+    private void assertSameRows(String path, String worksheet) throws Exception {
+        File file = new File(path);
+        List<String> expected = new ArrayList<>();
+        try (XSSFWorkbook wb = new XSSFWorkbook(OPCPackage.open(file, PackageAccess.READ))) {
+            Sheet sheet = worksheet == null ? wb.getSheetAt(0) : wb.getSheet(worksheet);
+            CellRange range = new SheetRangeDetector(sheet).detectRange();
+            CellRangeReader reader = new CellRangeReader(sheet, range, FormulaMode.FORMULA);
+            while (reader.hasNext()) {
+                expected.add(Arrays.toString(reader.next()));
+            }
+        }
+
+        List<String> actual = new ArrayList<>();
+        try (XlsxWorkbook wb = XlsxWorkbook.open(file)) {
+            OoxmlWorkbookIndex.SheetPart part = wb.getSheet(worksheet);
+            CellRange range = wb.getRangeDetector(part).detectRange();
+            try (StreamingRangeReader reader = new StreamingRangeReader(wb.openSheet(part), range)) {
+                while (reader.hasNext()) {
+                    String[] row = new String[range.getColEnd() - range.getColStart() + 1];
+                    reader.readRow((column, value) -> row[column] = value);
+                    actual.add(Arrays.toString(row));
+                }
+            }
+        }
+
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, actual);
+    }
+}